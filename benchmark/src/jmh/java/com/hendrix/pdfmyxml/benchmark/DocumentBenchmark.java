@@ -0,0 +1,86 @@
+package com.hendrix.pdfmyxml.benchmark;
+
+import com.pdfjet.A4;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a whole document written into a file, every page encoded and embedded in turn,
+ * i.e the sequential path of {@code PdfDocument.internal_generatePdf} without the rendering
+ *
+ * @author Tomer Shalev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class DocumentBenchmark {
+    @Param({"10", "100", "1000"})
+    public int pages;
+
+    @Param({"FLATE", "JPEG"})
+    public SamplePage.Codec codec;
+
+    private int[]   _pixels;
+    private File    _file;
+    // pdf bytes and pages of all documents, for the bytes per page
+    private long    _bytes;
+    private long    _pages;
+
+    @Setup
+    public void setup() throws Exception {
+        _pixels = SamplePage.pixels(SamplePage.WIDTH, SamplePage.HEIGHT);
+        _file   = File.createTempFile("pdfmyxml-benchmark", ".pdf");
+    }
+
+    @Benchmark
+    public long writeDocument() throws Exception {
+        FileOutputStream fos    = new FileOutputStream(_file);
+
+        try {
+            PDF pdf             = new PDF(fos);
+
+            for (int ix = 0; ix < pages; ix++) {
+                Page page       = new Page(pdf, A4.PORTRAIT);
+
+                SamplePage.encode(codec, _pixels, SamplePage.WIDTH, SamplePage.HEIGHT).drawOn(pdf, page);
+            }
+
+            pdf.flush();
+        }
+        finally {
+            fos.close();
+        }
+
+        long length             = _file.length();
+
+        _bytes                 += length;
+        _pages                 += pages;
+
+        return length;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println("bytes/page: " + (_pages > 0 ? _bytes / _pages : 0));
+
+        _file.delete();
+    }
+}
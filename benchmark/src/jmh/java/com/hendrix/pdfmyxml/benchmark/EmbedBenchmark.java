@@ -0,0 +1,83 @@
+package com.hendrix.pdfmyxml.benchmark;
+
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+import com.pdfjet.A4;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * embedding of an encoded page into a new pdf page with pdfjet, i.e the work of
+ * {@code PdfDocument.writePage}. PNG pages are decoded and deflated again by pdfjet.
+ *
+ * @author Tomer Shalev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EmbedBenchmark {
+    @Param({"FLATE", "FLATE_GRAY", "PNG", "JPEG"})
+    public SamplePage.Codec codec;
+
+    private byte[]                          _encoded;
+    private int                             _imageType;
+    private PDF                             _pdf;
+    private SamplePage.CountingOutputStream _out;
+    // pdf bytes and pages of all iterations, for the bytes per page
+    private long                            _bytes;
+    private long                            _pages;
+    private long                            _iterationPages;
+
+    @Setup
+    public void setup() throws Exception {
+        EncodedPage page    = SamplePage.encode(codec, SamplePage.pixels(SamplePage.WIDTH, SamplePage.HEIGHT), SamplePage.WIDTH, SamplePage.HEIGHT);
+
+        _encoded            = SamplePage.readFully(page.getStream());
+        _imageType          = page.getImageType();
+    }
+
+    @Setup(Level.Iteration)
+    public void openPdf() throws Exception {
+        _out                = new SamplePage.CountingOutputStream();
+        _pdf                = new PDF(_out);
+        _iterationPages     = 0;
+    }
+
+    @Benchmark
+    public Page embed() throws Exception {
+        Page page = new Page(_pdf, A4.PORTRAIT);
+
+        new EncodedPage(new ByteArrayInputStream(_encoded), _imageType).drawOn(_pdf, page);
+
+        _iterationPages++;
+
+        return page;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closePdf() throws Exception {
+        _pdf.flush();
+
+        _bytes             += _out.getCount();
+        _pages             += _iterationPages;
+        _pdf                = null;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println("bytes/page: " + (_pages > 0 ? _bytes / _pages : 0));
+    }
+}
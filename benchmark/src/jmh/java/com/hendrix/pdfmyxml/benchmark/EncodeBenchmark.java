@@ -0,0 +1,51 @@
+package com.hendrix.pdfmyxml.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encoding of a rendered page with every page codec, i.e the work of {@code PageCodec.encode}
+ *
+ * @author Tomer Shalev
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EncodeBenchmark {
+    @Param({"FLATE", "FLATE_GRAY", "PNG", "JPEG"})
+    public SamplePage.Codec codec;
+
+    private int[]   _pixels;
+    // encoded bytes and pages, for the bytes per page
+    private long    _bytes;
+    private long    _pages;
+
+    @Setup
+    public void setup() {
+        _pixels = SamplePage.pixels(SamplePage.WIDTH, SamplePage.HEIGHT);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        byte[] data = SamplePage.readFully(SamplePage.encode(codec, _pixels, SamplePage.WIDTH, SamplePage.HEIGHT).getStream());
+
+        _bytes     += data.length;
+        _pages++;
+
+        return data;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.println("bytes/page: " + (_pages > 0 ? _bytes / _pages : 0));
+    }
+}
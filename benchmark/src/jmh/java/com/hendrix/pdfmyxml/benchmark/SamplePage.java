@@ -0,0 +1,221 @@
+package com.hendrix.pdfmyxml.benchmark;
+
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+import com.hendrix.pdfmyxml.encoder.FlateImageEncoder;
+import com.pdfjet.ImageType;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * a synthetic rendered page, and the page codecs of the library on a plain jvm
+ *
+ * @author Tomer Shalev
+ */
+public final class SamplePage {
+    static {
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    /**
+     * the width of a portrait A4 page rendered at 150 dpi
+     */
+    static public final int WIDTH   = 1240;
+    /**
+     * the height of a portrait A4 page rendered at 150 dpi
+     */
+    static public final int HEIGHT  = 1754;
+
+    /**
+     * the page codecs, mirrors {@code PageCodec}
+     */
+    public enum Codec {
+        FLATE, FLATE_GRAY, PNG, JPEG
+    }
+
+    private SamplePage() {
+    }
+
+    /**
+     * draw a page that looks like a rendered layout, mostly white with a header band,
+     * lines of text, a table grid and a photo
+     *
+     * @param width     the width in pixels
+     * @param height    the height in pixels
+     *
+     * @return unpremultiplied {@code ARGB} pixels
+     */
+    public static int[] pixels(int width, int height) {
+        int[] argb      = new int[width * height];
+        Random random   = new Random(42);
+        int margin      = width / 16;
+
+        Arrays.fill(argb, 0xffffffff);
+
+        // header band
+        fill(argb, width, 0, 0, width, height / 14, 0xff3f51b5);
+
+        // lines of text, dark glyph runs with anti aliased edges
+        for (int y = height / 10; y < height / 2; y += 28) {
+            int x = margin;
+
+            while (x < width - margin) {
+                int glyph = 6 + random.nextInt(10);
+
+                fill(argb, width, x, y, Math.min(x + glyph, width - margin), y + 14, 0xff212121);
+                fill(argb, width, x - 1, y, x, y + 14, 0x80212121);
+
+                x += glyph + (random.nextInt(6) == 0 ? 14 : 3);
+            }
+        }
+
+        // table grid
+        for (int y = height / 2; y <= height * 3 / 4; y += 40)
+            fill(argb, width, margin, y, width - margin, y + 2, 0xff9e9e9e);
+
+        for (int x = margin; x <= width - margin; x += (width - 2 * margin) / 5)
+            fill(argb, width, x, height / 2, x + 2, height * 3 / 4, 0xff9e9e9e);
+
+        // photo, smooth gradients with noise
+        int top         = height * 4 / 5;
+        int right       = width / 2;
+
+        for (int y = top; y < height - margin; y++) {
+            for (int x = margin; x < right; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xff;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xff;
+                int b = ((x + y) * 127 / (width + height) + random.nextInt(16)) & 0xff;
+
+                argb[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+
+        return argb;
+    }
+
+    private static void fill(int[] argb, int width, int left, int top, int right, int bottom, int color) {
+        for (int y = top; y < bottom; y++)
+            Arrays.fill(argb, y * width + Math.max(0, left), y * width + Math.min(width, right), color);
+    }
+
+    /**
+     * encode a page, the way {@code PageCodec} does on android
+     *
+     * @param codec     the codec
+     * @param argb      the pixels
+     * @param width     the width in pixels
+     * @param height    the height in pixels
+     *
+     * @return the encoded page
+     *
+     * @throws IOException if the page could not be encoded
+     */
+    public static EncodedPage encode(Codec codec, int[] argb, int width, int height) throws IOException {
+        switch (codec) {
+            case FLATE:
+            case FLATE_GRAY:
+                FlateImageEncoder encoder = new FlateImageEncoder(width, height, codec == Codec.FLATE_GRAY, FlateImageEncoder.DEFAULT_LEVEL);
+                // in bands of ~64K pixels, like BitmapUtils.bitmapToFlateInputStream
+                int band = Math.max(1, (64 * 1024) / width) * width;
+
+                for (int offset = 0; offset < argb.length; offset += band)
+                    encoder.writePixels(argb, offset, Math.min(band, argb.length - offset));
+
+                return new EncodedPage(encoder.finish(), ImageType.JET);
+            case PNG:
+                return new EncodedPage(new ByteArrayInputStream(compress(argb, width, height, "png", -1)), ImageType.PNG);
+            case JPEG:
+                return new EncodedPage(new ByteArrayInputStream(compress(argb, width, height, "jpeg", 90)), ImageType.JPG);
+            default:
+                throw new IllegalArgumentException("SamplePage:: unknown codec " + codec);
+        }
+    }
+
+    /**
+     * compress with ImageIO, the stand in for {@code Bitmap.compress}
+     */
+    private static byte[] compress(int[] argb, int width, int height, String format, int quality) throws IOException {
+        BufferedImage image             = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        image.setRGB(0, 0, width, height, argb, 0, width);
+
+        ByteArrayOutputStream bos       = new ByteArrayOutputStream(width * height / 4);
+        ImageWriter writer              = ImageIO.getImageWritersByFormatName(format).next();
+        ImageWriteParam param           = writer.getDefaultWriteParam();
+
+        if(quality >= 0) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+        }
+
+        MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(bos);
+
+        try {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+            ios.close();
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * read a stream fully
+     *
+     * @param is the stream
+     *
+     * @return the bytes
+     *
+     * @throws IOException if the stream could not be read
+     */
+    public static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream(Math.max(32, is.available()));
+        byte[] buffer               = new byte[8 * 1024];
+        int read;
+
+        while ((read = is.read(buffer)) > 0)
+            bos.write(buffer, 0, read);
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * an output stream that drops the bytes, and counts them
+     */
+    public static class CountingOutputStream extends OutputStream {
+        private long _count = 0;
+
+        @Override
+        public void write(int b) {
+            _count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            _count += len;
+        }
+
+        /**
+         *
+         * @return number of bytes written so far
+         */
+        public long getCount() {
+            return _count;
+        }
+    }
+}
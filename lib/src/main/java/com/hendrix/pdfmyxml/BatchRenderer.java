@@ -0,0 +1,272 @@
+package com.hendrix.pdfmyxml;
+
+import com.hendrix.pdfmyxml.encoder.EncoderPipeline;
+import com.hendrix.pdfmyxml.interfaces.IDisposable;
+import com.hendrix.pdfmyxml.utils.BitmapPool;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * generates many pdf documents on a bounded pool of worker threads. documents are queued as jobs,
+ * and every job generates its document with {@link PdfDocument#generatePdf()} on a worker thread.
+ * when the queue is full, submitting a job blocks until a job completes. all of the documents share
+ * a pool of page bitmaps, and optionally a pool of encoder threads.
+ * <p>
+ * the callback of a job is notified on the worker thread, and the document is disposed afterwards.
+ *
+ * @see com.hendrix.pdfmyxml.BatchRenderer.Builder
+ *
+ * @author Tomer Shalev
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class BatchRenderer implements IDisposable {
+    // the worker threads
+    private ExecutorService         _workers            = null;
+    // the encoder threads shared by all of the documents, or null
+    private ExecutorService         _encoders           = null;
+    // the bitmap pool shared by all of the documents
+    private BitmapPool              _bitmapPool         = null;
+    // permits for running and queued jobs
+    private Semaphore               _slots              = null;
+    // number of jobs that were submitted and did not complete yet
+    private final AtomicInteger     _pending            = new AtomicInteger();
+
+    /**
+     * @param workers           number of worker threads, i.e documents generated at once
+     * @param queueCapacity     number of jobs that may wait for a worker
+     * @param encoderThreads    number of encoder threads shared by the documents, {@code 0} to encode on the workers
+     * @param bitmapPool        the bitmap pool shared by the documents, or {@code null} for a pool of up to an eighth of the heap
+     */
+    public BatchRenderer(int workers, int queueCapacity, int encoderThreads, BitmapPool bitmapPool) {
+        workers         = Math.max(1, workers);
+
+        _workers        = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+        _encoders       = encoderThreads > 0 ? EncoderPipeline.newEncoderExecutor(encoderThreads) : null;
+        _bitmapPool     = bitmapPool != null ? bitmapPool : new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        _slots          = new Semaphore(workers + Math.max(0, queueCapacity));
+    }
+
+    /**
+     * submit a document job. blocks while the queue is full.
+     *
+     * @param doc       the document, with its pages and output file set up
+     * @param callback  notified on the worker thread when the document completes or fails, or {@code null}
+     *
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public void submit(PdfDocument doc, PdfDocument.Callback callback) throws InterruptedException {
+        _slots.acquire();
+
+        enqueue(doc, callback);
+    }
+
+    /**
+     * submit a document job, if there is room in the queue within a timeout
+     *
+     * @param doc       the document, with its pages and output file set up
+     * @param callback  notified on the worker thread when the document completes or fails, or {@code null}
+     * @param timeout   the maximum time to wait for room in the queue
+     * @param unit      the unit of the timeout
+     *
+     * @return {@code true} if the job was submitted
+     *
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public boolean trySubmit(PdfDocument doc, PdfDocument.Callback callback, long timeout, TimeUnit unit) throws InterruptedException {
+        if(!_slots.tryAcquire(timeout, unit))
+            return false;
+
+        enqueue(doc, callback);
+
+        return true;
+    }
+
+    private void enqueue(final PdfDocument doc, final PdfDocument.Callback callback) {
+        doc.setBitmapPool(_bitmapPool);
+
+        if(_encoders != null)
+            doc.setEncoderExecutor(_encoders);
+
+        _pending.incrementAndGet();
+
+        try {
+            _workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runJob(doc, callback);
+                    }
+                    finally {
+                        _pending.decrementAndGet();
+                        _slots.release();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException exc) {
+            _pending.decrementAndGet();
+            _slots.release();
+
+            throw exc;
+        }
+    }
+
+    private void runJob(PdfDocument doc, PdfDocument.Callback callback) {
+        File file           = null;
+        Exception error     = null;
+
+        try {
+            file            = doc.generatePdf();
+        }
+        catch (Exception exc) {
+            error           = exc;
+        }
+        finally {
+            doc.dispose();
+        }
+
+        if(callback == null)
+            return;
+
+        if(error != null)
+            callback.onError(error);
+        else
+            callback.onComplete(file);
+    }
+
+    /**
+     *
+     * @return number of jobs that were submitted and did not complete yet
+     */
+    public int getPendingCount() {
+        return _pending.get();
+    }
+
+    /**
+     *
+     * @return the bitmap pool shared by the documents
+     */
+    public BitmapPool getBitmapPool() {
+        return _bitmapPool;
+    }
+
+    /**
+     * stop accepting jobs, the submitted jobs still complete
+     */
+    public void shutdown() {
+        _workers.shutdown();
+    }
+
+    /**
+     * wait for the submitted jobs to complete, after {@link #shutdown()}
+     *
+     * @param timeout   the maximum time to wait
+     * @param unit      the unit of the timeout
+     *
+     * @return {@code true} if all of the jobs completed
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return _workers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * dispose the item. queued jobs are abandoned, and running jobs are interrupted.
+     */
+    @Override
+    public void dispose() {
+        _workers.shutdownNow();
+
+        if(_encoders != null)
+            _encoders.shutdownNow();
+
+        _bitmapPool.clear();
+    }
+
+    /**
+     * worker threads
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger sCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pdfmyxml-batch-" + sCount.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+    /**
+     * a mutable builder for a batch renderer
+     */
+    public static class Builder {
+        private int         _workers        = Runtime.getRuntime().availableProcessors();
+        private int         _queueCapacity  = 0;
+        private int         _encoderThreads = 0;
+        private BitmapPool  _bitmapPool     = null;
+
+        /**
+         * create the batch renderer instance
+         *
+         * @return a {@link com.hendrix.pdfmyxml.BatchRenderer}
+         */
+        public BatchRenderer create() {
+            return new BatchRenderer(_workers, _queueCapacity > 0 ? _queueCapacity : 2 * _workers, _encoderThreads, _bitmapPool);
+        }
+
+        /**
+         * set the number of worker threads, by default the number of cores
+         *
+         * @param workers number of worker threads
+         */
+        public Builder workers(int workers) {
+            _workers = workers;
+
+            return this;
+        }
+
+        /**
+         * set the number of jobs that may wait for a worker, by default twice the number of workers
+         *
+         * @param capacity the queue capacity
+         */
+        public Builder queueCapacity(int capacity) {
+            _queueCapacity = capacity;
+
+            return this;
+        }
+
+        /**
+         * set the number of encoder threads shared by the documents, by default {@code 0},
+         * pages are encoded on the worker threads
+         *
+         * @param threads number of encoder threads
+         */
+        public Builder encoderThreads(int threads) {
+            _encoderThreads = threads;
+
+            return this;
+        }
+
+        /**
+         * set the bitmap pool shared by the documents
+         *
+         * @param pool the bitmap pool
+         */
+        public Builder bitmapPool(BitmapPool pool) {
+            _bitmapPool = pool;
+
+            return this;
+        }
+    }
+}
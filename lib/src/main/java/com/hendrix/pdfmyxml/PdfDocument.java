@@ -2,26 +2,63 @@ package com.hendrix.pdfmyxml;
 
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.os.Build;
 import android.os.Handler;
 import android.util.Log;
-
+import android.view.View;
+
+import com.hendrix.pdfmyxml.cache.PageCache;
+import com.hendrix.pdfmyxml.cache.PageSpool;
+import com.hendrix.pdfmyxml.encoder.BandedPage;
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+import com.hendrix.pdfmyxml.encoder.EncoderPipeline;
+import com.hendrix.pdfmyxml.encoder.LayeredPage;
+import com.hendrix.pdfmyxml.encoder.PageCodec;
+import com.hendrix.pdfmyxml.encoder.PageOverlay;
+import com.hendrix.pdfmyxml.encoder.SharedImages;
+import com.hendrix.pdfmyxml.encoder.SharedPage;
 import com.hendrix.pdfmyxml.interfaces.IDisposable;
+import com.hendrix.pdfmyxml.metrics.DocumentMetrics;
+import com.hendrix.pdfmyxml.metrics.MetricsListener;
+import com.hendrix.pdfmyxml.metrics.PageMetrics;
+import com.hendrix.pdfmyxml.output.FileSink;
+import com.hendrix.pdfmyxml.output.OutputSink;
+import com.hendrix.pdfmyxml.update.IncrementalUpdate;
+import com.hendrix.pdfmyxml.update.PdfCompactor;
+import com.hendrix.pdfmyxml.utils.BitmapPool;
 import com.hendrix.pdfmyxml.utils.BitmapUtils;
+import com.hendrix.pdfmyxml.utils.CountingOutputStream;
+import com.hendrix.pdfmyxml.utils.MeasureUtils;
 import com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer;
+import com.hendrix.pdfmyxml.viewRenderer.ColorMode;
+import com.hendrix.pdfmyxml.viewRenderer.RenderBackend;
+import com.hendrix.pdfmyxml.viewRenderer.RowsRenderer;
+import com.hendrix.pdfmyxml.viewRenderer.StaticLayer;
+import com.hendrix.pdfmyxml.vector.TextLayer;
+import com.hendrix.pdfmyxml.vector.VectorCanvas;
 import com.pdfjet.A4;
-import com.pdfjet.Image;
-import com.pdfjet.ImageType;
 import com.pdfjet.PDF;
 import com.pdfjet.Page;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * a PDF document creator
@@ -46,9 +83,45 @@ public class PdfDocument implements IDisposable{
     // save directory of pdf
     private File                                save_directory;
     // state of the rendering
-    private boolean                             _isWorking              = false;
+    private volatile boolean                    _isWorking              = false;
+    // the generation was cancelled
+    private volatile boolean                    _cancelled              = false;
     // inflate on main thread
     private boolean                             _inflateOnMainThread    = true;
+    // write pages into the pdf as soon as they are rendered
+    private boolean                             _streaming              = false;
+    // number of encoder threads, 0 encodes on the rendering thread
+    private int                                 _encoderThreads         = 0;
+    // shared encoder threads, or null
+    private ExecutorService                     _encoderExecutor        = null;
+    // maximum number of rendered pages waiting to be written, 0 for automatic
+    private int                                 _maxPagesInFlight       = 0;
+    // the image codec of pages
+    private PageCodec                           _codec                  = PageCodec.FLATE;
+    // the JPEG quality of pages
+    private int                                 _jpegQuality            = PageCodec.DEFAULT_JPEG_QUALITY;
+    // the color mode of pages
+    private ColorMode                           _colorMode              = ColorMode.ARGB_8888;
+    // render tall views in page height strips, one pdf page each
+    private boolean                             _tiled                  = false;
+    // how pages are turned into pdf content
+    private RenderBackend                       _backend                = RenderBackend.RASTER;
+    // embed identical rendered pages once
+    private boolean                             _deduplicate            = false;
+    // number of bands that are deduplicated separately, 1 for whole pages
+    private int                                 _deduplicateBands       = 1;
+    // the images shared by identical pages
+    private final SharedImages                  _sharedImages           = new SharedImages();
+    // the rendered static layers, by layer and page size
+    private final HashMap<LayerKey, EncodedPage> _staticLayers          = new HashMap<>();
+    // persistent cache of encoded pages, or null
+    private PageCache                           _pageCache              = null;
+    // the app version and configuration the cached pages were rendered with, or null until it is needed
+    private String                              _cacheEnvironment       = null;
+    // pool of page bitmaps, shared by all of the renderers
+    private BitmapPool                          _bitmapPool             = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+    // the bitmap pool was created by this document
+    private boolean                             _ownsBitmapPool         = true;
     // progress dialog
     private ProgressDialog                      _ringProgressDialog;
     // progress dialog message
@@ -56,21 +129,59 @@ public class PdfDocument implements IDisposable{
     // progress dialog title
     private String                              _txtProgressTitle       = "Please wait";
     // rendered pages streams
-    protected ArrayList<InputStream>            _pages_rendered         = null;
+    protected ArrayList<EncodedPage>            _pages_rendered         = null;
+    // maximum bytes of rendered pages held in memory, the rest are spilled to disk
+    private long                                _maxHeldBytes           = Runtime.getRuntime().maxMemory() / 8;
+    // bytes of rendered pages held in memory
+    private long                                _heldBytes              = 0;
+    // the file rendered pages are spilled into, or null
+    private PageSpool                           _spool                  = null;
     // views to render
     protected ArrayList<AbstractViewRenderer>   _pages                  = null;
     // async part
-    private Handler                             _handler                = new Handler();
+    private Handler                             _handler                = null;
     // background thread
-    private Thread                              _thread                 = null;
+    private volatile Thread                     _thread                 = null;
+    // serializes a cancel with the end of the generation
+    private final Object                        _stateLock              = new Object();
     // exception if happened
     private Exception                           _error                  = null;
+    // the pdf being written
+    private PDF                                 _pdf                    = null;
+    // the output stream of the pdf being written
+    private CountingOutputStream                _fos                    = null;
+    // the sink the pdf is written into, instead of a file in the save directory
+    private OutputSink                          _outputSink             = null;
+    // the open sink
+    private OutputSink                          _sink                   = null;
+    // write the text of raster pages as invisible text over their images
+    private boolean                             _textLayer              = false;
+    // pack the objects of the pdf into object streams
+    private boolean                             _objectStreams          = false;
+    // the sink of the pdf with object streams, while pdfjet writes into a temp pdf, or null
+    private OutputSink                          _compactSink            = null;
+    // the incremental update of an existing pdf, or null
+    private IncrementalUpdate                   _update                 = null;
+    // indexes of the pages that the first pages of the update replace
+    private final ArrayList<Integer>            _replaced               = new ArrayList<>();
+    // number of pages written into the pdf
+    private int                                 _pagesWritten           = 0;
+    // number of pages of the pdf, -1 if unknown
+    private int                                 _pagesTotal             = -1;
+    // listener of the generation progress, or null
+    private ProgressListener                    _progressListener       = null;
+    // listener of the generation metrics, or null
+    private MetricsListener                     _metricsListener        = null;
+    // metrics of the document being generated, or null
+    private DocumentMetrics                     _documentMetrics        = null;
 
     /**
      * the rendered dimensions in {@code Pixels} of the {@link AbstractViewRenderer}
      */
     private int                                 _renderWidth            = 0;
     private int                                 _renderHeight           = 0;
+    // the resolution of rendered bitmaps on the pdf page, or 0 for the render size
+    private int                                 _dpi                    = 0;
 
     public PdfDocument(Context ctx) {
         setContext(ctx);
@@ -116,10 +227,94 @@ public class PdfDocument implements IDisposable{
      * @see com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer
      */
     public void addPage(AbstractViewRenderer page) {
-        if(_inflateOnMainThread)
-            renderView(page);
-        else
+        if(!_inflateOnMainThread) {
             _pages.add(page);
+            return;
+        }
+
+        try {
+            renderPage(page, new EncoderPipeline.Consumer<Callable<EncodedPage>>() {
+                @Override
+                public void consume(Callable<EncodedPage> task) throws Exception {
+                    addRenderedPage(task.call());
+                }
+            });
+        }
+        catch (Exception exc) {
+            _error = exc;
+        }
+    }
+
+    /**
+     * add rows of a single layout, bound by position like an adapter. the rows are bound and measured
+     * one after the other, packed into pages of the render height, or if it is {@code 0}, of the height
+     * of the page orientation for the render width, and every page is written once it is full, so only
+     * the rows of a single page are held. an explicit render width is required. with
+     * {@link #setInflateOnMainThread(boolean)} all of the pages are rendered right away, so disable it
+     * for large data sets.
+     *
+     * @param rowLayoutResId    the layout resource id of a row
+     * @param count             number of rows
+     * @param binder            binds a row view to the data of a position, on the rendering thread
+     *
+     * @see com.hendrix.pdfmyxml.viewRenderer.RowsRenderer
+     */
+    public void addRows(int rowLayoutResId, int count, RowsRenderer.Binder binder) {
+        addPage(new RowsRenderer(_ctx, rowLayoutResId, count, binder));
+    }
+
+    /**
+     * update an existing pdf, i.e one that was generated before, instead of creating a new one. the added pages
+     * are appended to it, and pages that are added with {@link #replacePage(int, AbstractViewRenderer)} replace
+     * its pages. {@link #createPdf(Context)} renders only these pages into a temp pdf, and appends them to the
+     * existing pdf as an incremental update, so its bytes are not changed and the cost depends on the changed
+     * pages only. the output sink and the file name are not used. the pdf is restored if the update fails.
+     *
+     * @param pdf an existing pdf
+     *
+     * @throws IOException if the pdf could not be read
+     *
+     * @see com.hendrix.pdfmyxml.update.IncrementalUpdate
+     */
+    public void updatePdf(File pdf) throws IOException {
+        _update = new IncrementalUpdate(pdf);
+
+        _replaced.clear();
+    }
+
+    /**
+     *
+     * @return the incremental update of an existing pdf, or {@code null} if a new pdf is created
+     */
+    public IncrementalUpdate getUpdate() {
+        return _update;
+    }
+
+    /**
+     * replace a page of the updated pdf. replaced pages have to be added before new pages, and
+     * every one of them is rendered into a single page, so rows and tiled pages can not replace a page.
+     *
+     * @param index the index of the page in the updated pdf
+     * @param page  a view renderer instance
+     *
+     * @see #updatePdf(File)
+     */
+    public void replacePage(int index, AbstractViewRenderer page) {
+        if(_update == null)
+            throw new IllegalStateException("PdfDocument:: replacing a page requires updatePdf()");
+
+        if(page instanceof RowsRenderer || _tiled)
+            throw new IllegalArgumentException("PdfDocument:: rows and tiled pages can not replace a page");
+
+        if(index < 0 || index >= _update.getPageCount() || _replaced.contains(index))
+            throw new IllegalArgumentException("PdfDocument:: page " + index + " can not be replaced");
+
+        if(_pagesWritten + _pages_rendered.size() + _pages.size() != _replaced.size())
+            throw new IllegalStateException("PdfDocument:: replaced pages have to be added before new pages");
+
+        _replaced.add(index);
+
+        addPage(page);
     }
 
     /**
@@ -130,17 +325,127 @@ public class PdfDocument implements IDisposable{
      *
      */
     public void addPage(Bitmap page) {
-        ByteArrayInputStream stream = BitmapUtils.bitmapToPngInputStream(page);
-        _pages_rendered.add(stream);
+        try {
+            PageMetrics metrics     = newPageMetrics();
+            long start              = System.nanoTime();
+            EncodedPage encoded     = _codec.encode(page, _jpegQuality, _colorMode.isGray(), _bitmapPool);
+
+            if(metrics != null) {
+                metrics.addNanos(PageMetrics.Stage.ENCODE, System.nanoTime() - start);
+                metrics.addBitmapBytes(BitmapPool.sizeOf(page));
+                encoded.setMetrics(metrics);
+            }
+
+            addRenderedPage(encoded);
+        }
+        catch (IOException exc) {
+            _error = exc;
+        }
+    }
+
+    /**
+     * hold a rendered page until {@link #createPdf(Context)}, or write it
+     * right away in streaming mode.
+     *
+     * @param encoded the encoded page
+     */
+    private void addRenderedPage(EncodedPage encoded) {
+        if(!_streaming) {
+            try {
+                _pages_rendered.add(hold(encoded));
+            }
+            catch (IOException exc) {
+                _error = exc;
+            }
+
+            return;
+        }
+
+        if(_error != null)
+            return;
+
+        try {
+            openPdf();
+            writePage(encoded);
+        }
+        catch (Exception exc) {
+            _error = exc;
+        }
     }
 
     /**
-     * clear all of the pages and rendered pages
+     * hold a rendered page in memory within the budget of held bytes, or spill it to disk
+     *
+     * @param encoded the encoded page
+     *
+     * @return the page to hold
+     *
+     * @throws IOException if the page could not be spilled
+     */
+    private EncodedPage hold(EncodedPage encoded) throws IOException {
+        // the dynamic layer is held, the static layer is held once for all of the pages
+        if(encoded instanceof LayeredPage) {
+            LayeredPage layered = (LayeredPage)encoded;
+
+            layered.setContent(hold(layered.getContent()));
+
+            return encoded;
+        }
+
+        if(encoded instanceof BandedPage) {
+            BandedPage banded   = (BandedPage)encoded;
+
+            for (int ix = 0; ix < banded.getBandCount(); ix++)
+                banded.setBand(ix, hold(banded.getBand(ix)));
+
+            return encoded;
+        }
+
+        // shared pages have no image of their own, vector pages are operations and not an encoded
+        // image, and spilled pages are on disk already
+        if(encoded.getClass() != EncodedPage.class || encoded.getStream() == null)
+            return encoded;
+
+        long size               = encoded.getLength();
+
+        // a page of an unknown length is spilled
+        if(size >= 0 && _heldBytes + size <= _maxHeldBytes) {
+            _heldBytes         += size;
+            return encoded;
+        }
+
+        if(_spool == null)
+            _spool              = new PageSpool(_ctx.getCacheDir());
+
+        return _spool.spill(encoded);
+    }
+
+    /**
+     * drop the rendered pages, and the spilled ones
+     */
+    private void clearRenderedPages() {
+        _pages_rendered.clear();
+        _heldBytes  = 0;
+
+        if(_spool != null) {
+            _spool.delete();
+            _spool  = null;
+        }
+    }
+
+    /**
+     * clear all of the pages and rendered pages, and the images they share. pages that
+     * were already written in streaming mode are not affected.
      */
     public void clearPages()
     {
         _pages.clear();
-        _pages_rendered.clear();
+        _replaced.clear();
+        clearRenderedPages();
+
+        // the cleared pages claimed images that will never be embedded now
+        _sharedImages.clear();
+        _staticLayers.clear();
     }
 
     /**
@@ -163,13 +468,36 @@ public class PdfDocument implements IDisposable{
         _renderHeight = value;
     }
 
+    /**
+     *
+     * @return the resolution of rendered pages on the pdf page, or {@code 0} if they are rendered at the render size
+     */
+    public int getDpi() {
+        return _dpi;
+    }
+
+    /**
+     * set the resolution of rendered pages on the pdf page, i.e {@code 150} or {@code 300}. the bitmaps of
+     * pages get the pixels of the page orientation at the resolution, a portrait A4 page at 150 dpi is
+     * {@code 1240x1754}. views are still laid out with the render width and height, and drawn scaled into
+     * the bitmaps, so the layout does not change. if the render width is {@code 0}, views are laid out with
+     * the pixels of the page, and the render height defaults to the height of the page too. pages recorded
+     * with the vector backend are not affected.
+     *
+     * @param dpi the resolution in dots per inch, or {@code 0} to render bitmaps at the render size
+     */
+    public void setDpi(int dpi) {
+        _dpi = Math.max(0, dpi);
+    }
+
     /**
      * set the context
      *
      * @param ctx the context
      */
     public void setContext(Context ctx) {
-        _ctx = ctx;
+        _ctx                = ctx;
+        _cacheEnvironment   = null;
     }
 
     /**
@@ -239,12 +567,36 @@ public class PdfDocument implements IDisposable{
 
     /**
      *
-     * @return the pdf {@link java.io.File} if available
+     * @return the pdf {@link java.io.File} if available, {@code null} if it is written into a sink that is not a file
      */
     public File getFile() {
         return file;
     }
 
+    /**
+     *
+     * @return the sink the pdf is written into, or {@code null} for a file in the save directory
+     */
+    public OutputSink getOutputSink() {
+        return _outputSink;
+    }
+
+    /**
+     * set the sink the pdf is written into, instead of a file of the file name in the save directory,
+     * i.e a {@link com.hendrix.pdfmyxml.output.FileSink} that syncs the file, a
+     * {@link com.hendrix.pdfmyxml.output.StreamSink} of a socket or a cache, or a
+     * {@link com.hendrix.pdfmyxml.output.ParcelFileDescriptorSink} of a content provider. like the
+     * file name, it is used for a single pdf. the pdf file passed to the listener is the file of
+     * the sink, or {@code null} if it is not written into a file.
+     *
+     * @param sink the sink, or {@code null} for a file in the save directory
+     *
+     * @see com.hendrix.pdfmyxml.output.OutputSink
+     */
+    public void setOutputSink(OutputSink sink) {
+        _outputSink = sink;
+    }
+
     /**
      * does the a PDF is generating now?
      *
@@ -267,190 +619,1838 @@ public class PdfDocument implements IDisposable{
     }
 
     /**
-     * create the pdf and render according to report types and a time frame
      *
-     * @param window an {@link android.app.Activity} in which to display a progress dialog (Optional)
+     * @return maximum bytes of rendered pages held in memory
      */
-    public void createPdf(Context window) {
-        if (isWorking())
-            return;
-
-        Resources res = _ctx.getResources();
-
-        if (window != null) {
-            if(_ringProgressDialog !=null) {
-                _ringProgressDialog.dismiss();
-            }
-
-            _ringProgressDialog = ProgressDialog.show(window, _txtProgressTitle, _txtProgressMessage, true);
-
-            if(!_ringProgressDialog.isShowing())
-                _ringProgressDialog.show();
-        }
-
-        _thread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                _isWorking = true;
-
-                //_pages_rendered.clear();
-
-                if(!_inflateOnMainThread) {
-                    for (AbstractViewRenderer view : _pages) {
-                        Log.i(TAG_PDF_MY_XML, "render page");
-                        renderView(view);
-                    }
-                }
-
-                internal_generatePdf();
-
-                Log.i(TAG_PDF_MY_XML, "pdf 1");
-
-                clearPages();
-
-                Log.i(TAG_PDF_MY_XML, "pdf 2");
-
-                // go back to the main thread
-                _handler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        if(_ringProgressDialog !=null)
-                            _ringProgressDialog.dismiss();
-
-                        if(_listener != null) {
-                            if(_error != null)
-                                _listener.onError(_error);
-                            else
-                                _listener.onComplete(file);
-                        }
-
-                        Log.i(TAG_PDF_MY_XML, "pdf 3");
-
-                        release();
-                    }
-                });
-
-            }
-
-        });
-
-        _thread.setPriority(Thread.MAX_PRIORITY);
-        _thread.start();
+    public long getMaxHeldBytes() {
+        return _maxHeldBytes;
     }
 
-    private Callback _listener = null;
-
     /**
-     * set a listener for the PDF generation events
+     * set the maximum bytes of encoded pages that are rendered in advance, with
+     * {@link #setInflateOnMainThread(boolean)}, and held in memory until {@link #createPdf(Context)}.
+     * pages past it are spilled into a temp file in the cache directory, and streamed from it
+     * into the pdf, so long documents stay within the heap limit. the file is deleted once the
+     * pdf is complete. by default, an eighth of the heap, and {@code 0} spills every page.
      *
-     * @param listener a {@link com.hendrix.pdfmyxml.PdfDocument.Callback}
+     * @param bytes maximum bytes, {@link Long#MAX_VALUE} never spills
      */
-    public void setListener(Callback listener) {
-        _listener = listener;
+    public void setMaxHeldBytes(long bytes) {
+        _maxHeldBytes = Math.max(0, bytes);
     }
 
-    private void internal_generatePdf()
-    {
-        String name                 = (file_name == null) ? sDefault_Filename_prefix + System.currentTimeMillis() : file_name;
-
-        file_name                   = name + ".pdf";
-        //File dir = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + "pdf");
-        File dir                    = save_directory == null ? _ctx.getExternalFilesDir(null) : save_directory;
-
-        file                        = new File(dir, file_name);
-        _error                      = null;
-
-        try {
-            FileOutputStream fos    = new FileOutputStream(file);//"Example_01.pdf");
-            PDF pdf                 = new com.pdfjet.PDF(fos);
-
-            Page page;
-            Image image;
-            float ar;
-
-            for (InputStream inputStream : _pages_rendered) {
-                page                = new Page(pdf, _orientation.A4());
-                image               = new Image(pdf, inputStream, ImageType.PNG);
-
-                Log.i(TAG_PDF_MY_XML, "add page");
-
-                inputStream.close(); //doesn't do anything in byte array
-
-                ar                  = page.getWidth() / image.getWidth();
-
-                image.scaleBy(ar);
-
-                image.drawOn(page);
-            }
-
-            pdf.flush();
-            fos.close();
-        }
-        catch (Exception exc) {
-            _error = exc;
-        }
-
+    /**
+     *
+     * @return {@code true} if pages are written as soon as they are rendered
+     */
+    public boolean isStreaming() {
+        return _streaming;
     }
 
     /**
-     * render the view
+     * set the streaming mode. when enabled, every page added on the main thread is
+     * rendered, encoded and written into the pdf file right away, and only then released,
+     * so memory is bounded by a single page no matter how long the document is.
+     * the file is opened with the first page, and completed with {@link #createPdf(Context)}.
+     * pages rendered on the background thread are always streamed.
      *
-     * @param page {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param enabled {@code true/false}
      */
-    private void renderView(AbstractViewRenderer page) {
-        page.attachContext(_ctx);
-
-        if(_renderWidth==0 || _renderHeight==0)
-            if(Build.VERSION.SDK_INT <= 17)
-                Log.e(TAG_PDF_MY_XML, "_renderWidth,_renderHeight==0 on API <= 17 can lead to bad behaviour with RelativeLayout and may crash, please use explicit values!!!");
-
-        Bitmap bmp                  = page.render(_renderWidth, _renderHeight);
-        ByteArrayInputStream stream = BitmapUtils.bitmapToPngInputStream(bmp);
+    public void setStreaming(boolean enabled) {
+        _streaming = enabled;
+    }
 
-        page.disposeBitmap();
+    /**
+     * set the number of encoder threads. when positive, pages rendered on the background
+     * thread are compressed on a pool of encoder threads, while the next pages are rendered.
+     * by default, {@code 0}, every page is encoded on the rendering thread right after it is rendered.
+     *
+     * @param threads number of encoder threads
+     *
+     * @see #setMaxPagesInFlight(int)
+     */
+    public void setEncoderThreads(int threads) {
+        _encoderThreads = Math.max(0, threads);
+    }
 
-        _pages_rendered.add(stream);
+    /**
+     * set an executor of encoder threads, that may be shared with other documents. when set, pages
+     * rendered on the background thread are encoded on it, instead of on threads of this document,
+     * and the executor is not shut down by the document.
+     *
+     * @param executor the encoder threads, or {@code null}
+     *
+     * @see com.hendrix.pdfmyxml.encoder.EncoderPipeline#newEncoderExecutor(int)
+     */
+    public void setEncoderExecutor(ExecutorService executor) {
+        _encoderExecutor = executor;
     }
 
     /**
-     * release this class for future usage
+     * set the maximum number of pages that are rendered but not yet written, when
+     * encoding on encoder threads. rendering waits while this limit is reached, so it bounds
+     * the number of page bitmaps held in memory. by default, {@code 0}, it is one more than
+     * the number of encoder threads.
+     *
+     * @param pages maximum number of pages in flight
+     *
+     * @see #setEncoderThreads(int)
      */
-    private void release() {
-        _pages.clear();
-        _pages_rendered.clear();
+    public void setMaxPagesInFlight(int pages) {
+        _maxPagesInFlight = Math.max(0, pages);
+    }
 
-        _error      = null;
-        _isWorking  = false;
+    /**
+     *
+     * @return the image codec of pages
+     */
+    public PageCodec getCodec() {
+        return _codec;
+    }
 
-        file_name   = null;
-        file        = null;
+    /**
+     * set the image codec of pages. a page renderer may override it with
+     * {@link AbstractViewRenderer#setCodec(PageCodec)}. by default, pages
+     * are embedded losslessly with {@link PageCodec#FLATE}.
+     *
+     * @param codec the codec
+     *
+     * @see com.hendrix.pdfmyxml.encoder.PageCodec
+     */
+    public void setCodec(PageCodec codec) {
+        _codec = codec == null ? PageCodec.FLATE : codec;
+    }
 
-        if(_ringProgressDialog != null) {
-            _ringProgressDialog.dismiss();
-            _ringProgressDialog = null;
-        }
+    /**
+     * set the quality of pages encoded with {@link PageCodec#JPEG}. a page renderer
+     * may override it with {@link AbstractViewRenderer#setJpegQuality(int)}.
+     *
+     * @param quality quality of compression {@code 1..100}
+     */
+    public void setJpegQuality(int quality) {
+        _jpegQuality = quality;
     }
 
     /**
-     * dispose the item
+     *
+     * @return the color mode of pages
      */
-    @Override
-    public void dispose() {
-        release();
+    public ColorMode getColorMode() {
+        return _colorMode;
+    }
 
-        _listener = null;
-        _handler = null;
-        _thread = null;
-        _ringProgressDialog = null;
+    /**
+     * set the color mode of pages. a page renderer may override it with
+     * {@link AbstractViewRenderer#setColorMode(ColorMode)}. {@link ColorMode#RGB_565} and
+     * {@link ColorMode#GRAYSCALE} render pages opaque over white with half of the memory,
+     * and {@link ColorMode#GRAYSCALE} embeds them as {@code DeviceGray} images.
+     *
+     * @param mode the color mode
+     *
+     * @see com.hendrix.pdfmyxml.viewRenderer.ColorMode
+     */
+    public void setColorMode(ColorMode mode) {
+        _colorMode = mode == null ? ColorMode.ARGB_8888 : mode;
     }
 
     /**
-     * callback interface for PDF creation
+     *
+     * @return {@code true} if raster pages get an invisible text layer
      */
-    public interface Callback {
+    public boolean isTextLayer() {
+        return _textLayer;
+    }
 
-        /**
-         * successful completion of pdf
+    /**
+     * write the text of the text views of raster pages as invisible text over their images, so the pdf can be
+     * searched and indexed without ocr. the lines of text are collected from the laid out views, with their
+     * position and size, and written with the core fonts in render mode 3. vector pages have real text anyway.
+     *
+     * @param enabled {@code true/false}
+     *
+     * @see com.hendrix.pdfmyxml.vector.TextLayer
+     */
+    public void setTextLayer(boolean enabled) {
+        _textLayer = enabled;
+    }
+
+    /**
+     *
+     * @return {@code true} if the objects of the pdf are packed into object streams
+     */
+    public boolean isObjectStreams() {
+        return _objectStreams;
+    }
+
+    /**
+     * pack the objects of the pdf that are not streams, pages, resources and the page tree, into compressed
+     * object streams, with a cross reference stream instead of a table. pdfjet writes the pdf into a temp
+     * file in the cache directory, that is rewritten into the output once it is complete, so large documents
+     * get smaller and open faster. page content and images are copied as they are. an update of an existing
+     * pdf is not rewritten.
+     *
+     * @param enabled {@code true/false}
+     *
+     * @see com.hendrix.pdfmyxml.update.PdfCompactor
+     */
+    public void setObjectStreams(boolean enabled) {
+        _objectStreams = enabled;
+    }
+
+    /**
+     *
+     * @return {@code true} if tall views are rendered in strips of the height of a page
+     */
+    public boolean isTiled() {
+        return _tiled;
+    }
+
+    /**
+     * set the tiled mode. when enabled, the view of every page is measured as tall as its content,
+     * and drawn in strips of the height of a pdf page, each one into its own page. a strip is drawn
+     * into a bitmap of the strip size that is reused for the next strips, so arbitrarily long layouts
+     * render with the memory of a single page. the strip height is the render height, or if it is
+     * {@code 0}, the height of the page orientation for the rendered width.
+     *
+     * @param enabled {@code true/false}
+     *
+     * @see #setRenderHeight(int)
+     */
+    public void setTiled(boolean enabled) {
+        _tiled = enabled;
+    }
+
+    /**
+     *
+     * @return the render backend of pages
+     */
+    public RenderBackend getBackend() {
+        return _backend;
+    }
+
+    /**
+     * set the render backend of pages. a page renderer may override it with
+     * {@link AbstractViewRenderer#setBackend(RenderBackend)}. with {@link RenderBackend#VECTOR},
+     * the draw calls of a page are written as pdf text and paths, and a page that draws anything
+     * that can not be translated is rendered as a bitmap, like with {@link RenderBackend#RASTER}, the default.
+     *
+     * @param backend the backend
+     *
+     * @see com.hendrix.pdfmyxml.viewRenderer.RenderBackend
+     */
+    public void setBackend(RenderBackend backend) {
+        _backend = backend == null ? RenderBackend.RASTER : backend;
+    }
+
+    /**
+     *
+     * @return {@code true} if identical rendered pages are embedded once
+     */
+    public boolean isDeduplicate() {
+        return _deduplicate;
+    }
+
+    /**
+     * set the deduplication of pages. when enabled, every rendered page is hashed with SHA-1, and a page
+     * identical to one that was rendered before, i.e a blank separator or a repeated cover sheet, is not
+     * encoded, and draws the image of the first one, so the pdf holds it once. pages recorded with the
+     * vector backend are not deduplicated.
+     *
+     * @param enabled {@code true/false}
+     *
+     * @see #setDeduplicateBands(int)
+     */
+    public void setDeduplicate(boolean enabled) {
+        _deduplicate = enabled;
+    }
+
+    /**
+     * set the number of horizontal bands of equal height that rendered pages are split into when
+     * deduplicating, each band an image of its own that is hashed and shared separately, so identical
+     * headers and footers of otherwise different pages are embedded once. by default, {@code 1}, whole pages.
+     *
+     * @param bands number of bands
+     *
+     * @see #setDeduplicate(boolean)
+     */
+    public void setDeduplicateBands(int bands) {
+        _deduplicateBands = Math.max(1, bands);
+    }
+
+    /**
+     *
+     * @return the persistent cache of encoded pages, or {@code null}
+     */
+    public PageCache getPageCache() {
+        return _pageCache;
+    }
+
+    /**
+     * set a persistent cache of encoded pages, i.e in the cache directory of the app. a raster page with a
+     * cache key, {@link AbstractViewRenderer#getCacheKey()}, that was encoded before with the same render size,
+     * dpi, orientation, codec and color mode, by the same version of the app, with the same locale, font scale
+     * and density, is read from the cache into the pdf, without drawing and
+     * encoding it again, and a new one is cached once it is encoded. vector pages, pages with a static layer,
+     * tiled pages, rows, and deduplicated documents are not cached.
+     *
+     * @param cache the page cache, or {@code null}
+     *
+     * @see com.hendrix.pdfmyxml.cache.PageCache
+     */
+    public void setPageCache(PageCache cache) {
+        _pageCache = cache;
+    }
+
+    /**
+     *
+     * @return the pool of page bitmaps
+     */
+    public BitmapPool getBitmapPool() {
+        return _bitmapPool;
+    }
+
+    /**
+     * set the pool of page bitmaps. every page renderer obtains its bitmap from this pool
+     * and returns it when the page is encoded, so pages of the same size share a few bitmaps
+     * instead of allocating one each. by default, the document owns a pool of up to an eighth
+     * of the heap, which is cleared when the pdf is complete. a pool that is set here
+     * is not cleared, so it may be shared by several documents.
+     *
+     * @param pool the bitmap pool
+     */
+    public void setBitmapPool(BitmapPool pool) {
+        if(pool == null)
+            throw new IllegalArgumentException("PdfDocument:: bitmap pool must not be null");
+
+        if(_ownsBitmapPool)
+            _bitmapPool.clear();
+
+        _bitmapPool     = pool;
+        _ownsBitmapPool = false;
+    }
+
+    /**
+     * set a listener of the generation metrics. it is notified of the durations of the stages of
+     * every page, inflate, measure, layout, draw, encode and embed, with the bytes of the rendered
+     * bitmap and of the encoded page, and finally of the whole document, with the flush and total
+     * durations. pages added before the listener was set are not reported.
+     *
+     * @param listener the listener, or {@code null}
+     *
+     * @see com.hendrix.pdfmyxml.metrics.MetricsListener
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        _metricsListener = listener;
+    }
+
+    /**
+     * set a listener of the generation progress, it is notified after every page that is
+     * written into the pdf, on the thread that writes it
+     *
+     * @param listener the listener, or {@code null}
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument.ProgressListener
+     */
+    public void setProgressListener(ProgressListener listener) {
+        _progressListener = listener;
+    }
+
+    /**
+     *
+     * @return {@code true} if the generation was cancelled, and was not released yet
+     */
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /**
+     * cancel the generation of the pdf. it stops before the next page or strip, the pages that
+     * were not written are released, and the incomplete file is deleted. the listener is notified
+     * with a {@link CancellationException}, and {@link #generatePdf()} throws it.
+     * if the pdf is not being generated, the added pages and a streamed incomplete file are
+     * discarded right away.
+     */
+    public void cancel() {
+        synchronized (_stateLock) {
+            _cancelled = true;
+
+            if(!isWorking()) {
+                closeQuietly();
+                deleteFile();
+                release();
+
+                return;
+            }
+
+            // wake the background thread if it waits for encoder threads
+            Thread thread = _thread;
+
+            if(thread != null)
+                thread.interrupt();
+        }
+    }
+
+    /**
+     * create the pdf and render according to report types and a time frame
+     *
+     * @param window an {@link android.app.Activity} in which to display a progress dialog (Optional)
+     */
+    public void createPdf(Context window) {
+        if (isWorking())
+            return;
+
+        Resources res = _ctx.getResources();
+
+        if (window != null) {
+            if(_ringProgressDialog !=null) {
+                _ringProgressDialog.dismiss();
+            }
+
+            _ringProgressDialog = ProgressDialog.show(window, _txtProgressTitle, _txtProgressMessage, true);
+
+            if(!_ringProgressDialog.isShowing())
+                _ringProgressDialog.show();
+        }
+
+        if(_handler == null)
+            _handler = new Handler();
+
+        _isWorking = true;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                internal_generatePdf();
+
+                Log.i(TAG_PDF_MY_XML, "pdf 1");
+
+                clearPages();
+
+                Log.i(TAG_PDF_MY_XML, "pdf 2");
+
+                // go back to the main thread
+                _handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(_ringProgressDialog !=null)
+                            _ringProgressDialog.dismiss();
+
+                        if(_listener != null) {
+                            if(_error != null)
+                                _listener.onError(_error);
+                            else
+                                _listener.onComplete(file);
+                        }
+
+                        Log.i(TAG_PDF_MY_XML, "pdf 3");
+
+                        release();
+                    }
+                });
+
+            }
+
+        });
+
+        _thread = thread;
+
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * create the pdf on the calling thread, without a progress dialog and without
+     * notifying the listener. use it on a thread of your own, i.e with {@link BatchRenderer}.
+     *
+     * @return the pdf file
+     *
+     * @throws Exception if the pdf could not be created
+     * @throws IllegalStateException if the pdf is being generated already
+     */
+    public File generatePdf() throws Exception {
+        if (isWorking())
+            throw new IllegalStateException("PdfDocument:: pdf is being generated already");
+
+        _isWorking = true;
+
+        return generate();
+    }
+
+    /**
+     * create the pdf on an executor of your own, instead of a new thread, without a progress dialog.
+     * the listener is notified on the callback executor once the pdf is complete, failed or cancelled.
+     * cancelling the future cancels the generation, like {@link #cancel()}, and the future is cancelled, and the
+     * listener notified, once the generation has stopped and this document is released.
+     *
+     * @param executor          the executor to generate the pdf on
+     * @param callbackExecutor  the executor to notify the listener on, i.e a main thread executor,
+     *                          or {@code null} to notify it on the generating thread
+     *
+     * @return the future pdf file
+     *
+     * @throws IllegalStateException if the pdf is being generated already
+     * @throws java.util.concurrent.RejectedExecutionException if the executor rejected the generation
+     */
+    public Future<File> createPdf(Executor executor, Executor callbackExecutor) {
+        if(executor == null)
+            throw new IllegalArgumentException("PdfDocument:: executor was not set!!");
+
+        if (isWorking())
+            throw new IllegalStateException("PdfDocument:: pdf is being generated already");
+
+        _isWorking = true;
+
+        final AtomicBoolean started = new AtomicBoolean(false);
+        Generation generation       = new Generation(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                if(!started.compareAndSet(false, true))
+                    throw new CancellationException("PdfDocument:: pdf generation was cancelled");
+
+                return generate();
+            }
+        }, started, callbackExecutor);
+
+        try {
+            executor.execute(generation);
+        }
+        catch (RuntimeException exc) {
+            _isWorking = false;
+
+            throw exc;
+        }
+
+        return generation;
+    }
+
+    /**
+     * generate the pdf on the calling thread, and release this document
+     *
+     * @return the pdf file
+     *
+     * @throws Exception if the pdf could not be created
+     */
+    private File generate() throws Exception {
+        _thread = Thread.currentThread();
+
+        try {
+            internal_generatePdf();
+
+            if(_error != null)
+                throw _error;
+
+            return file;
+        }
+        finally {
+            synchronized (_stateLock) {
+                _thread = null;
+
+                // do not leave the interrupt of a cancel on a pooled thread
+                if(_cancelled)
+                    Thread.interrupted();
+
+                release();
+            }
+        }
+    }
+
+    private Callback _listener = null;
+
+    /**
+     * set a listener for the PDF generation events
+     *
+     * @param listener a {@link com.hendrix.pdfmyxml.PdfDocument.Callback}
+     */
+    public void setListener(Callback listener) {
+        _listener = listener;
+    }
+
+    private void internal_generatePdf()
+    {
+        try {
+            if(_error != null)
+                throw _error;
+
+            if(_metricsListener != null)
+                documentMetrics();
+
+            // strips of tiled pages, and pages of rows, are not known in advance
+            boolean paginated = _tiled;
+
+            for (AbstractViewRenderer page : _pages)
+                paginated |= page instanceof RowsRenderer;
+
+            _pagesTotal = paginated ? -1 : _pagesWritten + _pages_rendered.size() + _pages.size();
+
+            openPdf();
+
+            // the spilled pages are read back from the spool file
+            if(_spool != null)
+                _spool.flush();
+
+            // pages that were rendered in advance
+            for (int ix = 0; ix < _pages_rendered.size(); ix++) {
+                checkCancelled();
+
+                writePage(_pages_rendered.get(ix));
+
+                _pages_rendered.set(ix, null);
+            }
+
+            // pages that are rendered now, one at a time
+            if(_encoderThreads > 0 || _encoderExecutor != null)
+                renderPagesPipelined();
+            else {
+                EncoderPipeline.Consumer<Callable<EncodedPage>> writer = new EncoderPipeline.Consumer<Callable<EncodedPage>>() {
+                    @Override
+                    public void consume(Callable<EncodedPage> task) throws Exception {
+                        writePage(task.call());
+                    }
+                };
+
+                for (int ix = 0; ix < _pages.size(); ix++) {
+                    checkCancelled();
+
+                    renderPage(_pages.get(ix), writer);
+
+                    _pages.set(ix, null);
+                }
+            }
+
+            closePdf();
+        }
+        catch (Exception exc) {
+            _error = exc;
+
+            closeQuietly();
+
+            if(_cancelled) {
+                _error = new CancellationException("PdfDocument:: pdf generation was cancelled");
+
+                deleteFile();
+            }
+        }
+
+    }
+
+    /**
+     * render the pages, while the previous pages are encoded on the encoder threads
+     *
+     * @throws Exception if a page could not be rendered, encoded or written
+     */
+    private void renderPagesPipelined() throws Exception
+    {
+        int maxInFlight             = _maxPagesInFlight > 0 ? _maxPagesInFlight : Math.max(1, _encoderThreads) + 1;
+
+        EncoderPipeline.Consumer<EncodedPage> writer = new EncoderPipeline.Consumer<EncodedPage>() {
+            @Override
+            public void consume(EncodedPage page) throws Exception {
+                writePage(page);
+            }
+        };
+
+        final EncoderPipeline<EncodedPage> pipeline = _encoderExecutor != null
+                ? new EncoderPipeline<>(_encoderExecutor, maxInFlight, writer)
+                : new EncoderPipeline<>(_encoderThreads, maxInFlight, writer);
+
+        EncoderPipeline.Consumer<Callable<EncodedPage>> submitter = new EncoderPipeline.Consumer<Callable<EncodedPage>>() {
+            @Override
+            public void consume(Callable<EncodedPage> task) throws Exception {
+                pipeline.submit(task);
+            }
+        };
+
+        try {
+            for (int ix = 0; ix < _pages.size(); ix++) {
+                checkCancelled();
+
+                renderPage(_pages.get(ix), submitter);
+
+                _pages.set(ix, null);
+            }
+
+            pipeline.finish();
+        }
+        finally {
+            pipeline.dispose();
+        }
+    }
+
+    /**
+     * open the pdf file for writing, if it was not opened yet
+     *
+     * @throws Exception if the file could not be created
+     */
+    private void openPdf() throws Exception
+    {
+        if(_pdf != null)
+            return;
+
+        OutputSink sink             = _outputSink;
+
+        // the pages of an update are written into a temp pdf, and appended to the updated pdf once it is complete
+        if(_update != null)
+            sink                    = new FileSink(File.createTempFile("update", ".pdf", _ctx.getCacheDir()));
+        else if(sink == null) {
+            String name             = (file_name == null) ? sDefault_Filename_prefix + System.currentTimeMillis() : file_name;
+
+            file_name               = name + ".pdf";
+            //File dir = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + File.separator + "pdf");
+            File dir                = save_directory == null ? _ctx.getExternalFilesDir(null) : save_directory;
+
+            // pdfjet writes byte after byte, the sink buffers it into large writes
+            sink                    = new FileSink(new File(dir, file_name));
+        }
+
+        file                        = _update != null ? _update.getFile() : sink.getFile();
+
+        // pdfjet writes a temp pdf, that is rewritten with object streams into the sink
+        if(_update == null && _objectStreams) {
+            _compactSink            = sink;
+            sink                    = new FileSink(File.createTempFile("compact", ".pdf", _ctx.getCacheDir()));
+        }
+
+        _sink                       = sink;
+
+        _fos                        = new CountingOutputStream(sink.open());
+        _pdf                        = new PDF(_fos);
+    }
+
+    /**
+     * write an encoded page into a new page of the pdf, and release it
+     *
+     * @param encoded the encoded page
+     *
+     * @throws Exception if the page could not be written
+     */
+    private void writePage(EncodedPage encoded) throws Exception
+    {
+        checkCancelled();
+
+        long start                  = System.nanoTime();
+        long written                = _fos.getCount();
+
+        Page page                   = new Page(_pdf, _orientation.A4());
+
+        Log.i(TAG_PDF_MY_XML, "add page");
+
+        encoded.drawOn(_pdf, page);
+
+        if(encoded.getOverlay() != null)
+            encoded.getOverlay().drawOn(_pdf, page);
+
+        PageMetrics metrics         = encoded.getMetrics();
+
+        if(metrics != null && _metricsListener != null) {
+            metrics.addNanos(PageMetrics.Stage.EMBED, System.nanoTime() - start);
+            metrics.setEncodedBytes(_fos.getCount() - written);
+            metrics.setIndex(_pagesWritten);
+
+            documentMetrics().add(metrics);
+            _metricsListener.onPage(metrics);
+        }
+
+        _pagesWritten++;
+
+        if(_progressListener != null)
+            _progressListener.onProgress(_pagesWritten, _pagesTotal);
+    }
+
+    /**
+     * complete the pdf and close the file
+     *
+     * @throws Exception if the pdf could not be completed
+     */
+    private void closePdf() throws Exception
+    {
+        long start                  = System.nanoTime();
+
+        _pdf.flush();
+        _sink.close();
+
+        // the bytes of the output, not of a temp pdf
+        long bytes                  = _fos.getCount();
+
+        if(_update != null)
+            bytes                   = applyUpdate();
+        else if(_compactSink != null)
+            bytes                   = compact();
+
+        if(_metricsListener != null) {
+            DocumentMetrics metrics = documentMetrics();
+
+            metrics.complete(System.nanoTime() - start, bytes);
+            _metricsListener.onDocument(metrics);
+        }
+
+        _pdf                        = null;
+        _fos                        = null;
+        _sink                       = null;
+    }
+
+    /**
+     * append the pages of the temp pdf to the updated pdf, and delete it
+     *
+     * @return number of bytes appended to the updated pdf
+     *
+     * @throws IOException if the update could not be written
+     */
+    private long applyUpdate() throws IOException
+    {
+        int[] replaced              = new int[_replaced.size()];
+        long length                 = _update.getFile().length();
+
+        for (int ix = 0; ix < replaced.length; ix++)
+            replaced[ix]            = _replaced.get(ix);
+
+        try {
+            _update.apply(_sink.getFile(), replaced);
+
+            return _update.getFile().length() - length;
+        }
+        finally {
+            deleteTemp(_sink.getFile());
+        }
+    }
+
+    /**
+     * rewrite the temp pdf with object streams into the sink, and delete it
+     *
+     * @return number of bytes written into the sink
+     *
+     * @throws IOException if the pdf could not be rewritten
+     */
+    private long compact() throws IOException
+    {
+        // the sink is aborted by closeQuietly() if it fails
+        try {
+            CountingOutputStream os = new CountingOutputStream(_compactSink.open());
+
+            new PdfCompactor().compact(_sink.getFile(), os);
+
+            _compactSink.close();
+            _compactSink            = null;
+
+            return os.getCount();
+        }
+        finally {
+            deleteTemp(_sink.getFile());
+        }
+    }
+
+    /**
+     * delete a temp file, i.e the pdf of an update
+     *
+     * @param temp the file
+     */
+    private static void deleteTemp(File temp)
+    {
+        if(temp != null && temp.exists() && !temp.delete())
+            Log.e(TAG_PDF_MY_XML, "could not delete " + temp);
+    }
+
+    /**
+     * delete the pdf file, i.e an incomplete one. an updated pdf is restored, and not deleted.
+     */
+    private void deleteFile()
+    {
+        if(_update != null)
+            return;
+
+        if(file != null && file.exists() && !file.delete())
+            Log.e(TAG_PDF_MY_XML, "could not delete " + file);
+    }
+
+    /**
+     * @throws CancellationException if the generation was cancelled, or the thread was
+     *                               interrupted, i.e a disposed {@link BatchRenderer}
+     */
+    private void checkCancelled()
+    {
+        if(Thread.currentThread().isInterrupted())
+            _cancelled = true;
+
+        if(_cancelled)
+            throw new CancellationException("PdfDocument:: pdf generation was cancelled");
+    }
+
+    /**
+     * @return new metrics of a page, or {@code null} if there is no metrics listener
+     */
+    private PageMetrics newPageMetrics()
+    {
+        if(_metricsListener == null)
+            return null;
+
+        documentMetrics();
+
+        return new PageMetrics();
+    }
+
+    /**
+     * @return the metrics of the document being generated, they start with the first call
+     */
+    private DocumentMetrics documentMetrics()
+    {
+        if(_documentMetrics == null)
+            _documentMetrics        = new DocumentMetrics(System.nanoTime());
+
+        return _documentMetrics;
+    }
+
+    /**
+     * close the file of an incomplete pdf, if it is open
+     */
+    private void closeQuietly()
+    {
+        if(_sink != null) {
+            _sink.abort();
+
+            if(_update != null || _compactSink != null)
+                deleteTemp(_sink.getFile());
+        }
+
+        if(_compactSink != null)
+            _compactSink.abort();
+
+        _compactSink                = null;
+
+        _pdf                        = null;
+        _fos                        = null;
+        _sink                       = null;
+    }
+
+    /**
+     * render a page into tasks that complete its encoding, one task for every pdf page. a task releases
+     * the bitmap it encodes, so the memory is bounded by the tasks that were not called yet.
+     *
+     * @param page  {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param tasks consumes the encoding tasks in order, i.e calls them right away, or hands them to encoder threads
+     *
+     * @throws Exception if the page could not be rendered, or a task failed
+     */
+    private void renderPage(AbstractViewRenderer page, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        Log.i(TAG_PDF_MY_XML, "render page");
+
+        if(page instanceof RowsRenderer) {
+            renderRows((RowsRenderer)page, tasks);
+            return;
+        }
+
+        if(_tiled) {
+            renderTiles(page, tasks);
+            return;
+        }
+
+        page.setMetrics(newPageMetrics());
+
+        try {
+            renderView(page, layoutWidth(), layoutHeight(), tasks);
+        }
+        finally {
+            page.setMetrics(null);
+            // the drawn view goes back into its view pool, for the next page of the layout
+            page.releaseView();
+        }
+    }
+
+    /**
+     * render the view of a page into a single pdf page, with the backend of the page
+     *
+     * @param page      {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param width     the render width
+     * @param height    the render height
+     * @param tasks     consumes the encoding task of the page
+     *
+     * @throws Exception if the page could not be rendered, or a task failed
+     */
+    private void renderView(AbstractViewRenderer page, int width, int height, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        if(page.getStaticLayer() != null) {
+            renderLayered(page, width, height, tasks);
+            return;
+        }
+
+        if(backendOf(page) == RenderBackend.VECTOR) {
+            page.attachContext(_ctx);
+
+            View view           = page.measureAndLayout(width, height);
+            EncodedPage vector  = recordVector(page, 0, view.getHeight());
+
+            if(vector != null) {
+                tasks.consume(completed(vector));
+                return;
+            }
+        }
+
+        String key              = cacheKeyOf(page, width, height);
+
+        if(key != null) {
+            EncodedPage cached  = _pageCache.get(key);
+
+            if(cached != null) {
+                // the text is collected from the laid out view, that is not drawn
+                if(_textLayer) {
+                    page.attachContext(_ctx);
+                    page.measureAndLayout(width, height);
+                    cached.setOverlay(TextLayer.of(page.getView()));
+                }
+
+                cached.setMetrics(page.getMetrics());
+                tasks.consume(completed(cached));
+                return;
+            }
+        }
+
+        EncodeTask task         = encodeTask(page, renderBitmap(page, width, height), null);
+
+        task.cacheAs(key);
+        task.overlay(textLayerOf(page));
+        tasks.consume(task);
+    }
+
+    /**
+     * @param page      a page renderer
+     * @param width     the render width
+     * @param height    the render height
+     *
+     * @return the key of the encoded page in the page cache, or {@code null} if it is not cached
+     */
+    private String cacheKeyOf(AbstractViewRenderer page, int width, int height) {
+        // deduplicated pages share images with other pages
+        if(_pageCache == null || _deduplicate || backendOf(page) != RenderBackend.RASTER)
+            return null;
+
+        String key              = page.getCacheKey();
+
+        if(key == null)
+            return null;
+
+        return key + ':' + width + 'x' + height + ':' + dpiWidth() + ':' + _orientation + ':' + codecOf(page) + ':'
+               + jpegQualityOf(page) + ':' + colorModeOf(page) + ':' + cacheEnvironment();
+    }
+
+    /**
+     * the layouts, and the resources they resolve, change with an update of the app and with the configuration
+     *
+     * @return the version of the app, and the locale, font scale and density of the configuration
+     */
+    private String cacheEnvironment() {
+        if(_cacheEnvironment != null)
+            return _cacheEnvironment;
+
+        StringBuilder sb                = new StringBuilder(64);
+
+        try {
+            PackageInfo info            = _ctx.getPackageManager().getPackageInfo(_ctx.getPackageName(), 0);
+
+            sb.append(info.versionCode).append('-').append(info.lastUpdateTime);
+        }
+        catch (PackageManager.NameNotFoundException exc) {
+            sb.append('?');
+        }
+
+        Resources resources             = _ctx.getResources();
+        Configuration config            = resources.getConfiguration();
+
+        sb.append(':').append(config.locale).append(':').append(config.fontScale)
+          .append(':').append(resources.getDisplayMetrics().densityDpi);
+
+        return _cacheEnvironment        = sb.toString();
+    }
+
+    /**
+     * pack the rows into pages of the height of a pdf page, and render every page once it is full,
+     * so only the rows of a single page are held
+     *
+     * @param rows  the rows renderer
+     * @param tasks consumes the encoding tasks of the pages in order
+     *
+     * @throws Exception if a page could not be rendered, or a task failed
+     */
+    private void renderRows(RowsRenderer rows, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        int width                   = layoutWidth();
+
+        if(width <= 0)
+            throw new IllegalStateException("PdfDocument:: rows need an explicit render width, or a dpi");
+
+        float[] a4                  = _orientation.A4();
+        int pageHeight              = layoutHeight() > 0 ? layoutHeight() : Math.round(width * a4[1] / a4[0]);
+
+        rows.attachContext(_ctx);
+
+        while (rows.hasNextPage()) {
+            checkCancelled();
+
+            rows.setMetrics(newPageMetrics());
+
+            try {
+                rows.nextPage(width, pageHeight);
+
+                renderView(rows, width, pageHeight, tasks);
+            }
+            finally {
+                rows.setMetrics(null);
+            }
+        }
+    }
+
+    /**
+     * render a page in strips of the height of a pdf page, into bitmaps of the strip size
+     *
+     * @param page  {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param tasks consumes the encoding tasks of the strips in order
+     *
+     * @throws Exception if the page could not be rendered, or a task failed
+     */
+    private void renderTiles(AbstractViewRenderer page, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        page.attachContext(_ctx);
+        page.setBitmapPool(_bitmapPool);
+        page.setMetrics(newPageMetrics());
+
+        try {
+            renderStrips(page, tasks);
+        }
+        finally {
+            page.setMetrics(null);
+            page.releaseView();
+        }
+    }
+
+    /**
+     * measure the page, and render it strip after strip
+     *
+     * @see #renderTiles(AbstractViewRenderer, EncoderPipeline.Consumer)
+     */
+    private void renderStrips(AbstractViewRenderer page, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        // the height is not limited, the view is as tall as its content
+        View view                   = page.measureAndLayout(layoutWidth(), 0);
+        int width                   = view.getWidth();
+        int height                  = view.getHeight();
+
+        if(width <= 0 || height <= 0)
+            throw new IllegalStateException("PdfDocument:: page has no size, " + width + "x" + height);
+
+        float[] a4                  = _orientation.A4();
+        int stripHeight             = layoutHeight() > 0 ? layoutHeight() : Math.round(width * a4[1] / a4[0]);
+        float scale                 = bitmapScale(width);
+        ColorMode mode              = colorModeOf(page);
+        boolean vector              = backendOf(page) == RenderBackend.VECTOR;
+        TextLayer text              = textLayerOf(page);
+
+        for (int top = 0; top < height; top += stripHeight) {
+            checkCancelled();
+
+            // every strip is a page of its own, the first one is measured and laid out too
+            if(top > 0)
+                page.setMetrics(newPageMetrics());
+
+            if(vector) {
+                EncodedPage strip   = recordVector(page, top, stripHeight);
+
+                if(strip != null) {
+                    tasks.consume(completed(strip));
+                    continue;
+                }
+
+                // the other strips can not be recorded either
+                vector              = false;
+            }
+
+            // strips of the same size are handed back by the pool, once they are encoded
+            Bitmap strip            = BitmapUtils.obtainBitmap(_bitmapPool, MeasureUtils.scaled(width, scale),
+                                                               MeasureUtils.scaled(stripHeight, scale), mode.getConfig());
+
+            if(!mode.hasAlpha())
+                strip.eraseColor(Color.WHITE);
+
+            Canvas canvas           = new Canvas(strip);
+            canvas.scale(scale, scale);
+            canvas.translate(0, -top);
+
+            page.draw(canvas);
+
+            EncodeTask task         = encodeTask(page, strip, null);
+
+            task.overlay(text == null ? null : text.slice(top, top + stripHeight));
+            tasks.consume(task);
+        }
+    }
+
+    /**
+     * render the dynamic layer of a page over its static layer, the static layer is rendered with
+     * the first page of its size, and shared by the next ones
+     *
+     * @param page      {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance with a static layer
+     * @param width     the render width
+     * @param height    the render height
+     * @param tasks     consumes the encoding task of the page
+     *
+     * @throws Exception if the page could not be rendered, or a task failed
+     */
+    private void renderLayered(AbstractViewRenderer page, int width, int height, EncoderPipeline.Consumer<Callable<EncodedPage>> tasks) throws Exception {
+        page.attachContext(_ctx);
+        page.setBitmapPool(_bitmapPool);
+
+        View view                   = page.measureAndLayout(width, height);
+
+        width                       = view.getWidth();
+        height                      = view.getHeight();
+
+        if(width <= 0 || height <= 0)
+            throw new IllegalStateException("PdfDocument:: page has no size, " + width + "x" + height);
+
+        boolean gray                = colorModeOf(page).isGray();
+        EncodedPage background      = staticLayerOf(page);
+
+        if(backendOf(page) == RenderBackend.VECTOR) {
+            VectorCanvas canvas     = new VectorCanvas(width, height, gray);
+
+            page.drawDynamicLayer(canvas);
+
+            EncodedPage recorded    = recorded(page, canvas);
+
+            if(recorded != null) {
+                LayeredPage layered = new LayeredPage(background, recorded);
+
+                layered.setMetrics(recorded.getMetrics());
+                tasks.consume(completed(layered));
+                return;
+            }
+        }
+
+        // the dynamic layer keeps its alpha whatever the color mode, the static layer shows through it
+        float scale                 = bitmapScale(width);
+        Bitmap bmp                  = BitmapUtils.obtainBitmap(_bitmapPool, MeasureUtils.scaled(width, scale),
+                                                           MeasureUtils.scaled(height, scale), Bitmap.Config.ARGB_8888);
+        Canvas canvas               = new Canvas(bmp);
+
+        canvas.scale(scale, scale);
+        page.drawDynamicLayer(canvas);
+
+        EncodeTask task             = encodeTask(page, bmp, background);
+
+        task.overlay(textLayerOf(page));
+        tasks.consume(task);
+    }
+
+    /**
+     * @param page a laid out page renderer with a static layer
+     *
+     * @return the static layer of the page, rendered and encoded once for the layer and the page size
+     *
+     * @throws IOException if the layer could not be encoded
+     */
+    private EncodedPage staticLayerOf(AbstractViewRenderer page) throws IOException {
+        View view                   = page.getView();
+        LayerKey key                = new LayerKey(page.getStaticLayer(), view.getWidth(), view.getHeight());
+        EncodedPage background      = _staticLayers.get(key);
+
+        if(background != null)
+            return background;
+
+        ColorMode mode              = colorModeOf(page);
+
+        if(backendOf(page) == RenderBackend.VECTOR) {
+            VectorCanvas canvas     = new VectorCanvas(key.width, key.height, mode.isGray());
+
+            page.drawStaticLayer(canvas);
+
+            if(canvas.isSupported())
+                background          = canvas.getPage();
+            else
+                Log.i(TAG_PDF_MY_XML, "static layer is rendered as a bitmap, can not record " + canvas.getUnsupportedReason());
+        }
+
+        if(background == null) {
+            float scale             = bitmapScale(key.width);
+            Bitmap bmp              = BitmapUtils.obtainBitmap(_bitmapPool, MeasureUtils.scaled(key.width, scale),
+                                                               MeasureUtils.scaled(key.height, scale), mode.getConfig());
+            PageMetrics metrics     = page.getMetrics();
+
+            // the static layer is the bottom of the page
+            bmp.eraseColor(Color.WHITE);
+
+            try {
+                Canvas canvas       = new Canvas(bmp);
+
+                canvas.scale(scale, scale);
+                page.drawStaticLayer(canvas);
+
+                long start          = System.nanoTime();
+
+                background          = encodeRendered(bmp, codecOf(page), jpegQualityOf(page), mode.isGray());
+
+                if(metrics != null) {
+                    metrics.addBitmapBytes(BitmapPool.sizeOf(bmp));
+                    metrics.addNanos(PageMetrics.Stage.ENCODE, System.nanoTime() - start);
+                }
+            }
+            finally {
+                _bitmapPool.release(bmp);
+            }
+        }
+
+        _staticLayers.put(key, background);
+
+        return background;
+    }
+
+    /**
+     * @param page a laid out raster page renderer
+     *
+     * @return the text layer of the page, or {@code null} if there is none
+     */
+    private TextLayer textLayerOf(AbstractViewRenderer page) {
+        return _textLayer ? TextLayer.of(page.getView()) : null;
+    }
+
+    /**
+     * @param page          the page renderer
+     * @param bmp           the rendered bitmap, owned by this document
+     * @param background    the static layer to draw the bitmap over, or {@code null}
+     *
+     * @return a task that encodes the bitmap, and releases it into the bitmap pool
+     */
+    private EncodeTask encodeTask(AbstractViewRenderer page, Bitmap bmp, EncodedPage background) {
+        PageMetrics metrics         = page.getMetrics();
+
+        if(metrics != null)
+            metrics.addBitmapBytes(BitmapPool.sizeOf(bmp));
+
+        return new EncodeTask(bmp, codecOf(page), jpegQualityOf(page), colorModeOf(page).isGray(), metrics,
+                              _deduplicate ? _deduplicateBands : 0, background);
+    }
+
+    /**
+     * @param encoded a page that needs no encoding, i.e a recorded vector page
+     *
+     * @return a task that only keeps the page in line
+     */
+    private static Callable<EncodedPage> completed(final EncodedPage encoded) {
+        return new Callable<EncodedPage>() {
+            @Override
+            public EncodedPage call() throws Exception {
+                return encoded;
+            }
+        };
+    }
+
+    /**
+     * encode a rendered bitmap that is owned by this document
+     *
+     * @param bmp       the rendered bitmap, it may be modified
+     * @param codec     the codec
+     * @param quality   the JPEG quality
+     * @param gray      {@code true} to embed a gray image
+     *
+     * @return the encoded page
+     *
+     * @throws IOException if the page could not be encoded
+     */
+    private EncodedPage encodeRendered(Bitmap bmp, PageCodec codec, int quality, boolean gray) throws IOException {
+        // spare the JPEG codec a temporary opaque copy
+        if(codec == PageCodec.JPEG && bmp.hasAlpha())
+            BitmapUtils.flattenOnWhite(bmp);
+
+        return codec.encode(bmp, quality, gray, _bitmapPool);
+    }
+
+    /**
+     *
+     * @return the width views are laid out with, the render width, or the width of the page at the dpi
+     */
+    private int layoutWidth() {
+        return _renderWidth > 0 ? _renderWidth : dpiWidth();
+    }
+
+    /**
+     *
+     * @return the height views are laid out with, the render height, or the height of the page at the dpi
+     *         if the render width is not set either
+     */
+    private int layoutHeight() {
+        if(_renderHeight > 0 || _renderWidth > 0 || _dpi <= 0)
+            return _renderHeight;
+
+        return MeasureUtils.pointsToPixels(_orientation.A4()[1], _dpi);
+    }
+
+    /**
+     *
+     * @return the width of the page at the dpi, or {@code 0} if there is no dpi
+     */
+    private int dpiWidth() {
+        return _dpi > 0 ? MeasureUtils.pointsToPixels(_orientation.A4()[0], _dpi) : 0;
+    }
+
+    /**
+     * @param width the width of a laid out view
+     *
+     * @return the scale of the bitmaps the view is drawn into, so they have the width of the page at the dpi
+     */
+    private float bitmapScale(int width) {
+        return _dpi > 0 && width > 0 ? dpiWidth() / (float)width : 1f;
+    }
+
+    /**
+     * @param page a page renderer
+     *
+     * @return the codec of the page, or of the document if the page has none
+     */
+    private PageCodec codecOf(AbstractViewRenderer page) {
+        return page.getCodec() != null ? page.getCodec() : _codec;
+    }
+
+    /**
+     * @param page a page renderer
+     *
+     * @return the render backend of the page, or of the document if the page has none
+     */
+    private RenderBackend backendOf(AbstractViewRenderer page) {
+        return page.getBackend() != null ? page.getBackend() : _backend;
+    }
+
+    /**
+     * @param page a page renderer
+     *
+     * @return the color mode of the page, or of the document if the page has none
+     */
+    private ColorMode colorModeOf(AbstractViewRenderer page) {
+        return page.getColorMode() != null ? page.getColorMode() : _colorMode;
+    }
+
+    /**
+     * @param page a page renderer
+     *
+     * @return the JPEG quality of the page, or of the document if the page has none
+     */
+    private int jpegQualityOf(AbstractViewRenderer page) {
+        return page.getJpegQuality() > 0 ? page.getJpegQuality() : _jpegQuality;
+    }
+
+    /**
+     * render the view into a bitmap that is detached from the renderer
+     *
+     * @param page    {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param width   the render width
+     * @param height  the render height
+     *
+     * @return the rendered bitmap, owned by the caller
+     */
+    private Bitmap renderBitmap(AbstractViewRenderer page, int width, int height) {
+        page.attachContext(_ctx);
+        page.setBitmapPool(_bitmapPool);
+
+        if(width==0 || height==0)
+            if(Build.VERSION.SDK_INT <= 17)
+                Log.e(TAG_PDF_MY_XML, "_renderWidth,_renderHeight==0 on API <= 17 can lead to bad behaviour with RelativeLayout and may crash, please use explicit values!!!");
+
+        page.render(width, height, colorModeOf(page), dpiWidth());
+
+        return page.detachBitmap();
+    }
+
+    /**
+     * record the draw calls of a laid out view as pdf operators
+     *
+     * @param page      {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance, laid out
+     * @param top       the top of the recorded strip of the view
+     * @param height    the height of the recorded strip of the view
+     *
+     * @return the recorded page, or {@code null} if the view draws something that can not be
+     *         recorded, and has to be rendered into a bitmap
+     */
+    private EncodedPage recordVector(AbstractViewRenderer page, int top, int height) {
+        View view                   = page.getView();
+
+        if(view.getWidth() <= 0 || height <= 0)
+            return null;
+
+        VectorCanvas canvas         = new VectorCanvas(view.getWidth(), height, colorModeOf(page).isGray());
+        canvas.translate(0, -top);
+
+        page.draw(canvas);
+
+        return recorded(page, canvas);
+    }
+
+    /**
+     * @param page      {@link com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer} instance
+     * @param canvas    the canvas the page was drawn into
+     *
+     * @return the recorded page, or {@code null} if the page drew something that can not be recorded
+     */
+    private EncodedPage recorded(AbstractViewRenderer page, VectorCanvas canvas) {
+        if(!canvas.isSupported()) {
+            Log.i(TAG_PDF_MY_XML, "page is rendered as a bitmap, can not record " + canvas.getUnsupportedReason());
+            return null;
+        }
+
+        EncodedPage recorded        = canvas.getPage();
+        PageMetrics metrics         = page.getMetrics();
+
+        if(metrics != null) {
+            metrics.setVector(true);
+            recorded.setMetrics(metrics);
+        }
+
+        return recorded;
+    }
+
+    /**
+     * release this class for future usage. a cancel either sees the document working, or released.
+     */
+    private void release() {
+        synchronized (_stateLock) {
+            _pages.clear();
+            clearRenderedPages();
+
+            closeQuietly();
+
+            if(_ownsBitmapPool)
+                _bitmapPool.clear();
+
+            _error      = null;
+
+            _pagesWritten       = 0;
+            _pagesTotal         = -1;
+            _documentMetrics    = null;
+            _cancelled          = false;
+
+            _sharedImages.clear();
+            _staticLayers.clear();
+            // the configuration may change until the next pdf
+            _cacheEnvironment   = null;
+
+            file_name   = null;
+            file        = null;
+            _outputSink = null;
+            _update     = null;
+
+            _replaced.clear();
+
+            if(_ringProgressDialog != null) {
+                _ringProgressDialog.dismiss();
+                _ringProgressDialog = null;
+            }
+
+            // last, a cancel that finds the document idle discards what is left of it
+            _isWorking  = false;
+        }
+    }
+
+    /**
+     * dispose the item
+     */
+    @Override
+    public void dispose() {
+        release();
+
+        _listener = null;
+        _handler = null;
+        _thread = null;
+        _ringProgressDialog = null;
+    }
+
+    /**
+     * a task that encodes a rendered bitmap, and releases it. it is skipped if the generation
+     * was cancelled, and releases the bitmap if it is disposed without running.
+     * <p>
+     * when deduplicating, the bands of the bitmap are hashed when the task is created, on the rendering
+     * thread, so the first page that claims a band is the first one written, and the bands that were
+     * claimed before are not encoded.
+     */
+    private class EncodeTask implements Callable<EncodedPage>, IDisposable {
+        private Bitmap      _bmp;
+        private PageCodec   _codec;
+        private int         _quality;
+        private boolean     _gray;
+        private PageMetrics _metrics;
+        // the keys of the bands of the bitmap, or null if not deduplicated
+        private String[]    _keys       = null;
+        // the bands that were claimed by this page
+        private boolean[]   _claimed    = null;
+        private int         _bandHeight = 0;
+        // the static layer the bitmap is drawn over, or null
+        private EncodedPage _background;
+        // the key of the encoded page in the page cache, or null
+        private String      _cacheKey   = null;
+        // written over the encoded page, or null
+        private PageOverlay _overlay    = null;
+
+        /**
+         * @param bands         number of bands to deduplicate, {@code 0} to encode the whole bitmap as is
+         * @param background    the static layer of the page, or {@code null}. the bitmap is its transparent dynamic layer.
+         */
+        EncodeTask(Bitmap bmp, PageCodec codec, int quality, boolean gray, PageMetrics metrics, int bands, EncodedPage background) {
+            _bmp        = bmp;
+            _codec      = codec;
+            _quality    = quality;
+            _gray       = gray;
+            _metrics    = metrics;
+            _background = background;
+
+            if(bands <= 0)
+                return;
+
+            int height  = bmp.getHeight();
+
+            bands       = Math.min(bands, height);
+            _bandHeight = (height + bands - 1) / bands;
+            _keys       = new String[bands];
+            _claimed    = new boolean[bands];
+
+            for (int ix = 0; ix < bands; ix++) {
+                int top         = ix * _bandHeight;
+
+                _keys[ix]       = (background != null ? "layer:" : codec.name()) + ':' + gray + ':' + quality + ':' + top + ':'
+                                  + BitmapUtils.digestOf(bmp, top, Math.min(_bandHeight, height - top));
+                _claimed[ix]    = _sharedImages.claim(_keys[ix]);
+            }
+        }
+
+        @Override
+        public EncodedPage call() throws Exception {
+            try {
+                checkCancelled();
+
+                long start          = System.nanoTime();
+                EncodedPage encoded = _keys == null ? encode(_bmp) : encodeBands();
+
+                if(_background != null)
+                    encoded         = new LayeredPage(_background, encoded);
+                else if(_cacheKey != null && _keys == null)
+                    encoded         = _pageCache.put(_cacheKey, encoded);
+
+                encoded.setOverlay(_overlay);
+
+                if(_metrics != null) {
+                    _metrics.addNanos(PageMetrics.Stage.ENCODE, System.nanoTime() - start);
+                    encoded.setMetrics(_metrics);
+                }
+
+                return encoded;
+            }
+            finally {
+                dispose();
+            }
+        }
+
+        /**
+         * encode the bands that were claimed by this page, and share the others
+         */
+        private EncodedPage encodeBands() throws IOException {
+            int width               = _bmp.getWidth();
+            int height              = _bmp.getHeight();
+
+            if(_keys.length == 1)
+                return encodeBand(0, 0, height);
+
+            EncodedPage[] bands     = new EncodedPage[_keys.length];
+            int[] tops              = new int[_keys.length];
+
+            for (int ix = 0; ix < _keys.length; ix++) {
+                tops[ix]            = ix * _bandHeight;
+                bands[ix]           = encodeBand(ix, tops[ix], Math.min(_bandHeight, height - tops[ix]));
+            }
+
+            return new BandedPage(bands, tops, width);
+        }
+
+        private EncodedPage encodeBand(int index, int top, int height) throws IOException {
+            if(!_claimed[index])
+                return new SharedPage(_keys[index], _sharedImages);
+
+            boolean whole           = height == _bmp.getHeight();
+            Bitmap band             = whole ? _bmp : Bitmap.createBitmap(_bmp, 0, top, _bmp.getWidth(), height);
+            EncodedPage encoded;
+
+            try {
+                encoded             = encode(band);
+            }
+            finally {
+                if(!whole)
+                    band.recycle();
+            }
+
+            encoded.share(_keys[index], _sharedImages);
+
+            return encoded;
+        }
+
+        /**
+         * @param key the key to cache the encoded page with, or {@code null}
+         */
+        void cacheAs(String key) {
+            _cacheKey = key;
+        }
+
+        /**
+         * @param overlay written over the encoded page, i.e its text layer, or {@code null}
+         */
+        void overlay(PageOverlay overlay) {
+            _overlay = overlay;
+        }
+
+        /**
+         * encode with the codec of the page, or a dynamic layer with flate, the codec that keeps its alpha
+         */
+        private EncodedPage encode(Bitmap bmp) throws IOException {
+            if(_background != null)
+                return PageCodec.flate(bmp, _gray, true);
+
+            return encodeRendered(bmp, _codec, _quality, _gray);
+        }
+
+        @Override
+        public void dispose() {
+            if(_bmp != null)
+                _bitmapPool.release(_bmp);
+
+            _bmp = null;
+        }
+    }
+
+    /**
+     * the key of a rendered static layer, the layer instance and the page size
+     */
+    private static final class LayerKey {
+        final StaticLayer   layer;
+        final int           width;
+        final int           height;
+
+        LayerKey(StaticLayer layer, int width, int height) {
+            this.layer  = layer;
+            this.width  = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof LayerKey))
+                return false;
+
+            LayerKey key = (LayerKey)o;
+
+            return layer == key.layer && width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(layer) * 31 + width) * 31 + height;
+        }
+    }
+
+    /**
+     * a generation of the pdf on an executor
+     *
+     * @see #createPdf(Executor, Executor)
+     */
+    private class Generation extends FutureTask<File> {
+        // the generation was run or cancelled
+        private final AtomicBoolean _started;
+        private final Executor      _callbackExecutor;
+        // the running generation was cancelled, the future is cancelled once it stops
+        private volatile boolean    _cancelling         = false;
+
+        /**
+         * @param generation        generates the pdf, unless it was started already
+         * @param started           the generation was run or cancelled
+         * @param callbackExecutor  the executor to notify the listener on, or {@code null}
+         */
+        Generation(Callable<File> generation, AtomicBoolean started, Executor callbackExecutor) {
+            super(generation);
+
+            _started            = started;
+            _callbackExecutor   = callbackExecutor;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if(isDone())
+                return false;
+
+            // a generation that never ran holds the pages, discard them right away
+            if(_started.compareAndSet(false, true)) {
+                _isWorking = false;
+
+                PdfDocument.this.cancel();
+
+                return super.cancel(false);
+            }
+
+            // a running generation deletes the file and releases the document first, the listener
+            // is notified once it has stopped
+            _cancelling = true;
+
+            PdfDocument.this.cancel();
+
+            return true;
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            if(_cancelling && t instanceof CancellationException)
+                super.cancel(false);
+            else
+                super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            final Callback listener = _listener;
+
+            if(listener == null)
+                return;
+
+            Runnable notify = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        listener.onComplete(get());
+                    }
+                    catch (CancellationException exc) {
+                        listener.onError(exc);
+                    }
+                    catch (ExecutionException exc) {
+                        Throwable cause = exc.getCause();
+
+                        listener.onError(cause instanceof Exception ? (Exception)cause : exc);
+                    }
+                    catch (InterruptedException exc) {
+                        listener.onError(exc);
+                    }
+                }
+            };
+
+            if(_callbackExecutor != null)
+                _callbackExecutor.execute(notify);
+            else
+                notify.run();
+        }
+    }
+
+    /**
+     * listener of the generation progress
+     */
+    public interface ProgressListener {
+
+        /**
+         * a page was written into the pdf
+         *
+         * @param pages number of pages written so far
+         * @param total number of pages of the pdf, or {@code -1} if it is not known, i.e in tiled mode
+         */
+        void onProgress(int pages, int total);
+    }
+
+    /**
+     * callback interface for PDF creation
+     */
+    public interface Callback {
+
+        /**
+         * successful completion of pdf
          *
          * @param file the file
          */
@@ -494,6 +2494,21 @@ public class PdfDocument implements IDisposable{
             return this;
         }
 
+        /**
+         * add rows of a single layout, packed into pages
+         *
+         * @param rowLayoutResId    the layout resource id of a row
+         * @param count             number of rows
+         * @param binder            binds a row view to the data of a position
+         *
+         * @see PdfDocument#addRows(int, int, RowsRenderer.Binder)
+         */
+        public Builder addRows(int rowLayoutResId, int count, RowsRenderer.Binder binder) {
+            _doc.addRows(rowLayoutResId, count, binder);
+
+            return this;
+        }
+
         /**
          * set the rendered width in {@code Pixels} of the {@link AbstractViewRenderer}
          *
@@ -518,6 +2533,45 @@ public class PdfDocument implements IDisposable{
             return this;
         }
 
+        /**
+         * set the resolution of rendered pages on the pdf page
+         *
+         * @param dpi the resolution in dots per inch, or {@code 0} to render bitmaps at the render size
+         *
+         * @see PdfDocument#setDpi(int)
+         */
+        public Builder dpi(int dpi) {
+            _doc.setDpi(dpi);
+
+            return this;
+        }
+
+        /**
+         * set a persistent cache of encoded pages
+         *
+         * @param cache the page cache
+         *
+         * @see PdfDocument#setPageCache(PageCache)
+         */
+        public Builder pageCache(PageCache cache) {
+            _doc.setPageCache(cache);
+
+            return this;
+        }
+
+        /**
+         * set the maximum bytes of rendered pages held in memory
+         *
+         * @param bytes maximum bytes
+         *
+         * @see PdfDocument#setMaxHeldBytes(long)
+         */
+        public Builder maxHeldBytes(long bytes) {
+            _doc.setMaxHeldBytes(bytes);
+
+            return this;
+        }
+
         /**
          * add a page with a rendered bitmap. <b>the bitmap will not be recycled</b>, it's up to
          * the user to recycle.
@@ -553,6 +2607,19 @@ public class PdfDocument implements IDisposable{
             return this;
         }
 
+        /**
+         * set the sink the pdf is written into, instead of a file in the save directory
+         *
+         * @param sink the sink
+         *
+         * @see PdfDocument#setOutputSink(OutputSink)
+         */
+        public Builder outputSink(OutputSink sink) {
+            _doc.setOutputSink(sink);
+
+            return this;
+        }
+
         /**
          * set the inflation of views on the Main thread.
          * use it, in case you are having inflation errors.
@@ -567,6 +2634,161 @@ public class PdfDocument implements IDisposable{
             return this;
         }
 
+        /**
+         * set the number of encoder threads that compress pages while the next pages are rendered
+         *
+         * @param threads number of encoder threads, {@code 0} to encode on the rendering thread
+         *
+         * @see PdfDocument#setEncoderThreads(int)
+         */
+        public Builder encoderThreads(int threads) {
+            _doc.setEncoderThreads(threads);
+
+            return this;
+        }
+
+        /**
+         * set an executor of encoder threads, that may be shared with other documents
+         *
+         * @param executor the encoder threads, or {@code null}
+         *
+         * @see PdfDocument#setEncoderExecutor(ExecutorService)
+         */
+        public Builder encoderExecutor(ExecutorService executor) {
+            _doc.setEncoderExecutor(executor);
+
+            return this;
+        }
+
+        /**
+         * set the maximum number of pages that are rendered but not yet written
+         *
+         * @param pages maximum number of pages in flight, {@code 0} for automatic
+         *
+         * @see PdfDocument#setMaxPagesInFlight(int)
+         */
+        public Builder maxPagesInFlight(int pages) {
+            _doc.setMaxPagesInFlight(pages);
+
+            return this;
+        }
+
+        /**
+         * set the image codec of pages
+         *
+         * @param codec the codec
+         *
+         * @see PdfDocument#setCodec(PageCodec)
+         */
+        public Builder codec(PageCodec codec) {
+            _doc.setCodec(codec);
+
+            return this;
+        }
+
+        /**
+         * set the quality of pages encoded with {@link PageCodec#JPEG}
+         *
+         * @param quality quality of compression {@code 1..100}
+         */
+        public Builder jpegQuality(int quality) {
+            _doc.setJpegQuality(quality);
+
+            return this;
+        }
+
+        /**
+         * set the color mode of pages
+         *
+         * @param mode the color mode
+         *
+         * @see PdfDocument#setColorMode(ColorMode)
+         */
+        public Builder colorMode(ColorMode mode) {
+            _doc.setColorMode(mode);
+
+            return this;
+        }
+
+        /**
+         * set the pool of page bitmaps, i.e to share it between documents
+         *
+         * @param pool the bitmap pool
+         *
+         * @see PdfDocument#setBitmapPool(BitmapPool)
+         */
+        public Builder bitmapPool(BitmapPool pool) {
+            _doc.setBitmapPool(pool);
+
+            return this;
+        }
+
+        /**
+         * render tall views in strips of the height of a page, each one into its own page
+         *
+         * @param enabled {@code true/false}
+         *
+         * @see PdfDocument#setTiled(boolean)
+         */
+        public Builder tiled(boolean enabled) {
+            _doc.setTiled(enabled);
+
+            return this;
+        }
+
+        /**
+         * write the text of raster pages as an invisible text layer
+         *
+         * @param enabled {@code true/false}
+         *
+         * @see PdfDocument#setTextLayer(boolean)
+         */
+        public Builder textLayer(boolean enabled) {
+            _doc.setTextLayer(enabled);
+
+            return this;
+        }
+
+        /**
+         * pack the objects of the pdf into object streams
+         *
+         * @param enabled {@code true/false}
+         *
+         * @see PdfDocument#setObjectStreams(boolean)
+         */
+        public Builder objectStreams(boolean enabled) {
+            _doc.setObjectStreams(enabled);
+
+            return this;
+        }
+
+        /**
+         * set the render backend of pages
+         *
+         * @param backend the backend
+         *
+         * @see PdfDocument#setBackend(RenderBackend)
+         */
+        public Builder backend(RenderBackend backend) {
+            _doc.setBackend(backend);
+
+            return this;
+        }
+
+        /**
+         * set the streaming mode. when enabled, every page is written into the pdf
+         * file as soon as it is rendered, and only then released. call it before adding pages.
+         *
+         * @param enabled {@code true/false}
+         *
+         * @see PdfDocument#setStreaming(boolean)
+         */
+        public Builder streaming(boolean enabled) {
+            _doc.setStreaming(enabled);
+
+            return this;
+        }
+
         /**
          * set a listener for the PDF generation events
          *
@@ -578,6 +2800,58 @@ public class PdfDocument implements IDisposable{
             return this;
         }
 
+        /**
+         * set the deduplication of identical pages
+         *
+         * @param enabled {@code true/false}
+         *
+         * @see PdfDocument#setDeduplicate(boolean)
+         */
+        public Builder deduplicate(boolean enabled) {
+            _doc.setDeduplicate(enabled);
+
+            return this;
+        }
+
+        /**
+         * set the number of bands that pages are deduplicated in
+         *
+         * @param bands number of bands
+         *
+         * @see PdfDocument#setDeduplicateBands(int)
+         */
+        public Builder deduplicateBands(int bands) {
+            _doc.setDeduplicateBands(bands);
+
+            return this;
+        }
+
+        /**
+         * set a listener of the generation metrics
+         *
+         * @param listener a {@link com.hendrix.pdfmyxml.metrics.MetricsListener}
+         *
+         * @see PdfDocument#setMetricsListener(MetricsListener)
+         */
+        public Builder metricsListener(MetricsListener listener) {
+            _doc.setMetricsListener(listener);
+
+            return this;
+        }
+
+        /**
+         * set a listener of the generation progress
+         *
+         * @param listener a {@link com.hendrix.pdfmyxml.PdfDocument.ProgressListener}
+         *
+         * @see PdfDocument#setProgressListener(ProgressListener)
+         */
+        public Builder progressListener(ProgressListener listener) {
+            _doc.setProgressListener(listener);
+
+            return this;
+        }
+
         /**
          * set the orientation
          *
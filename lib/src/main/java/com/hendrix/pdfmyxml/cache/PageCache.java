@@ -0,0 +1,337 @@
+package com.hendrix.pdfmyxml.cache;
+
+import android.util.Log;
+
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a persistent cache of encoded pages in a directory, i.e the cache directory of the app, bounded
+ * by a byte budget. pages are keyed by a string that identifies the rendered content, and when the
+ * budget is exceeded, the least recently used pages are deleted first. a cached page is read
+ * from its file into the pdf, without rendering and encoding it again. it is thread safe.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setPageCache(PageCache)
+ *
+ * @author Tomer Shalev
+ */
+public class PageCache {
+    static private final String TAG         = "PageCache";
+    static private final String SUFFIX      = ".page";
+    // the version of the file format, a part of every file name
+    static private final int    VERSION     = 1;
+
+    private final File                      _dir;
+    // sizes of cached pages by file name, in least recently used order
+    private final LinkedHashMap<String, Long> _index = new LinkedHashMap<>(64, 0.75f, true);
+    private long                            _maxBytes;
+    private long                            _bytes  = 0;
+
+    /**
+     * @param dir       the directory of the cache, it is created if needed
+     * @param maxBytes  maximum bytes of cached pages
+     */
+    public PageCache(File dir, long maxBytes) {
+        if(dir == null)
+            throw new IllegalArgumentException("PageCache:: directory was not set!!");
+
+        _dir        = dir;
+        _maxBytes   = maxBytes;
+
+        if(!dir.isDirectory() && !dir.mkdirs())
+            Log.e(TAG, "could not create " + dir);
+
+        load();
+    }
+
+    /**
+     * index the pages that were cached before, by their last use
+     */
+    private void load() {
+        File[] files = _dir.listFiles();
+
+        if(files == null)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+
+        synchronized (this) {
+            for (File file : files) {
+                if(!file.getName().endsWith(SUFFIX))
+                    continue;
+
+                _index.put(file.getName(), file.length());
+                _bytes += file.length();
+            }
+
+            trimTo(_maxBytes);
+        }
+    }
+
+    /**
+     * @param key the key of the page
+     *
+     * @return the cached page, or {@code null} if it is not cached. it is read from its file right away,
+     *         so it does not depend on the file once it is evicted.
+     */
+    public EncodedPage get(String key) {
+        String name = nameOf(key);
+        File file   = new File(_dir, name);
+
+        synchronized (this) {
+            if(!_index.containsKey(name))
+                return null;
+
+            // the order of use survives the process
+            if(!file.setLastModified(System.currentTimeMillis()))
+                Log.w(TAG, "could not touch " + file);
+        }
+
+        DataInputStream is = null;
+
+        try {
+            is              = new DataInputStream(new FileInputStream(file));
+
+            int imageType   = is.readInt();
+
+            byte[] bytes    = readFully(is);
+
+            return new EncodedPage(new ByteArrayInputStream(bytes), imageType, bytes.length);
+        }
+        catch (IOException exc) {
+            Log.w(TAG, "could not read " + file, exc);
+
+            remove(name);
+
+            return null;
+        }
+        finally {
+            if(is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * cache an encoded page. the page stream is read, so the page is returned with a new stream of the
+     * same bytes. the page is not cached if it could not be written, and the pdf is not affected.
+     *
+     * @param key   the key of the page
+     * @param page  an encoded page, with a stream that was not read yet
+     *
+     * @return the page to embed instead of the given one
+     *
+     * @throws IOException if the page stream could not be read
+     */
+    public EncodedPage put(String key, EncodedPage page) throws IOException {
+        byte[] bytes        = readFully(page.getStream());
+        EncodedPage copy    = new EncodedPage(new ByteArrayInputStream(bytes), page.getImageType(), bytes.length);
+        String name         = nameOf(key);
+        File file           = new File(_dir, name);
+        File temp           = new File(_dir, name + ".tmp");
+
+        copy.copyOf(page);
+
+        if(bytes.length + 4 > _maxBytes)
+            return copy;
+
+        DataOutputStream os = null;
+
+        try {
+            os              = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            os.writeInt(page.getImageType());
+            os.write(bytes);
+            os.close();
+            os              = null;
+
+            synchronized (this) {
+                if(!temp.renameTo(file))
+                    throw new IOException("could not rename " + temp);
+
+                Long size   = _index.put(name, file.length());
+
+                _bytes     += file.length() - (size == null ? 0 : size);
+
+                trimTo(_maxBytes);
+            }
+        }
+        catch (IOException exc) {
+            Log.w(TAG, "could not cache " + file, exc);
+
+            if(os != null) {
+                try {
+                    os.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            if(temp.exists() && !temp.delete())
+                Log.w(TAG, "could not delete " + temp);
+        }
+
+        return copy;
+    }
+
+    /**
+     *
+     * @return bytes of cached pages
+     */
+    public synchronized long getSize() {
+        return _bytes;
+    }
+
+    /**
+     * set the maximum bytes of cached pages, and evict pages above it
+     *
+     * @param maxBytes maximum bytes of cached pages
+     */
+    public synchronized void setMaxSize(long maxBytes) {
+        _maxBytes = maxBytes;
+
+        trimTo(maxBytes);
+    }
+
+    /**
+     * delete all of the cached pages
+     */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    private synchronized void remove(String name) {
+        Long size = _index.remove(name);
+
+        if(size != null)
+            _bytes -= size;
+
+        File file = new File(_dir, name);
+
+        if(file.exists() && !file.delete())
+            Log.w(TAG, "could not delete " + file);
+    }
+
+    /**
+     * delete the least recently used pages until the cache fits into the budget
+     *
+     * @param maxBytes the budget
+     */
+    private void trimTo(long maxBytes) {
+        Iterator<Map.Entry<String, Long>> iterator = _index.entrySet().iterator();
+
+        while (_bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file   = new File(_dir, entry.getKey());
+
+            if(file.exists() && !file.delete())
+                Log.w(TAG, "could not delete " + file);
+
+            _bytes     -= entry.getValue();
+
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @param key the key of a page
+     *
+     * @return the file name of the page
+     */
+    private static String nameOf(String key) {
+        return "v" + VERSION + "_" + sha1(key.getBytes(Charset.forName("UTF-8"))) + SUFFIX;
+    }
+
+    /**
+     * a fingerprint of the data of a page, for the key of the page
+     *
+     * @param data the data of a page
+     *
+     * @return a digest of the serialized data, or {@code null} if the data is not {@link Serializable}
+     */
+    public static String fingerprintOf(Object data) {
+        if(!(data instanceof Serializable))
+            return null;
+
+        try {
+            ByteArrayOutputStream bos   = new ByteArrayOutputStream(256);
+            ObjectOutputStream oos      = new ObjectOutputStream(bos);
+
+            oos.writeObject(data);
+            oos.close();
+
+            return sha1(bos.toByteArray());
+        }
+        catch (IOException exc) {
+            // i.e a field that is not serializable
+            return null;
+        }
+    }
+
+    private static String sha1(byte[] bytes) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("PageCache:: no SHA-1", exc);
+        }
+
+        StringBuilder sb = new StringBuilder(40);
+
+        for (byte b : digest.digest(bytes))
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+
+        return sb.toString();
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        if(is == null)
+            throw new IllegalStateException("PageCache:: page has no stream");
+
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream(Math.max(32, is.available()));
+        byte[] buffer               = new byte[16 * 1024];
+        int read;
+
+        try {
+            while ((read = is.read(buffer)) > 0)
+                bos.write(buffer, 0, read);
+        }
+        finally {
+            is.close();
+        }
+
+        return bos.toByteArray();
+    }
+}
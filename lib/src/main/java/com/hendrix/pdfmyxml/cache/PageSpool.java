@@ -0,0 +1,123 @@
+package com.hendrix.pdfmyxml.cache;
+
+import android.util.Log;
+
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+import com.hendrix.pdfmyxml.encoder.FilePage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * a temp file that encoded pages are spilled into, one after the other, when the rendered pages
+ * that wait to be written exceed their memory budget. a spilled page is read back from the file
+ * only when it is embedded, after the spool is flushed. the file is created with the first spilled page, and deleted with
+ * {@link #delete()}.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setMaxHeldBytes(long)
+ *
+ * @author Tomer Shalev
+ */
+public class PageSpool {
+    static private final String TAG = "PageSpool";
+
+    private final File      _dir;
+    // the spool file, or null before the first page
+    private File            _file   = null;
+    private OutputStream    _os     = null;
+    // bytes written into the spool file
+    private long            _bytes  = 0;
+
+    /**
+     * @param dir the directory of the spool file, i.e the cache directory of the app
+     */
+    public PageSpool(File dir) {
+        if(dir == null)
+            throw new IllegalArgumentException("PageSpool:: directory was not set!!");
+
+        _dir = dir;
+    }
+
+    /**
+     * write an encoded page into the spool file. the stream of the page is read and closed.
+     *
+     * @param page an encoded page, with a stream that was not read yet
+     *
+     * @return a page that is read from the spool file once it is embedded, with the same metrics
+     *
+     * @throws IOException if the page could not be written
+     */
+    public synchronized EncodedPage spill(EncodedPage page) throws IOException {
+        InputStream is = page.getStream();
+
+        if(is == null)
+            throw new IllegalStateException("PageSpool:: page has no stream");
+
+        if(_os == null) {
+            _file   = File.createTempFile("pages", ".spool", _dir);
+            _os     = new BufferedOutputStream(new FileOutputStream(_file), 64 * 1024);
+        }
+
+        long offset     = _bytes;
+        byte[] buffer   = new byte[16 * 1024];
+        int read;
+
+        try {
+            while ((read = is.read(buffer)) > 0) {
+                _os.write(buffer, 0, read);
+                _bytes += read;
+            }
+        }
+        finally {
+            is.close();
+        }
+
+        FilePage spilled = new FilePage(_file, offset, _bytes - offset, page.getImageType());
+
+        spilled.copyOf(page);
+
+        return spilled;
+    }
+
+    /**
+     * flush the spilled pages into the spool file, before they are read back
+     *
+     * @throws IOException if the pages could not be written
+     */
+    public synchronized void flush() throws IOException {
+        if(_os != null)
+            _os.flush();
+    }
+
+    /**
+     *
+     * @return bytes that were spilled
+     */
+    public synchronized long getSize() {
+        return _bytes;
+    }
+
+    /**
+     * close and delete the spool file. the spilled pages can not be embedded afterwards.
+     */
+    public synchronized void delete() {
+        if(_os != null) {
+            try {
+                _os.close();
+            } catch (IOException exc) {
+                Log.w(TAG, "could not close " + _file, exc);
+            }
+        }
+
+        if(_file != null && _file.exists() && !_file.delete())
+            Log.w(TAG, "could not delete " + _file);
+
+        _os     = null;
+        _file   = null;
+        _bytes  = 0;
+    }
+}
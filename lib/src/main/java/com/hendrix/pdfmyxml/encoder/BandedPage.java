@@ -0,0 +1,78 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.pdfjet.Image;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+/**
+ * a page that is encoded in horizontal bands, each band an image of its own, so identical
+ * bands of different pages, i.e headers and footers, may share a single image
+ *
+ * @author Tomer Shalev
+ */
+public class BandedPage extends EncodedPage {
+    private EncodedPage[]   _bands;
+    private int[]           _tops;
+    private int             _width;
+
+    /**
+     * @param bands the encoded bands, top to bottom
+     * @param tops  the top of every band in pixels
+     * @param width the width of the page in pixels
+     */
+    public BandedPage(EncodedPage[] bands, int[] tops, int width) {
+        if(bands.length != tops.length)
+            throw new IllegalArgumentException("BandedPage:: " + bands.length + " bands with " + tops.length + " tops");
+
+        _bands  = bands;
+        _tops   = tops;
+        _width  = width;
+    }
+
+    /**
+     *
+     * @return number of bands
+     */
+    public int getBandCount() {
+        return _bands.length;
+    }
+
+    /**
+     * @param index the index of a band, top to bottom
+     *
+     * @return the encoded band
+     */
+    public EncodedPage getBand(int index) {
+        return _bands[index];
+    }
+
+    /**
+     * @param index the index of a band, top to bottom
+     * @param band  the encoded band, i.e once it is spilled to disk
+     */
+    public void setBand(int index, EncodedPage band) {
+        _bands[index] = band;
+    }
+
+    /**
+     * draw the bands over the whole width of the page
+     *
+     * @param pdf   the pdf
+     * @param page  a new page of the pdf
+     *
+     * @throws Exception if the page could not be written
+     */
+    @Override
+    public void drawOn(PDF pdf, Page page) throws Exception {
+        float scale = page.getWidth() / _width;
+
+        for (int ix = 0; ix < _bands.length; ix++) {
+            Image image = _bands[ix].embed(pdf, page.getWidth());
+
+            image.setPosition(0, _tops[ix] * scale);
+            image.drawOn(page);
+
+            _bands[ix]  = null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.hendrix.pdfmyxml.metrics.PageMetrics;
+import com.pdfjet.Image;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * an encoded page image, ready to be embedded into a pdf
+ *
+ * @author Tomer Shalev
+ */
+public class EncodedPage {
+    private InputStream     _stream;
+    private int             _imageType;
+    // length of the encoded image in bytes, or -1 if it is not known
+    private long            _length     = -1;
+    private PageMetrics     _metrics    = null;
+    // written over the page once it is drawn, or null
+    private PageOverlay     _overlay    = null;
+    // the embedded image, once it is embedded
+    private Image           _image      = null;
+    // the key of the image in the shared images, or null
+    private String          _key        = null;
+    private SharedImages    _shared     = null;
+
+    protected EncodedPage() {
+    }
+
+    /**
+     * @param stream    the encoded image
+     * @param imageType the image type in pdfjet lib, i.e {@link com.pdfjet.ImageType#JPG}
+     */
+    public EncodedPage(InputStream stream, int imageType) {
+        this(stream, imageType, -1);
+    }
+
+    /**
+     * @param stream    the encoded image
+     * @param imageType the image type in pdfjet lib, i.e {@link com.pdfjet.ImageType#JPG}
+     * @param length    the length of the encoded image in bytes, or {@code -1} if it is not known
+     */
+    public EncodedPage(InputStream stream, int imageType, long length) {
+        _stream     = stream;
+        _imageType  = imageType;
+        _length     = length;
+    }
+
+    /**
+     *
+     * @return the encoded image
+     */
+    public InputStream getStream() {
+        return _stream;
+    }
+
+    /**
+     *
+     * @return the image type in pdfjet lib
+     */
+    public int getImageType() {
+        return _imageType;
+    }
+
+    /**
+     *
+     * @return the length of the encoded image in bytes, or {@code -1} if it is not known
+     */
+    public long getLength() {
+        return _length;
+    }
+
+    /**
+     *
+     * @return the metrics of the page, or {@code null} if they are not recorded
+     */
+    public PageMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * @param metrics the metrics of the page, or {@code null}
+     */
+    public void setMetrics(PageMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     *
+     * @return the overlay of the page, or {@code null}
+     */
+    public PageOverlay getOverlay() {
+        return _overlay;
+    }
+
+    /**
+     * @param overlay content to write over the page once it is drawn, i.e its text layer, or {@code null}
+     */
+    public void setOverlay(PageOverlay overlay) {
+        _overlay = overlay;
+    }
+
+    /**
+     * share the image with identical pages, once it is embedded
+     *
+     * @param key       the key of the image, i.e a digest of its pixels
+     * @param shared    the shared images of the pdf
+     *
+     * @see com.hendrix.pdfmyxml.encoder.SharedPage
+     */
+    public void share(String key, SharedImages shared) {
+        _key        = key;
+        _shared     = shared;
+    }
+
+    /**
+     * take over the metrics, the overlay and the shared image key of a page, that this page is a copy of,
+     * i.e once it is spilled to disk
+     *
+     * @param page the original page
+     */
+    public void copyOf(EncodedPage page) {
+        _metrics    = page._metrics;
+        _overlay    = page._overlay;
+        _key        = page._key;
+        _shared     = page._shared;
+    }
+
+    /**
+     * embed the image into the pdf, the first call embeds it and closes the stream,
+     * and the next calls return the same image
+     *
+     * @param pdf   the pdf
+     * @param width the width to scale the image to, in points
+     *
+     * @return the image
+     *
+     * @throws Exception if the image could not be embedded
+     */
+    public Image embed(PDF pdf, float width) throws Exception {
+        if(_image != null)
+            return _image;
+
+        InputStream stream = openStream();
+
+        if(stream == null)
+            throw new IllegalStateException("EncodedPage:: no image to embed");
+
+        Image image;
+
+        try {
+            image   = new Image(pdf, stream, _imageType);
+        }
+        finally {
+            stream.close(); //doesn't do anything in byte array
+            _stream = null;
+        }
+
+        float ar    = width / image.getWidth();
+
+        image.scaleBy(ar);
+
+        if(_shared != null)
+            _shared.put(_key, image);
+
+        return _image = image;
+    }
+
+    /**
+     * open the stream of the encoded image to embed, it is closed once it is embedded
+     *
+     * @return the stream, by default the one the page was created with
+     *
+     * @throws IOException if the stream could not be opened
+     */
+    protected InputStream openStream() throws IOException {
+        return _stream;
+    }
+
+    /**
+     * embed the page image, and draw it over the whole width of the page. the stream is closed.
+     *
+     * @param pdf   the pdf
+     * @param page  a new page of the pdf
+     *
+     * @throws Exception if the page could not be written
+     */
+    public void drawOn(PDF pdf, Page page) throws Exception {
+        Image image = embed(pdf, page.getWidth());
+
+        image.setPosition(0, 0);
+        image.drawOn(page);
+    }
+}
@@ -0,0 +1,219 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.hendrix.pdfmyxml.interfaces.IDisposable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a bounded producer/consumer pipeline for encoding pages.
+ * the producer renders the next page while the previous ones are encoded on a pool
+ * of encoder threads, and the encoded pages are handed to the {@link Consumer} on the
+ * producer thread, in the order they were submitted. at most {@code maxInFlight}
+ * pages are held at any moment, when that limit is reached the producer blocks
+ * until the oldest page is encoded and consumed.
+ *
+ * @param <T> the type of an encoded page
+ *
+ * @author Tomer Shalev
+ */
+public class EncoderPipeline<T> implements IDisposable {
+    // the encoder threads
+    private ExecutorService               _executor      = null;
+    // shut down the executor when disposed
+    private boolean                       _ownsExecutor  = false;
+    // maximum number of pages in flight
+    private int                           _maxInFlight   = 1;
+    // the consumer of encoded pages
+    private Consumer<T>                   _consumer      = null;
+    // pages in flight, oldest first
+    private final ArrayDeque<Pending<T>>  _inFlight      = new ArrayDeque<>();
+
+    /**
+     * consumer of encoded pages
+     *
+     * @param <T> the type of an encoded page
+     */
+    public interface Consumer<T> {
+
+        /**
+         * consume an encoded page
+         *
+         * @param page the encoded page
+         *
+         * @throws Exception if the page could not be consumed
+         */
+        void consume(T page) throws Exception;
+    }
+
+    /**
+     * create a pipeline with its own pool of encoder threads
+     *
+     * @param threads       number of encoder threads
+     * @param maxInFlight   maximum number of pages that are rendered but not yet consumed
+     * @param consumer      the consumer of encoded pages
+     */
+    public EncoderPipeline(int threads, int maxInFlight, Consumer<T> consumer) {
+        this(newEncoderExecutor(threads), maxInFlight, consumer);
+
+        _ownsExecutor = true;
+    }
+
+    /**
+     * create a pipeline on top of an existing executor, which will not be shut down
+     * when the pipeline is disposed
+     *
+     * @param executor      the encoder threads
+     * @param maxInFlight   maximum number of pages that are rendered but not yet consumed
+     * @param consumer      the consumer of encoded pages
+     */
+    public EncoderPipeline(ExecutorService executor, int maxInFlight, Consumer<T> consumer) {
+        _executor       = executor;
+        _maxInFlight    = Math.max(1, maxInFlight);
+        _consumer       = consumer;
+    }
+
+    /**
+     * create a pool of daemon encoder threads, that may be shared by several pipelines
+     *
+     * @param threads number of encoder threads
+     *
+     * @return the executor
+     */
+    public static ExecutorService newEncoderExecutor(int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), new EncoderThreadFactory());
+    }
+
+    /**
+     * submit an encoding task of a rendered page. blocks while the pipeline is full.
+     *
+     * @param task the encoding task, it owns the rendered page and should release it. if it
+     *             implements {@link IDisposable}, it is disposed when it is abandoned before it runs.
+     *
+     * @throws Exception if a previous page failed to encode or to be consumed
+     */
+    public void submit(Callable<T> task) throws Exception {
+        while(_inFlight.size() >= _maxInFlight)
+            consumeOldest();
+
+        Pending<T> pending = new Pending<>(task);
+
+        _executor.execute(pending);
+        _inFlight.add(pending);
+    }
+
+    /**
+     * wait for all of the pages in flight and consume them
+     *
+     * @throws Exception if a page failed to encode or to be consumed
+     */
+    public void finish() throws Exception {
+        while(!_inFlight.isEmpty())
+            consumeOldest();
+    }
+
+    /**
+     *
+     * @return number of pages that are rendered but not yet consumed
+     */
+    public int getInFlight() {
+        return _inFlight.size();
+    }
+
+    private void consumeOldest() throws Exception {
+        Pending<T> future = _inFlight.poll();
+
+        T page;
+
+        try {
+            page = future.get();
+        }
+        catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+
+            if(cause instanceof Exception)
+                throw (Exception)cause;
+
+            throw exc;
+        }
+
+        _consumer.consume(page);
+    }
+
+    /**
+     * dispose the item. pages in flight are abandoned, and the tasks that did not run yet are disposed.
+     */
+    @Override
+    public void dispose() {
+        for (Pending<T> pending : _inFlight)
+            pending.abandon();
+
+        _inFlight.clear();
+
+        if(_ownsExecutor)
+            _executor.shutdown();
+
+        _executor = null;
+        _consumer = null;
+    }
+
+    /**
+     * an encoding task in flight
+     *
+     * @param <T> the type of an encoded page
+     */
+    private static class Pending<T> extends FutureTask<T> {
+        private Callable<T>         _task;
+        // claimed by the encoder thread that runs the task, or by abandon, whichever comes first
+        private final AtomicBoolean _claimed    = new AtomicBoolean(false);
+
+        Pending(Callable<T> task) {
+            super(task);
+
+            _task = task;
+        }
+
+        @Override
+        public void run() {
+            if(_claimed.compareAndSet(false, true))
+                super.run();
+        }
+
+        /**
+         * cancel the task, and dispose it if it did not start. a running task is left
+         * to finish, and to release its page by itself.
+         */
+        void abandon() {
+            boolean started = !_claimed.compareAndSet(false, true);
+
+            cancel(false);
+
+            if(!started && _task instanceof IDisposable)
+                ((IDisposable)_task).dispose();
+        }
+    }
+
+    /**
+     * daemon encoder threads
+     */
+    private static class EncoderThreadFactory implements ThreadFactory {
+        private static final AtomicInteger sCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pdfmyxml-encoder-" + sCount.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * an encoded page image that is held in a file, and read from it only when it is embedded,
+ * so a page that waits to be written holds no memory and no open file. a file may hold several pages
+ * one after the other.
+ *
+ * @author Tomer Shalev
+ */
+public class FilePage extends EncodedPage {
+    private final File  _file;
+    private final long  _offset;
+    // length of the encoded image, or -1 up to the end of the file
+    private final long  _length;
+
+    /**
+     * @param file      the file
+     * @param offset    the offset of the encoded image in the file, it spans the rest of the file
+     * @param imageType the image type in pdfjet lib, i.e {@link com.pdfjet.ImageType#JPG}
+     */
+    public FilePage(File file, long offset, int imageType) {
+        this(file, offset, -1, imageType);
+    }
+
+    /**
+     * @param file      the file
+     * @param offset    the offset of the encoded image in the file
+     * @param length    the length of the encoded image in bytes
+     * @param imageType the image type in pdfjet lib, i.e {@link com.pdfjet.ImageType#JPG}
+     */
+    public FilePage(File file, long offset, long length, int imageType) {
+        super(null, imageType, length);
+
+        _file   = file;
+        _offset = offset;
+        _length = length;
+    }
+
+    /**
+     *
+     * @return the file of the page
+     */
+    public File getFile() {
+        return _file;
+    }
+
+    @Override
+    protected InputStream openStream() throws IOException {
+        InputStream is  = new BufferedInputStream(new FileInputStream(_file));
+
+        try {
+            long skip   = _offset;
+
+            while (skip > 0) {
+                long skipped = is.skip(skip);
+
+                if(skipped <= 0)
+                    throw new IOException("FilePage:: " + _file + " is shorter than " + _offset);
+
+                skip   -= skipped;
+            }
+        }
+        catch (IOException exc) {
+            is.close();
+
+            throw exc;
+        }
+
+        return _length < 0 ? is : new BoundedInputStream(is, _length);
+    }
+
+    /**
+     * a stream that ends after a number of bytes, the next page in the file
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long _remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+
+            _remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(_remaining <= 0)
+                return -1;
+
+            int b = in.read();
+
+            if(b >= 0)
+                _remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(_remaining <= 0)
+                return -1;
+
+            int read = in.read(b, off, (int)Math.min(len, _remaining));
+
+            if(read > 0)
+                _remaining -= read;
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, _remaining));
+
+            _remaining  -= skipped;
+
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int)Math.min(in.available(), _remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * encodes raw pixels into a deflated {@code DeviceRGB} or {@code DeviceGray} image stream, in the
+ * format that pdfjet embeds as is with {@code ImageType.JET}, i.e an image
+ * XObject with {@code /FlateDecode} filter. unlike PNG, the pixels are never
+ * decoded again, they are compressed once and copied into the pdf.
+ * <p>
+ * pixels are given as unpremultiplied {@code ARGB} integers, row after row, and
+ * translucent pixels are composited over white, the color of the pdf page, unless
+ * the alpha channel is kept as a soft mask of the image.
+ *
+ * @author Tomer Shalev
+ */
+public class FlateImageEncoder {
+    /**
+     * the default deflate level, favors speed since pages are mostly flat colors
+     */
+    static public final int DEFAULT_LEVEL           = Deflater.BEST_SPEED;
+
+    private static final int COLOR_TYPE_GRAY        = 1;
+    private static final int COLOR_TYPE_RGB         = 3;
+
+    private int                             _width;
+    private int                             _height;
+    // 8 bits gray samples instead of rgb
+    private boolean                         _gray;
+    // keep the alpha channel as a soft mask
+    private boolean                         _alpha;
+    // no translucent pixel was written so far
+    private boolean                         _opaque     = true;
+    // pixels written so far
+    private long                            _written    = 0;
+    // one row of samples
+    private byte[]                          _row;
+    private int                             _rowPos     = 0;
+    private Deflater                        _deflater;
+    private BufferOutputStream              _data;
+    private DeflaterOutputStream            _dos;
+    // the soft mask samples, if the alpha channel is kept
+    private byte[]                          _alphaRow;
+    private Deflater                        _alphaDeflater;
+    private BufferOutputStream              _alphaData;
+    private DeflaterOutputStream            _alphaDos;
+    // length of the encoded image stream, once it is finished
+    private long                            _length     = -1;
+
+    /**
+     * @param width     the image width in pixels
+     * @param height    the image height in pixels
+     */
+    public FlateImageEncoder(int width, int height) {
+        this(width, height, false, DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param width     the image width in pixels
+     * @param height    the image height in pixels
+     * @param gray      {@code true} for a {@code DeviceGray} image
+     * @param level     the deflate level {@code 0..9}
+     */
+    public FlateImageEncoder(int width, int height, boolean gray, int level) {
+        this(width, height, gray, false, level);
+    }
+
+    /**
+     * @param width     the image width in pixels
+     * @param height    the image height in pixels
+     * @param gray      {@code true} for a {@code DeviceGray} image
+     * @param alpha     {@code true} to keep the alpha channel as a soft mask, instead of
+     *                  compositing over white. an image without translucent pixels gets no mask.
+     * @param level     the deflate level {@code 0..9}
+     */
+    public FlateImageEncoder(int width, int height, boolean gray, boolean alpha, int level) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("FlateImageEncoder:: bad dimensions " + width + "x" + height);
+
+        _width      = width;
+        _height     = height;
+        _gray       = gray;
+        _row        = new byte[width * (gray ? 1 : 3)];
+        _deflater   = new Deflater(level);
+        _data       = new BufferOutputStream(width * height / 8);
+        _dos        = new DeflaterOutputStream(_data, _deflater, 64 * 1024);
+        _alpha      = alpha;
+
+        if(alpha) {
+            _alphaRow       = new byte[width];
+            _alphaDeflater  = new Deflater(level);
+            _alphaData      = new BufferOutputStream(width * height / 32);
+            _alphaDos       = new DeflaterOutputStream(_alphaData, _alphaDeflater, 16 * 1024);
+        }
+    }
+
+    /**
+     * write pixels, continuing from the last written pixel
+     *
+     * @param argb      unpremultiplied {@code ARGB} pixels
+     * @param offset    offset of the first pixel
+     * @param count     number of pixels
+     *
+     * @throws IOException if compression failed
+     */
+    public void writePixels(int[] argb, int offset, int count) throws IOException {
+        if(_written + count > (long)_width * _height)
+            throw new IllegalArgumentException("FlateImageEncoder:: too many pixels");
+
+        byte[] row  = _row;
+        byte[] aRow = _alphaRow;
+        boolean keepAlpha = _alpha;
+        int pos     = _rowPos;
+        int aPos    = pos / (_gray ? 1 : 3);
+        int end     = offset + count;
+
+        for (int ix = offset; ix < end; ix++) {
+            int c   = argb[ix];
+            int a   = c >>> 24;
+            int r   = (c >> 16) & 0xff;
+            int g   = (c >> 8) & 0xff;
+            int b   = c & 0xff;
+
+            if(keepAlpha) {
+                aRow[aPos++] = (byte)a;
+
+                if(a != 0xff)
+                    _opaque = false;
+            }
+            else if(a != 0xff) {
+                // composite over white
+                r   = 255 - ((255 - r) * a + 127) / 255;
+                g   = 255 - ((255 - g) * a + 127) / 255;
+                b   = 255 - ((255 - b) * a + 127) / 255;
+            }
+
+            if(_gray)
+                row[pos++] = (byte)((r * 77 + g * 150 + b * 29 + 128) >> 8);
+            else {
+                row[pos++] = (byte)r;
+                row[pos++] = (byte)g;
+                row[pos++] = (byte)b;
+            }
+
+            if(pos == row.length) {
+                _dos.write(row, 0, pos);
+                pos = 0;
+
+                if(keepAlpha) {
+                    _alphaDos.write(aRow, 0, aPos);
+                    aPos = 0;
+                }
+            }
+        }
+
+        _rowPos     = pos;
+        _written   += count;
+    }
+
+    /**
+     * complete the image
+     *
+     * @return the encoded image stream, to be embedded with {@code ImageType.JET}
+     *
+     * @throws IOException if compression failed
+     */
+    public InputStream finish() throws IOException {
+        if(_written != (long)_width * _height)
+            throw new IllegalStateException("FlateImageEncoder:: missing pixels, " + _written + " of " + (long)_width * _height);
+
+        _dos.finish();
+        _deflater.end();
+
+        boolean mask                    = false;
+
+        if(_alpha) {
+            _alphaDos.finish();
+            _alphaDeflater.end();
+
+            mask                        = !_opaque;
+        }
+
+        ByteArrayOutputStream header    = new ByteArrayOutputStream(mask ? 18 + _alphaData.size() : 14);
+
+        writeInt(header, _width);
+        writeInt(header, _height);
+        header.write(_gray ? COLOR_TYPE_GRAY : COLOR_TYPE_RGB);
+        header.write(mask ? 1 : 0);
+
+        // the soft mask precedes the color samples, pdfjet reads it with a single read,
+        // so it is kept in the same buffer as the header
+        if(mask) {
+            writeInt(header, _alphaData.size());
+            _alphaData.writeTo(header);
+        }
+
+        int dataLength  = _data.size();
+
+        writeInt(header, dataLength);
+
+        InputStream data = _data.toInputStream();
+
+        _row            = null;
+        _data           = null;
+        _dos            = null;
+        _alphaRow       = null;
+        _alphaData      = null;
+        _alphaDos       = null;
+
+        _length         = header.size() + dataLength;
+
+        return new SequenceInputStream(new ByteArrayInputStream(header.toByteArray()), data);
+    }
+
+    /**
+     *
+     * @return the length of the encoded image stream in bytes, or {@code -1} before it is finished
+     */
+    public long getLength() {
+        return _length;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * an output stream that exposes its buffer without copying it
+     */
+    private static class BufferOutputStream extends ByteArrayOutputStream {
+        BufferOutputStream(int size) {
+            super(Math.max(32, size));
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+}
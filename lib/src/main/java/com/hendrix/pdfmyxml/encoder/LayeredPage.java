@@ -0,0 +1,64 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+/**
+ * a page that draws a static layer, shared by the pages of a document, and its own dynamic
+ * layer over it. a raster static layer is embedded once, with the first page, and the other
+ * pages only draw the same image.
+ *
+ * @see com.hendrix.pdfmyxml.viewRenderer.StaticLayer
+ *
+ * @author Tomer Shalev
+ */
+public class LayeredPage extends EncodedPage {
+    private EncodedPage _background;
+    private EncodedPage _content;
+
+    /**
+     * @param background    the static layer, the same instance for all of the pages that share it
+     * @param content       the dynamic layer of the page, transparent where the static layer shows
+     */
+    public LayeredPage(EncodedPage background, EncodedPage content) {
+        if(background == null || content == null)
+            throw new IllegalArgumentException("LayeredPage:: missing layer");
+
+        _background = background;
+        _content    = content;
+    }
+
+    /**
+     *
+     * @return the dynamic layer of the page
+     */
+    public EncodedPage getContent() {
+        return _content;
+    }
+
+    /**
+     * @param content the dynamic layer of the page, i.e once it is spilled to disk
+     */
+    public void setContent(EncodedPage content) {
+        if(content == null)
+            throw new IllegalArgumentException("LayeredPage:: missing layer");
+
+        _content = content;
+    }
+
+    /**
+     * draw the static layer, and the dynamic layer over it
+     *
+     * @param pdf   the pdf
+     * @param page  a new page of the pdf
+     *
+     * @throws Exception if the page could not be written
+     */
+    @Override
+    public void drawOn(PDF pdf, Page page) throws Exception {
+        _background.drawOn(pdf, page);
+        _content.drawOn(pdf, page);
+
+        _content    = null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import android.graphics.Bitmap;
+
+import com.hendrix.pdfmyxml.utils.BitmapPool;
+import com.hendrix.pdfmyxml.utils.BitmapUtils;
+import com.pdfjet.ImageType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * the image codec of a rendered page inside the pdf
+ *
+ * @author Tomer Shalev
+ */
+public enum PageCodec {
+    /**
+     * lossless PNG. pdfjet decodes it and deflates the pixels again, so it is the slowest.
+     * gray pages are desaturated into a temporary bitmap.
+     */
+    PNG(ImageType.PNG) {
+        @Override
+        public EncodedPage encode(Bitmap image, int quality, boolean gray, BitmapPool pool) throws IOException {
+            if(!gray)
+                return encoded(BitmapUtils.bitmapToPng(image), getImageType());
+
+            Bitmap grayImage = BitmapUtils.desaturate(image, pool);
+
+            try {
+                return encoded(BitmapUtils.bitmapToPng(grayImage), getImageType());
+            }
+            finally {
+                BitmapUtils.releaseBitmap(pool, grayImage);
+            }
+        }
+    },
+
+    /**
+     * lossy JPEG, embedded as is as a {@code /DCTDecode} stream. the smallest and
+     * fastest for photo heavy pages. translucent pixels are composited over white.
+     * gray pages are desaturated into a temporary bitmap.
+     */
+    JPEG(ImageType.JPG) {
+        @Override
+        public EncodedPage encode(Bitmap image, int quality, boolean gray, BitmapPool pool) throws IOException {
+            if(!gray)
+                return encoded(BitmapUtils.bitmapToJpg(image, quality, pool), getImageType());
+
+            Bitmap grayImage = BitmapUtils.desaturate(image, pool);
+
+            try {
+                return encoded(BitmapUtils.bitmapToJpg(grayImage, quality, pool), getImageType());
+            }
+            finally {
+                BitmapUtils.releaseBitmap(pool, grayImage);
+            }
+        }
+    },
+
+    /**
+     * lossless raw pixels, deflated once and embedded as is as a {@code /FlateDecode} stream.
+     * translucent pixels are composited over white. gray pages are embedded as
+     * {@code DeviceGray} images with a single 8 bits sample per pixel.
+     *
+     * @see com.hendrix.pdfmyxml.encoder.FlateImageEncoder
+     */
+    FLATE(ImageType.JET) {
+        @Override
+        public EncodedPage encode(Bitmap image, int quality, boolean gray, BitmapPool pool) throws IOException {
+            return flate(image, gray, false);
+        }
+    };
+
+    /**
+     * the default JPEG quality
+     */
+    static public final int DEFAULT_JPEG_QUALITY = 90;
+
+    private int _imageType;
+
+    PageCodec(int imageType) {
+        _imageType = imageType;
+    }
+
+    /**
+     *
+     * @return the corresponding image type in pdfjet lib
+     */
+    public int getImageType() {
+        return _imageType;
+    }
+
+    /**
+     * encode a bitmap. the bitmap is not modified nor recycled.
+     *
+     * @param image     the bitmap
+     * @param quality   quality of compression {@code 0..100}, used by {@link #JPEG} only
+     *
+     * @return the encoded page
+     *
+     * @throws IOException if the bitmap could not be encoded
+     */
+    public EncodedPage encode(Bitmap image, int quality) throws IOException {
+        return encode(image, quality, false, null);
+    }
+
+    /**
+     * encode a bitmap. the bitmap is not modified nor recycled.
+     *
+     * @param image     the bitmap
+     * @param quality   quality of compression {@code 0..100}, used by {@link #JPEG} only
+     * @param gray      {@code true} to embed a gray image
+     * @param pool      a pool for temporary bitmaps, or {@code null}
+     *
+     * @return the encoded page
+     *
+     * @throws IOException if the bitmap could not be encoded
+     */
+    abstract public EncodedPage encode(Bitmap image, int quality, boolean gray, BitmapPool pool) throws IOException;
+
+    /**
+     * encode a bitmap with flate, i.e a dynamic layer that keeps its alpha
+     *
+     * @param image the bitmap
+     * @param gray  {@code true} to embed a gray image
+     * @param alpha {@code true} to keep translucent pixels with a soft mask
+     *
+     * @return the encoded page, with its length
+     *
+     * @throws IOException if the bitmap could not be encoded
+     */
+    public static EncodedPage flate(Bitmap image, boolean gray, boolean alpha) throws IOException {
+        FlateImageEncoder encoder   = BitmapUtils.bitmapToFlateEncoder(image, gray, alpha);
+        InputStream stream          = encoder.finish();
+
+        return new EncodedPage(stream, ImageType.JET, encoder.getLength());
+    }
+
+    /**
+     * @param bytes     the compressed image
+     * @param imageType the image type in pdfjet lib
+     *
+     * @return the encoded page, with its length
+     *
+     * @throws IOException if the bitmap could not be compressed
+     */
+    private static EncodedPage encoded(byte[] bytes, int imageType) throws IOException {
+        if(bytes == null)
+            throw new IOException("PageCodec:: bitmap could not be compressed");
+
+        return new EncodedPage(new ByteArrayInputStream(bytes), imageType, bytes.length);
+    }
+}
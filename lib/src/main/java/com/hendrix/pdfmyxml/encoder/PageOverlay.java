@@ -0,0 +1,24 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+/**
+ * content that is written over a page once the page is drawn, i.e an invisible text layer
+ * over the image of a raster page
+ *
+ * @see EncodedPage#setOverlay(PageOverlay)
+ *
+ * @author Tomer Shalev
+ */
+public interface PageOverlay {
+    /**
+     * write the overlay over a page
+     *
+     * @param pdf   the pdf
+     * @param page  the page, the encoded page was drawn on it
+     *
+     * @throws Exception if the overlay could not be written
+     */
+    void drawOn(PDF pdf, Page page) throws Exception;
+}
@@ -0,0 +1,76 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.pdfjet.Image;
+
+import java.util.HashMap;
+
+/**
+ * the images of a pdf that are shared by identical pages, or page bands, keyed by a digest
+ * of their pixels. a key is claimed by the first page that renders it, in the order the pages
+ * are written, so the image is always embedded before the pages that share it are written.
+ * it is thread safe.
+ *
+ * @see com.hendrix.pdfmyxml.encoder.SharedPage
+ *
+ * @author Tomer Shalev
+ */
+public class SharedImages {
+    // the claimed keys, and their images once they are embedded
+    private final HashMap<String, Image> _images = new HashMap<>();
+
+    /**
+     * claim a key for the page that renders it first
+     *
+     * @param key the key of an image
+     *
+     * @return {@code true} if the key was not claimed before, and the page should encode
+     *         and embed the image, otherwise the page shares it
+     */
+    public synchronized boolean claim(String key) {
+        if(_images.containsKey(key))
+            return false;
+
+        _images.put(key, null);
+
+        return true;
+    }
+
+    /**
+     * @param key   the key of an image
+     * @param image the embedded image
+     */
+    synchronized void put(String key, Image image) {
+        _images.put(key, image);
+    }
+
+    /**
+     * @param key the key of an image
+     *
+     * @return the embedded image
+     *
+     * @throws IllegalStateException if the image was not embedded
+     */
+    synchronized Image get(String key) {
+        Image image = _images.get(key);
+
+        if(image == null)
+            throw new IllegalStateException("SharedImages:: image was not embedded yet " + key);
+
+        return image;
+    }
+
+    /**
+     *
+     * @return number of claimed keys
+     */
+    public synchronized int size() {
+        return _images.size();
+    }
+
+    /**
+     * forget all of the images, i.e when the pdf is complete
+     */
+    public synchronized void clear() {
+        _images.clear();
+    }
+}
@@ -0,0 +1,37 @@
+package com.hendrix.pdfmyxml.encoder;
+
+import com.pdfjet.Image;
+import com.pdfjet.PDF;
+
+/**
+ * a page, or a page band, identical to one that was written before. it is not encoded, and it
+ * draws the image that was embedded by the first one, so the pdf holds a single image XObject.
+ *
+ * @see com.hendrix.pdfmyxml.encoder.SharedImages
+ *
+ * @author Tomer Shalev
+ */
+public class SharedPage extends EncodedPage {
+    private String          _key;
+    private SharedImages    _shared;
+
+    /**
+     * @param key       the key of the image
+     * @param shared    the shared images of the pdf
+     */
+    public SharedPage(String key, SharedImages shared) {
+        _key    = key;
+        _shared = shared;
+    }
+
+    /**
+     * @param pdf   the pdf
+     * @param width ignored, the image is scaled when it is embedded first
+     *
+     * @return the shared image
+     */
+    @Override
+    public Image embed(PDF pdf, float width) {
+        return _shared.get(_key);
+    }
+}
@@ -0,0 +1,131 @@
+package com.hendrix.pdfmyxml.metrics;
+
+/**
+ * the durations and sizes of a whole pdf document, the sum of its pages, and the
+ * stages that belong to the document only
+ *
+ * @see com.hendrix.pdfmyxml.metrics.MetricsListener
+ *
+ * @author Tomer Shalev
+ */
+public class DocumentMetrics {
+    // the start of the generation, System.nanoTime()
+    private final long      _start;
+    // durations of the page stages in nanoseconds, summed over the pages
+    private final long[]    _nanos          = new long[PageMetrics.Stage.values().length];
+    // number of pages written
+    private int             _pages          = 0;
+    // bytes of the rendered bitmaps
+    private long            _bitmapBytes    = 0;
+    // bytes written into the pdf while embedding pages
+    private long            _encodedBytes   = 0;
+    // duration of completing the pdf and closing the file
+    private long            _flushNanos     = 0;
+    // duration of the whole generation
+    private long            _totalNanos     = 0;
+    // bytes written to the output, the appended ones of an incremental update
+    private long            _fileBytes      = 0;
+
+    /**
+     * @param start the start of the generation, {@link System#nanoTime()}
+     */
+    public DocumentMetrics(long start) {
+        _start = start;
+    }
+
+    /**
+     * add a written page
+     *
+     * @param page the page metrics
+     */
+    public void add(PageMetrics page) {
+        for (PageMetrics.Stage stage : PageMetrics.Stage.values())
+            _nanos[stage.ordinal()] += page.getNanos(stage);
+
+        _pages++;
+        _bitmapBytes    += page.getBitmapBytes();
+        _encodedBytes   += page.getEncodedBytes();
+    }
+
+    /**
+     * complete the document
+     *
+     * @param flushNanos    the duration of completing the pdf
+     * @param fileBytes     number of bytes written to the output, the appended ones of an incremental update
+     */
+    public void complete(long flushNanos, long fileBytes) {
+        _flushNanos     = flushNanos;
+        _fileBytes      = fileBytes;
+        _totalNanos     = System.nanoTime() - _start;
+    }
+
+    /**
+     * @param stage a stage
+     *
+     * @return the duration of the stage in nanoseconds, summed over the pages. with encoder
+     *         threads, stages of different pages overlap.
+     */
+    public long getNanos(PageMetrics.Stage stage) {
+        return _nanos[stage.ordinal()];
+    }
+
+    /**
+     *
+     * @return number of pages written
+     */
+    public int getPageCount() {
+        return _pages;
+    }
+
+    /**
+     *
+     * @return bytes of the bitmaps the pages were rendered into
+     */
+    public long getBitmapBytes() {
+        return _bitmapBytes;
+    }
+
+    /**
+     *
+     * @return bytes written into the pdf while embedding the pages
+     */
+    public long getEncodedBytes() {
+        return _encodedBytes;
+    }
+
+    /**
+     *
+     * @return the duration of completing the pdf and closing the file, in nanoseconds
+     */
+    public long getFlushNanos() {
+        return _flushNanos;
+    }
+
+    /**
+     *
+     * @return the duration of the whole generation, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return _totalNanos;
+    }
+
+    /**
+     *
+     * @return number of bytes written to the output, the appended ones of an incremental update
+     */
+    public long getFileBytes() {
+        return _fileBytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("document: pages=").append(_pages);
+
+        for (PageMetrics.Stage stage : PageMetrics.Stage.values())
+            sb.append(' ').append(stage.name().toLowerCase()).append('=').append(getNanos(stage) / 1000000).append("ms");
+
+        return sb.append(" flush=").append(_flushNanos / 1000000).append("ms total=").append(_totalNanos / 1000000)
+                 .append("ms bitmap=").append(_bitmapBytes).append("B encoded=").append(_encodedBytes)
+                 .append("B file=").append(_fileBytes).append('B').toString();
+    }
+}
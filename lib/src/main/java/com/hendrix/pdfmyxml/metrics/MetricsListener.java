@@ -0,0 +1,26 @@
+package com.hendrix.pdfmyxml.metrics;
+
+/**
+ * a listener of the metrics of a pdf generation. it is notified on the thread that writes
+ * the pdf, usually the background thread, so it should return quickly.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setMetricsListener(MetricsListener)
+ *
+ * @author Tomer Shalev
+ */
+public interface MetricsListener {
+
+    /**
+     * a page was written into the pdf
+     *
+     * @param page the page metrics
+     */
+    void onPage(PageMetrics page);
+
+    /**
+     * the pdf is complete, it is notified before {@code Callback.onComplete}
+     *
+     * @param document the document metrics
+     */
+    void onDocument(DocumentMetrics document);
+}
@@ -0,0 +1,164 @@
+package com.hendrix.pdfmyxml.metrics;
+
+/**
+ * the durations and sizes of a single pdf page. the stages are recorded by the page renderer
+ * and by the document while the page is generated, and the page is reported once it is written.
+ *
+ * @see com.hendrix.pdfmyxml.metrics.MetricsListener
+ *
+ * @author Tomer Shalev
+ */
+public class PageMetrics {
+    /**
+     * the stages of generating a page
+     */
+    public enum Stage {
+        /**
+         * inflating and initializing the view, i.e {@code initView}
+         */
+        INFLATE,
+        /**
+         * measuring the view
+         */
+        MEASURE,
+        /**
+         * laying out the view
+         */
+        LAYOUT,
+        /**
+         * drawing the view into a bitmap, or recording it with the vector backend
+         */
+        DRAW,
+        /**
+         * encoding the bitmap with the page codec
+         */
+        ENCODE,
+        /**
+         * embedding the encoded page into the pdf
+         */
+        EMBED
+    }
+
+    // durations of the stages in nanoseconds
+    private final long[]    _nanos          = new long[Stage.values().length];
+    // the index of the page in the pdf
+    private int             _index          = -1;
+    // bytes of the rendered bitmaps
+    private long            _bitmapBytes    = 0;
+    // bytes written into the pdf for the page
+    private long            _encodedBytes   = 0;
+    // the page was recorded with the vector backend
+    private boolean         _vector         = false;
+
+    /**
+     * @param stage a stage
+     *
+     * @return the duration of the stage in nanoseconds
+     */
+    public long getNanos(Stage stage) {
+        return _nanos[stage.ordinal()];
+    }
+
+    /**
+     * @param stage a stage
+     *
+     * @return the duration of the stage in milliseconds
+     */
+    public long getMillis(Stage stage) {
+        return _nanos[stage.ordinal()] / 1000000;
+    }
+
+    /**
+     * add to the duration of a stage, i.e a page that is measured again after it
+     * could not be recorded with the vector backend
+     *
+     * @param stage a stage
+     * @param nanos the duration in nanoseconds
+     */
+    public void addNanos(Stage stage, long nanos) {
+        _nanos[stage.ordinal()] += nanos;
+    }
+
+    /**
+     *
+     * @return the duration of all of the stages in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+
+        for (long nanos : _nanos)
+            total += nanos;
+
+        return total;
+    }
+
+    /**
+     *
+     * @return the index of the page in the pdf, or {@code -1} if it was not written yet
+     */
+    public int getIndex() {
+        return _index;
+    }
+
+    /**
+     * @param index the index of the page in the pdf
+     */
+    public void setIndex(int index) {
+        _index = index;
+    }
+
+    /**
+     *
+     * @return bytes of the bitmaps the page was rendered into, {@code 0} for a vector page
+     */
+    public long getBitmapBytes() {
+        return _bitmapBytes;
+    }
+
+    /**
+     * @param bytes bytes of a bitmap the page was rendered into
+     */
+    public void addBitmapBytes(long bytes) {
+        _bitmapBytes += bytes;
+    }
+
+    /**
+     *
+     * @return bytes written into the pdf while embedding the page, mostly the encoded image
+     */
+    public long getEncodedBytes() {
+        return _encodedBytes;
+    }
+
+    /**
+     * @param bytes bytes written into the pdf while embedding the page
+     */
+    public void setEncodedBytes(long bytes) {
+        _encodedBytes = bytes;
+    }
+
+    /**
+     *
+     * @return {@code true} if the page was recorded with the vector backend
+     */
+    public boolean isVector() {
+        return _vector;
+    }
+
+    /**
+     * @param vector {@code true} if the page was recorded with the vector backend
+     */
+    public void setVector(boolean vector) {
+        _vector = vector;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("page ").append(_index).append(':');
+
+        for (Stage stage : Stage.values())
+            sb.append(' ').append(stage.name().toLowerCase()).append('=').append(getMillis(stage)).append("ms");
+
+        return sb.append(" bitmap=").append(_bitmapBytes).append("B encoded=").append(_encodedBytes).append('B').toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.hendrix.pdfmyxml.output;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * an output stream that writes into the channel of a file stream through a large direct buffer,
+ * so the bytes that pdfjet writes one after the other reach the file in large writes, and are not
+ * copied again by the channel
+ *
+ * @author Tomer Shalev
+ */
+public class ChannelOutputStream extends OutputStream {
+    /**
+     * the default buffer size in bytes
+     */
+    static public final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private FileOutputStream    _out;
+    private FileChannel         _channel;
+    private final ByteBuffer    _buffer;
+    private final SyncPolicy    _sync;
+
+    /**
+     * @param out           a file stream, it is closed with this stream
+     * @param bufferSize    the buffer size in bytes
+     * @param sync          when the file is synced
+     */
+    public ChannelOutputStream(FileOutputStream out, int bufferSize, SyncPolicy sync) {
+        if(out == null)
+            throw new IllegalArgumentException("ChannelOutputStream:: stream was not set!!");
+
+        _out        = out;
+        _channel    = out.getChannel();
+        _buffer     = ByteBuffer.allocateDirect(Math.max(1024, bufferSize));
+        _sync       = sync == null ? SyncPolicy.NONE : sync;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+
+        if(!_buffer.hasRemaining())
+            drain();
+
+        _buffer.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+
+        // a large array goes into the channel as is
+        if(len >= _buffer.capacity()) {
+            drain();
+            writeFully(ByteBuffer.wrap(b, off, len));
+
+            if(_sync == SyncPolicy.EVERY_BUFFER)
+                _channel.force(false);
+
+            return;
+        }
+
+        while (len > 0) {
+            if(!_buffer.hasRemaining())
+                drain();
+
+            int count   = Math.min(len, _buffer.remaining());
+
+            _buffer.put(b, off, count);
+
+            off        += count;
+            len        -= count;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /**
+     * write the buffer, sync it according to the policy, and close the file
+     *
+     * @throws IOException if the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if(_channel == null)
+            return;
+
+        try {
+            drain();
+
+            if(_sync != SyncPolicy.NONE)
+                _channel.force(true);
+        }
+        finally {
+            discard();
+        }
+    }
+
+    /**
+     * close the file without writing the buffer
+     */
+    public void discard() {
+        try {
+            if(_out != null)
+                _out.close();
+        }
+        catch (IOException ignored) {
+        }
+
+        _out        = null;
+        _channel    = null;
+    }
+
+    private void drain() throws IOException {
+        ensureOpen();
+
+        if(_buffer.position() == 0)
+            return;
+
+        _buffer.flip();
+
+        writeFully(_buffer);
+
+        _buffer.clear();
+
+        if(_sync == SyncPolicy.EVERY_BUFFER)
+            _channel.force(false);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            _channel.write(buffer);
+    }
+
+    private void ensureOpen() throws IOException {
+        if(_channel == null)
+            throw new IOException("ChannelOutputStream:: stream is closed");
+    }
+}
@@ -0,0 +1,75 @@
+package com.hendrix.pdfmyxml.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a sink that writes the pdf into a file through its channel, with a large buffer
+ *
+ * @author Tomer Shalev
+ */
+public class FileSink implements OutputSink {
+    private final File          _file;
+    private final int           _bufferSize;
+    private final SyncPolicy    _sync;
+    private ChannelOutputStream _out    = null;
+
+    /**
+     * a sink with the default buffer size, that does not sync the file
+     *
+     * @param file the pdf file
+     */
+    public FileSink(File file) {
+        this(file, ChannelOutputStream.DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+    }
+
+    /**
+     * @param file          the pdf file
+     * @param bufferSize    the buffer size in bytes
+     * @param sync          when the file is synced
+     */
+    public FileSink(File file, int bufferSize, SyncPolicy sync) {
+        if(file == null)
+            throw new IllegalArgumentException("FileSink:: file was not set!!");
+
+        _file       = file;
+        _bufferSize = bufferSize;
+        _sync       = sync;
+    }
+
+    @Override
+    public OutputStream open() throws IOException {
+        if(_out != null)
+            throw new IllegalStateException("FileSink:: sink is open already");
+
+        return _out = new ChannelOutputStream(new FileOutputStream(_file), _bufferSize, _sync);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(_out == null)
+            return;
+
+        try {
+            _out.close();
+        }
+        finally {
+            _out = null;
+        }
+    }
+
+    @Override
+    public void abort() {
+        if(_out != null)
+            _out.discard();
+
+        _out = null;
+    }
+
+    @Override
+    public File getFile() {
+        return _file;
+    }
+}
@@ -0,0 +1,44 @@
+package com.hendrix.pdfmyxml.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * the destination a pdf is written into, i.e a file, a stream or a file descriptor of a content
+ * provider. a sink is opened once per generation, and either closed once the pdf is complete,
+ * or aborted if the generation failed or was cancelled.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setOutputSink(OutputSink)
+ *
+ * @author Tomer Shalev
+ */
+public interface OutputSink {
+
+    /**
+     * open the sink for writing
+     *
+     * @return a stream to write the pdf into, it is written byte after byte so it should be buffered
+     *
+     * @throws IOException if the sink could not be opened
+     */
+    OutputStream open() throws IOException;
+
+    /**
+     * the pdf is complete, flush and close the sink
+     *
+     * @throws IOException if the pdf could not be written
+     */
+    void close() throws IOException;
+
+    /**
+     * the pdf is incomplete, close the sink quietly
+     */
+    void abort();
+
+    /**
+     *
+     * @return the file the pdf is written into, or {@code null} if it is not written into a file
+     */
+    File getFile();
+}
@@ -0,0 +1,82 @@
+package com.hendrix.pdfmyxml.output;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a sink that writes the pdf into a file descriptor, i.e one that was opened by a content provider
+ * or a storage access framework document, through its channel with a large buffer. the descriptor is
+ * closed with the pdf, so the sink is good for a single generation. use {@link SyncPolicy#NONE} with
+ * pipes and sockets, that can not be synced.
+ *
+ * @author Tomer Shalev
+ */
+public class ParcelFileDescriptorSink implements OutputSink {
+    private ParcelFileDescriptor    _pfd;
+    private final int               _bufferSize;
+    private final SyncPolicy        _sync;
+    private ChannelOutputStream     _out    = null;
+
+    /**
+     * a sink with the default buffer size, that does not sync the descriptor
+     *
+     * @param pfd a writable file descriptor
+     */
+    public ParcelFileDescriptorSink(ParcelFileDescriptor pfd) {
+        this(pfd, ChannelOutputStream.DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+    }
+
+    /**
+     * @param pfd           a writable file descriptor
+     * @param bufferSize    the buffer size in bytes
+     * @param sync          when the descriptor is synced
+     */
+    public ParcelFileDescriptorSink(ParcelFileDescriptor pfd, int bufferSize, SyncPolicy sync) {
+        if(pfd == null)
+            throw new IllegalArgumentException("ParcelFileDescriptorSink:: file descriptor was not set!!");
+
+        _pfd        = pfd;
+        _bufferSize = bufferSize;
+        _sync       = sync;
+    }
+
+    @Override
+    public OutputStream open() throws IOException {
+        if(_pfd == null)
+            throw new IllegalStateException("ParcelFileDescriptorSink:: file descriptor was closed already");
+
+        _out = new ChannelOutputStream(new ParcelFileDescriptor.AutoCloseOutputStream(_pfd), _bufferSize, _sync);
+        _pfd = null;
+
+        return _out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(_out == null)
+            return;
+
+        try {
+            _out.close();
+        }
+        finally {
+            _out = null;
+        }
+    }
+
+    @Override
+    public void abort() {
+        if(_out != null)
+            _out.discard();
+
+        _out = null;
+    }
+
+    @Override
+    public File getFile() {
+        return null;
+    }
+}
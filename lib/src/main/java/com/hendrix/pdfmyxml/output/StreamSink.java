@@ -0,0 +1,94 @@
+package com.hendrix.pdfmyxml.output;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * a sink that writes the pdf into an output stream of your own, i.e a socket, a content provider
+ * or a cache, through a buffer
+ *
+ * @author Tomer Shalev
+ */
+public class StreamSink implements OutputSink {
+    private final OutputStream  _stream;
+    private final int           _bufferSize;
+    private final boolean       _closeStream;
+    private OutputStream        _out        = null;
+
+    /**
+     * a sink with the default buffer size, that closes the stream with the pdf
+     *
+     * @param stream the stream
+     */
+    public StreamSink(OutputStream stream) {
+        this(stream, ChannelOutputStream.DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * @param stream        the stream
+     * @param bufferSize    the buffer size in bytes, {@code 0} if the stream is buffered already
+     * @param closeStream   {@code true} to close the stream with the pdf, otherwise it is only flushed
+     */
+    public StreamSink(OutputStream stream, int bufferSize, boolean closeStream) {
+        if(stream == null)
+            throw new IllegalArgumentException("StreamSink:: stream was not set!!");
+
+        _stream         = stream;
+        _bufferSize     = bufferSize;
+        _closeStream    = closeStream;
+    }
+
+    @Override
+    public OutputStream open() throws IOException {
+        if(_out != null)
+            throw new IllegalStateException("StreamSink:: sink is open already");
+
+        OutputStream out    = _closeStream ? _stream : new FilterOutputStream(_stream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+
+        return _out = _bufferSize > 0 ? new BufferedOutputStream(out, _bufferSize) : out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(_out == null)
+            return;
+
+        try {
+            _out.close();
+        }
+        finally {
+            _out = null;
+        }
+    }
+
+    @Override
+    public void abort() {
+        if(_out != null && _closeStream) {
+            try {
+                _stream.close();
+            }
+            catch (IOException ignored) {
+            }
+        }
+
+        _out = null;
+    }
+
+    @Override
+    public File getFile() {
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.hendrix.pdfmyxml.output;
+
+/**
+ * when the written pdf is synced to the storage device with {@code fsync}
+ *
+ * @author Tomer Shalev
+ */
+public enum SyncPolicy {
+    /**
+     * never, the pdf is in the page cache of the kernel once it is closed, the default
+     */
+    NONE,
+
+    /**
+     * once, when the complete pdf is closed, so a complete pdf survives a power loss
+     */
+    ON_CLOSE,
+
+    /**
+     * after every buffer that is written, and when the pdf is closed. the slowest, for
+     * pdfs that are written for a long time, i.e in streaming mode
+     */
+    EVERY_BUFFER
+}
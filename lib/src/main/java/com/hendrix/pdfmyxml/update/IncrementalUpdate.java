@@ -0,0 +1,351 @@
+package com.hendrix.pdfmyxml.update;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * an incremental update of an existing pdf. the pages of a new pdf, i.e one that pdfjet wrote with only
+ * the changed pages, are appended to the end of the existing pdf, with a cross reference section that
+ * points at them and at the older sections. the bytes of the existing pdf are not changed, so the cost
+ * depends on the changed pages only. a page is either appended to the end of the document, or replaces
+ * a page of the document with a new object of the same number. the cross reference section of the update
+ * is a stream if the existing pdf ends with one, i.e a pdf with object streams.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#updatePdf(File)
+ *
+ * @author Tomer Shalev
+ */
+public class IncrementalUpdate {
+    static private final String TAG = "IncrementalUpdate";
+
+    private final File                  _file;
+    // length of the pdf when it was read
+    private final long                  _length;
+    private final boolean               _endsWithEol;
+    private final Map<String, Object>   _trailer;
+    private final long                  _startXref;
+    // the newest section is a cross reference stream, so is the update
+    private final boolean               _xrefStream;
+    private final PdfRef                _pagesRef;
+    private final Map<String, Object>   _pagesDict;
+    // the pages in order, and their parents
+    private final List<PdfRef>          _pages      = new ArrayList<>();
+    private final List<PdfRef>          _parents    = new ArrayList<>();
+
+    /**
+     * read the structure of an existing pdf
+     *
+     * @param file the pdf
+     *
+     * @throws IOException if the pdf could not be read
+     */
+    public IncrementalUpdate(File file) throws IOException {
+        if(file == null)
+            throw new IllegalArgumentException("IncrementalUpdate:: file was not set!!");
+
+        PdfReader reader    = new PdfReader(file);
+
+        try {
+            _file           = file;
+            _length         = reader.getLength();
+            _endsWithEol    = reader.endsWithEol();
+            _trailer        = reader.getTrailer();
+            _startXref      = reader.getStartXref();
+            _xrefStream     = reader.isXrefStream();
+            _pagesRef       = reader.getPagesRef();
+            _pagesDict      = reader.readDictionary(_pagesRef);
+
+            reader.readPages(_pages, _parents);
+        }
+        finally {
+            reader.close();
+        }
+
+        if(!(_pagesDict.get("Kids") instanceof List))
+            throw new IOException("IncrementalUpdate:: malformed page tree of " + file);
+
+        if(!(_trailer.get("Size") instanceof Long))
+            throw new IOException("IncrementalUpdate:: malformed trailer of " + file);
+    }
+
+    /**
+     *
+     * @return the pdf that is updated
+     */
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     *
+     * @return number of pages of the pdf before the update
+     */
+    public int getPageCount() {
+        return _pages.size();
+    }
+
+    /**
+     * append the pages of a pdf to the updated pdf. the updated pdf is restored if the update
+     * could not be written.
+     *
+     * @param pages     a pdf with the new pages, i.e one that pdfjet wrote
+     * @param replaced  the indexes of the pages that the first pages of the new pdf replace, one each,
+     *                  the rest of its pages are appended
+     *
+     * @throws IOException if the update could not be written
+     */
+    public void apply(File pages, int[] replaced) throws IOException {
+        if(_file.length() != _length)
+            throw new IllegalStateException("IncrementalUpdate:: " + _file + " was changed since it was read");
+
+        checkReplaced(replaced);
+
+        PdfReader source    = new PdfReader(pages);
+
+        try {
+            List<PdfRef> sourcePages    = new ArrayList<>();
+            List<PdfRef> sourceParents  = new ArrayList<>();
+
+            source.readPages(sourcePages, sourceParents);
+
+            if(sourcePages.size() < replaced.length)
+                throw new IllegalStateException("IncrementalUpdate:: " + replaced.length + " replaced pages, but only "
+                                                + sourcePages.size() + " new pages");
+
+            write(source, sourcePages, sourceParents, replaced);
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    private void checkReplaced(int[] replaced) {
+        Set<Integer> indexes = new HashSet<>();
+
+        for (int index : replaced) {
+            if(index < 0 || index >= _pages.size())
+                throw new IllegalArgumentException("IncrementalUpdate:: no page " + index + " in " + _pages.size() + " pages");
+
+            if(!indexes.add(index))
+                throw new IllegalArgumentException("IncrementalUpdate:: page " + index + " is replaced twice");
+        }
+    }
+
+    /**
+     * write the update section, or restore the pdf
+     */
+    private void write(PdfReader source, List<PdfRef> sourcePages, List<PdfRef> sourceParents, int[] replaced) throws IOException {
+        // the page tree nodes, catalog and info of the new pdf are not copied
+        Set<Integer> skipped            = new HashSet<>(refNums(sourceParents));
+        Object info                     = source.getTrailer().get("Info");
+
+        skipped.add(0);
+        skipped.add(((PdfRef)source.getTrailer().get("Root")).getNum());
+        skipped.add(source.getPagesRef().getNum());
+
+        if(info instanceof PdfRef)
+            skipped.add(((PdfRef)info).getNum());
+
+        // object numbers of the new pdf in the updated one
+        HashMap<Integer, PdfRef> refs   = new HashMap<>();
+        // the parent in the updated pdf of every copied page
+        HashMap<Integer, PdfRef> parents = new HashMap<>();
+        List<PdfRef> appended           = new ArrayList<>();
+        int size                        = ((Long)_trailer.get("Size")).intValue();
+
+        for (int ix = 0; ix < replaced.length; ix++) {
+            refs.put(sourcePages.get(ix).getNum(), _pages.get(replaced[ix]));
+            parents.put(sourcePages.get(ix).getNum(), _parents.get(replaced[ix]));
+        }
+
+        for (Integer num : source.getObjectNumbers()) {
+            if(!skipped.contains(num) && !refs.containsKey(num))
+                refs.put(num, new PdfRef(size++, 0));
+        }
+
+        for (int ix = replaced.length; ix < sourcePages.size(); ix++) {
+            PdfRef ref = refs.get(sourcePages.get(ix).getNum());
+
+            appended.add(ref);
+            parents.put(sourcePages.get(ix).getNum(), _pagesRef);
+        }
+
+        FileOutputStream fos            = new FileOutputStream(_file, true);
+        boolean done                    = false;
+
+        try {
+            PdfWriter writer            = new PdfWriter(new BufferedOutputStream(fos, 64 * 1024), _length);
+            TreeMap<Integer, long[]> xref = new TreeMap<>();
+
+            if(!_endsWithEol)
+                writer.write("\n");
+
+            for (Integer num : source.getObjectNumbers()) {
+                PdfRef ref              = refs.get(num);
+
+                if(ref == null)
+                    continue;
+
+                PdfObject object        = source.readObject(num);
+                Object value            = remap(object.getValue(), refs);
+
+                if(parents.containsKey(num) && value instanceof Map)
+                    asDictionary(value).put("Parent", parents.get(num));
+
+                if(object.isStream())
+                    asDictionary(value).put("Length", source.streamLength(object));
+
+                xref.put(ref.getNum(), new long[] {1, writer.beginObject(ref), ref.getGen()});
+
+                writer.writeValue(value);
+
+                if(object.isStream()) {
+                    writer.write("\nstream\n");
+                    source.copy(object.getStreamOffset(), source.streamLength(object), writer);
+                    writer.write("\nendstream");
+                }
+
+                writer.endObject();
+            }
+
+            // the root of the page tree with the appended pages
+            if(!appended.isEmpty()) {
+                Map<String, Object> pages   = new LinkedHashMap<>(_pagesDict);
+                List<Object> kids           = new ArrayList<Object>((List<?>)_pagesDict.get("Kids"));
+
+                kids.addAll(appended);
+                pages.put("Kids", kids);
+                pages.put("Count", (long)(_pages.size() + appended.size()));
+
+                xref.put(_pagesRef.getNum(), new long[] {1, writer.writeObject(_pagesRef, pages), _pagesRef.getGen()});
+            }
+
+            if(_xrefStream)
+                writer.writeXrefStream(new PdfRef(size, 0), xref, trailer(size + 1));
+            else
+                writer.writeXrefTable(xref, trailer(size));
+            writer.flush();
+
+            fos.getFD().sync();
+            fos.close();
+
+            done = true;
+        }
+        finally {
+            if(!done)
+                restore(fos);
+        }
+    }
+
+    /**
+     * @param size the number of objects of the updated pdf
+     *
+     * @return the trailer of the update, that points at the previous one
+     */
+    private Map<String, Object> trailer(int size) {
+        Map<String, Object> trailer = new LinkedHashMap<>();
+
+        trailer.put("Size", (long)size);
+        trailer.put("Root", _trailer.get("Root"));
+
+        if(_trailer.containsKey("Info"))
+            trailer.put("Info", _trailer.get("Info"));
+
+        if(_trailer.containsKey("ID"))
+            trailer.put("ID", _trailer.get("ID"));
+
+        trailer.put("Prev", _startXref);
+
+        return trailer;
+    }
+
+    /**
+     * truncate the pdf back to its length before the update
+     */
+    private void restore(FileOutputStream fos) {
+        try {
+            fos.close();
+        } catch (IOException ignored) {
+        }
+
+        RandomAccessFile raf = null;
+
+        try {
+            raf = new RandomAccessFile(_file, "rw");
+            raf.setLength(_length);
+        }
+        catch (IOException exc) {
+            Log.e(TAG, "could not restore " + _file, exc);
+        }
+        finally {
+            if(raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @param value a value of the new pdf
+     * @param refs  the object numbers of the new pdf in the updated one
+     *
+     * @return the value with references of the updated pdf, references to objects that are not
+     *         copied are {@code null}
+     */
+    private static Object remap(Object value, Map<Integer, PdfRef> refs) {
+        if(value instanceof PdfRef) {
+            PdfRef ref = refs.get(((PdfRef)value).getNum());
+
+            return ref == null ? PdfParser.NULL : ref;
+        }
+
+        if(value instanceof Map) {
+            Map<String, Object> dict = new LinkedHashMap<>();
+
+            for (Map.Entry<String, Object> entry : asDictionary(value).entrySet())
+                dict.put(entry.getKey(), remap(entry.getValue(), refs));
+
+            return dict;
+        }
+
+        if(value instanceof List) {
+            List<Object> array = new ArrayList<>();
+
+            for (Object item : (List<?>)value)
+                array.add(remap(item, refs));
+
+            return array;
+        }
+
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDictionary(Object value) {
+        return (Map<String, Object>)value;
+    }
+
+    private static List<Integer> refNums(List<PdfRef> refs) {
+        List<Integer> nums = new ArrayList<>();
+
+        for (PdfRef ref : refs)
+            nums.add(ref.getNum());
+
+        return nums;
+    }
+}
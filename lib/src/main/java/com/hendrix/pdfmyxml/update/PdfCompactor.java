@@ -0,0 +1,199 @@
+package com.hendrix.pdfmyxml.update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * rewrites a pdf, i.e one that pdfjet wrote with a cross reference table and every object on its own, into
+ * a pdf 1.5 with object streams. the objects that are not streams, pages, page tree nodes, resources, fonts
+ * and the catalog, are packed into flate compressed object streams, and the cross reference table is
+ * replaced by a compressed cross reference stream. streams, i.e page content and images, are copied as they
+ * are. objects that are not referenced any more, i.e pages that an incremental update replaced, are dropped.
+ * the pdf gets smaller, and viewers parse it faster.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setObjectStreams(boolean)
+ *
+ * @author Tomer Shalev
+ */
+public class PdfCompactor {
+    /**
+     * the default number of objects in an object stream
+     */
+    static public final int         DEFAULT_OBJECTS_PER_STREAM  = 100;
+
+    static private final Charset    LATIN1                      = Charset.forName("ISO-8859-1");
+
+    private final int               _objectsPerStream;
+
+    public PdfCompactor() {
+        this(DEFAULT_OBJECTS_PER_STREAM);
+    }
+
+    /**
+     * @param objectsPerStream maximum number of objects in an object stream, larger streams compress better,
+     *                         but a viewer decodes a whole stream for any of its objects
+     */
+    public PdfCompactor(int objectsPerStream) {
+        _objectsPerStream = Math.max(1, objectsPerStream);
+    }
+
+    /**
+     * rewrite a pdf with object streams
+     *
+     * @param pdf   the pdf
+     * @param os    the stream of the rewritten pdf, it is not closed
+     *
+     * @throws IOException if the pdf could not be read, or the rewritten one written
+     */
+    public void compact(File pdf, OutputStream os) throws IOException {
+        PdfReader reader                = new PdfReader(pdf);
+
+        try {
+            Map<String, Object> trailer = reader.getTrailer();
+
+            if(trailer.containsKey("Encrypt"))
+                throw new IllegalArgumentException("PdfCompactor:: encrypted pdfs are not supported");
+
+            PdfWriter writer            = new PdfWriter(os, 0);
+            TreeMap<Integer, long[]> xref = new TreeMap<>();
+            List<PdfObject> packed      = new ArrayList<>();
+            int size                    = 0;
+
+            // a binary comment marks the file as binary
+            writer.write("%PDF-1.5\n%\u00e2\u00e3\u00cf\u00d3\n");
+
+            // streams are copied, and the rest of the objects are packed
+            for (Integer num : reachable(reader)) {
+                PdfObject object        = reader.readObject(num);
+
+                size                    = Math.max(size, num + 1);
+
+                if(!object.isStream() && object.getRef().getGen() == 0) {
+                    packed.add(object);
+                    continue;
+                }
+
+                Object value            = object.getValue();
+
+                if(object.isStream())
+                    asDictionary(value).put("Length", reader.streamLength(object));
+
+                xref.put(num, new long[] {1, writer.beginObject(object.getRef()), object.getRef().getGen()});
+
+                writer.writeValue(value);
+
+                if(object.isStream()) {
+                    writer.write("\nstream\n");
+                    reader.copy(object.getStreamOffset(), reader.streamLength(object), writer);
+                    writer.write("\nendstream");
+                }
+
+                writer.endObject();
+            }
+
+            for (int start = 0; start < packed.size(); start += _objectsPerStream) {
+                PdfRef ref              = new PdfRef(size++, 0);
+                List<PdfObject> objects = packed.subList(start, Math.min(packed.size(), start + _objectsPerStream));
+
+                xref.put(ref.getNum(), new long[] {1, writeObjectStream(writer, ref, objects), 0});
+
+                for (int ix = 0; ix < objects.size(); ix++)
+                    xref.put(objects.get(ix).getRef().getNum(), new long[] {2, ref.getNum(), ix});
+            }
+
+            xref.put(0, new long[] {0, 0, 65535});
+
+            Map<String, Object> entries = new LinkedHashMap<>();
+
+            for (String key : new String[] {"Root", "Info", "ID"})
+                if(trailer.containsKey(key))
+                    entries.put(key, trailer.get(key));
+
+            writer.writeXrefStream(new PdfRef(size, 0), xref, entries);
+            writer.flush();
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return numbers of the objects that are referenced from the trailer, in order
+     */
+    private static TreeSet<Integer> reachable(PdfReader reader) throws IOException {
+        TreeSet<Integer> reachable      = new TreeSet<>();
+        ArrayDeque<Object> values       = new ArrayDeque<>();
+
+        values.add(reader.getTrailer().get("Root"));
+
+        if(reader.getTrailer().containsKey("Info"))
+            values.add(reader.getTrailer().get("Info"));
+
+        while (!values.isEmpty()) {
+            Object value = values.poll();
+
+            if(value instanceof PdfRef) {
+                int num             = ((PdfRef)value).getNum();
+                PdfObject object    = reachable.contains(num) ? null : reader.readObject(num);
+
+                if(object != null) {
+                    reachable.add(num);
+                    values.add(object.getValue());
+                }
+            }
+            else if(value instanceof Map)
+                values.addAll(((Map<?, ?>)value).values());
+            else if(value instanceof List)
+                values.addAll((List<?>)value);
+        }
+
+        return reachable;
+    }
+
+    /**
+     * @return offset of the object stream
+     */
+    private static long writeObjectStream(PdfWriter writer, PdfRef ref, List<PdfObject> objects) throws IOException {
+        StringBuilder header            = new StringBuilder(objects.size() * 12);
+        StringBuilder body              = new StringBuilder(objects.size() * 128);
+
+        for (PdfObject object : objects) {
+            header.append(object.getRef().getNum()).append(' ').append(body.length()).append(' ');
+
+            PdfWriter.format(object.getValue(), body);
+            body.append('\n');
+        }
+
+        header.append('\n');
+
+        ByteArrayOutputStream data      = new ByteArrayOutputStream(header.length() + body.length());
+        byte[] first                    = header.toString().getBytes(LATIN1);
+
+        data.write(first);
+        data.write(body.toString().getBytes(LATIN1));
+
+        Map<String, Object> dict        = new LinkedHashMap<>();
+
+        dict.put("Type", "ObjStm");
+        dict.put("N", (long)objects.size());
+        dict.put("First", (long)first.length);
+        dict.put("Filter", "FlateDecode");
+
+        return writer.writeStream(ref, dict, PdfWriter.deflate(data.toByteArray()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDictionary(Object value) {
+        return (Map<String, Object>)value;
+    }
+}
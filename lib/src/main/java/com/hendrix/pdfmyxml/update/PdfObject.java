@@ -0,0 +1,41 @@
+package com.hendrix.pdfmyxml.update;
+
+/**
+ * an indirect object that was read from a pdf file. the data of a stream object is not read,
+ * only its offset in the file.
+ *
+ * @author Tomer Shalev
+ */
+class PdfObject {
+    private final PdfRef    _ref;
+    private final Object    _value;
+    // offset of the stream data in the file, or -1
+    private final long      _streamOffset;
+
+    /**
+     * @param ref           the reference of the object
+     * @param value         the parsed value, i.e the dictionary of a stream
+     * @param streamOffset  offset of the stream data in the file, or -1 if it is not a stream
+     */
+    PdfObject(PdfRef ref, Object value, long streamOffset) {
+        _ref            = ref;
+        _value          = value;
+        _streamOffset   = streamOffset;
+    }
+
+    PdfRef getRef() {
+        return _ref;
+    }
+
+    Object getValue() {
+        return _value;
+    }
+
+    boolean isStream() {
+        return _streamOffset >= 0;
+    }
+
+    long getStreamOffset() {
+        return _streamOffset;
+    }
+}
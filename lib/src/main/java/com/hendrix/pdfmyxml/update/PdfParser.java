@@ -0,0 +1,460 @@
+package com.hendrix.pdfmyxml.update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a parser of pdf objects in a buffer, the subset of the syntax that is needed to read the cross
+ * reference sections and the page tree of a pdf. dictionaries are parsed into a {@link Map} by
+ * key name, arrays into a {@link List}, names into a {@link String} without the slash, strings
+ * into a {@code byte[]}, integers into a {@link Long}, reals into a {@link BigDecimal}, and
+ * references into a {@link PdfRef}.
+ *
+ * @author Tomer Shalev
+ */
+class PdfParser {
+    /**
+     * the null object
+     */
+    static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    private final byte[]    _buf;
+    private final int       _limit;
+    // offset of the buffer in the file
+    private final long      _base;
+    private int             _pos;
+
+    /**
+     * @param buf   the buffer
+     * @param len   number of valid bytes in the buffer
+     * @param base  offset of the buffer in the file
+     */
+    PdfParser(byte[] buf, int len, long base) {
+        this(buf, len, base, 0);
+    }
+
+    /**
+     * @param buf   the buffer
+     * @param len   number of valid bytes in the buffer
+     * @param base  offset of the buffer in the file
+     * @param start offset in the buffer to parse from, i.e an object in an object stream
+     */
+    PdfParser(byte[] buf, int len, long base, int start) {
+        if(start < 0 || start > len)
+            throw new IllegalArgumentException("PdfParser:: start " + start + " is out of 0.." + len);
+
+        _buf    = buf;
+        _limit  = len;
+        _base   = base;
+        _pos    = start;
+    }
+
+    /**
+     *
+     * @return the offset of the parser in the file
+     */
+    long getOffset() {
+        return _base + _pos;
+    }
+
+    /**
+     * parse an indirect object, {@code num gen obj value [stream]}
+     *
+     * @return the object
+     *
+     * @throws EOFException if the buffer ended before the object
+     * @throws IOException if the object is malformed
+     */
+    PdfObject parseObject() throws IOException {
+        int num         = (int)parseLong();
+        int gen         = (int)parseLong();
+
+        expectKeyword("obj");
+
+        Object value    = parseValue();
+        long stream     = -1;
+
+        skipWhitespace();
+
+        if(peekKeyword("stream")) {
+            _pos       += 6;
+
+            // the keyword is followed by CRLF or LF
+            if(peek() == '\r')
+                _pos++;
+
+            if(peek() == '\n')
+                _pos++;
+
+            stream      = getOffset();
+        }
+
+        return new PdfObject(new PdfRef(num, gen), value, stream);
+    }
+
+    /**
+     * parse the next value
+     *
+     * @return the value
+     *
+     * @throws EOFException if the buffer ended before the value
+     * @throws IOException if the value is malformed
+     */
+    Object parseValue() throws IOException {
+        skipWhitespace();
+
+        int c = peek();
+
+        switch (c) {
+            case '/':
+                _pos++;
+                return parseName();
+            case '(':
+                _pos++;
+                return parseLiteralString();
+            case '[':
+                _pos++;
+                return parseArray();
+            case '<':
+                if(peekAt(1) == '<') {
+                    _pos += 2;
+                    return parseDictionary();
+                }
+
+                _pos++;
+                return parseHexString();
+            default:
+                if(c == '+' || c == '-' || c == '.' || (c >= '0' && c <= '9'))
+                    return parseNumberOrRef();
+
+                String keyword = parseToken();
+
+                if("true".equals(keyword))
+                    return Boolean.TRUE;
+                if("false".equals(keyword))
+                    return Boolean.FALSE;
+                if("null".equals(keyword))
+                    return NULL;
+
+                throw new IOException("PdfParser:: unexpected " + keyword + " at " + getOffset());
+        }
+    }
+
+    /**
+     * parse a non negative integer
+     *
+     * @return the integer
+     *
+     * @throws IOException if the next token is not an integer
+     */
+    long parseLong() throws IOException {
+        skipWhitespace();
+
+        String token = parseToken();
+
+        try {
+            return Long.parseLong(token);
+        }
+        catch (NumberFormatException exc) {
+            throw new IOException("PdfParser:: expected an integer at " + getOffset() + " and not " + token);
+        }
+    }
+
+    /**
+     * @param keyword a keyword, i.e {@code xref}
+     *
+     * @return {@code true} if the next token is the keyword, it is consumed
+     *
+     * @throws EOFException if the buffer ended
+     */
+    boolean acceptKeyword(String keyword) throws IOException {
+        skipWhitespace();
+
+        if(!peekKeyword(keyword))
+            return false;
+
+        _pos += keyword.length();
+
+        return true;
+    }
+
+    /**
+     * @param keyword a keyword
+     *
+     * @throws IOException if the next token is not the keyword
+     */
+    void expectKeyword(String keyword) throws IOException {
+        if(!acceptKeyword(keyword))
+            throw new IOException("PdfParser:: expected " + keyword + " at " + getOffset());
+    }
+
+    private boolean peekKeyword(String keyword) throws IOException {
+        int len = keyword.length();
+
+        for (int ix = 0; ix < len; ix++)
+            if(peekAt(ix) != keyword.charAt(ix))
+                return false;
+
+        // the keyword is not a prefix of a longer token
+        return _pos + len >= _limit || isDelimiter(_buf[_pos + len] & 0xff) || isWhitespace(_buf[_pos + len] & 0xff);
+    }
+
+    private Map<String, Object> parseDictionary() throws IOException {
+        Map<String, Object> dict = new LinkedHashMap<>();
+
+        while (true) {
+            skipWhitespace();
+
+            if(peek() == '>') {
+                if(peekAt(1) != '>')
+                    throw new IOException("PdfParser:: malformed dictionary at " + getOffset());
+
+                _pos += 2;
+
+                return dict;
+            }
+
+            if(peek() != '/')
+                throw new IOException("PdfParser:: expected a key at " + getOffset());
+
+            _pos++;
+
+            String key      = parseName();
+            Object value    = parseValue();
+
+            // a null value is like a missing key
+            if(value != NULL)
+                dict.put(key, value);
+        }
+    }
+
+    private List<Object> parseArray() throws IOException {
+        List<Object> array = new ArrayList<>();
+
+        while (true) {
+            skipWhitespace();
+
+            if(peek() == ']') {
+                _pos++;
+
+                return array;
+            }
+
+            array.add(parseValue());
+        }
+    }
+
+    private String parseName() throws IOException {
+        int start = _pos;
+
+        while (_pos < _limit) {
+            int c = _buf[_pos] & 0xff;
+
+            if(isWhitespace(c) || isDelimiter(c))
+                break;
+
+            _pos++;
+        }
+
+        if(_pos >= _limit)
+            throw new EOFException();
+
+        // the raw name, escapes are kept as they are
+        return new String(_buf, start, _pos - start, "ISO-8859-1");
+    }
+
+    private Object parseNumberOrRef() throws IOException {
+        String token    = parseToken();
+
+        if(token.indexOf('.') >= 0)
+            return new BigDecimal(token);
+
+        long value;
+
+        try {
+            value       = Long.parseLong(token.startsWith("+") ? token.substring(1) : token);
+        }
+        catch (NumberFormatException exc) {
+            throw new IOException("PdfParser:: malformed number " + token + " at " + getOffset());
+        }
+
+        // a reference is an integer, an integer and R
+        int mark        = _pos;
+
+        skipWhitespace();
+
+        int c           = peek();
+
+        if(c >= '0' && c <= '9') {
+            String gen  = parseToken();
+
+            skipWhitespace();
+
+            if(isDigits(gen) && peek() == 'R' && peekKeyword("R")) {
+                _pos++;
+
+                return new PdfRef((int)value, Integer.parseInt(gen));
+            }
+        }
+
+        _pos            = mark;
+
+        return value;
+    }
+
+    private byte[] parseLiteralString() throws IOException {
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream();
+        int depth                   = 1;
+
+        while (true) {
+            int c = next();
+
+            if(c == '(')
+                depth++;
+            else if(c == ')') {
+                if(--depth == 0)
+                    return bos.toByteArray();
+            }
+            else if(c == '\\') {
+                c = next();
+
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case '\r':
+                        // a line continuation
+                        if(peek() == '\n')
+                            _pos++;
+                        continue;
+                    case '\n':
+                        continue;
+                    default:
+                        if(c >= '0' && c <= '7') {
+                            int octal = c - '0';
+
+                            for (int ix = 0; ix < 2 && peek() >= '0' && peek() <= '7'; ix++)
+                                octal = octal * 8 + (next() - '0');
+
+                            c = octal & 0xff;
+                        }
+                }
+            }
+
+            bos.write(c);
+        }
+    }
+
+    private byte[] parseHexString() throws IOException {
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream();
+        int high                    = -1;
+
+        while (true) {
+            int c = next();
+
+            if(c == '>')
+                break;
+
+            if(isWhitespace(c))
+                continue;
+
+            int digit = Character.digit(c, 16);
+
+            if(digit < 0)
+                throw new IOException("PdfParser:: malformed hex string at " + getOffset());
+
+            if(high < 0)
+                high = digit;
+            else {
+                bos.write(high << 4 | digit);
+                high = -1;
+            }
+        }
+
+        if(high >= 0)
+            bos.write(high << 4);
+
+        return bos.toByteArray();
+    }
+
+    private String parseToken() throws IOException {
+        int start = _pos;
+
+        while (_pos < _limit) {
+            int c = _buf[_pos] & 0xff;
+
+            if(isWhitespace(c) || isDelimiter(c))
+                break;
+
+            _pos++;
+        }
+
+        if(_pos >= _limit)
+            throw new EOFException();
+
+        return new String(_buf, start, _pos - start, "ISO-8859-1");
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+
+            if(c == '%') {
+                while (c != '\r' && c != '\n')
+                    c = next();
+            }
+            else if(isWhitespace(c))
+                _pos++;
+            else
+                return;
+        }
+    }
+
+    private int peek() throws IOException {
+        return peekAt(0);
+    }
+
+    private int peekAt(int ahead) throws IOException {
+        if(_pos + ahead >= _limit)
+            throw new EOFException();
+
+        return _buf[_pos + ahead] & 0xff;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+
+        _pos++;
+
+        return c;
+    }
+
+    private static boolean isDigits(String token) {
+        for (int ix = 0; ix < token.length(); ix++)
+            if(token.charAt(ix) < '0' || token.charAt(ix) > '9')
+                return false;
+
+        return token.length() > 0;
+    }
+
+    static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+    }
+
+    static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']' || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+}
@@ -0,0 +1,724 @@
+package com.hendrix.pdfmyxml.update;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * a reader of the structure of a pdf file, its cross reference sections, trailer, indirect objects and
+ * page tree. objects are read on demand at their offsets, so the cost does not depend on the size of
+ * the pdf. both cross reference tables and cross reference streams are read, and objects that are
+ * compressed in object streams.
+ *
+ * @author Tomer Shalev
+ */
+class PdfReader implements Closeable {
+    // the first read of an object or a section, it grows until it holds it
+    static private final int        CHUNK   = 4 * 1024;
+
+    private final File                  _file;
+    private final RandomAccessFile      _raf;
+    private final long                  _length;
+    // cross reference entries by object number, {type, offset or object stream, generation or index},
+    // the newest section wins
+    private final HashMap<Integer, long[]> _entries = new HashMap<>();
+    // numbers of the objects in use
+    private final TreeSet<Integer>      _inUse      = new TreeSet<>();
+    // the trailer of the newest section
+    private Map<String, Object>         _trailer    = null;
+    // offset of the newest cross reference section
+    private long                        _startXref;
+    // the newest section is a cross reference stream
+    private boolean                     _xrefStream = false;
+    // the last object stream that was read, objects are usually read in order
+    private int                         _objStmNum  = -1;
+    private ObjectStream                _objStm     = null;
+
+    /**
+     * @param file a pdf file
+     *
+     * @throws IOException if the file is not a pdf that can be read
+     */
+    PdfReader(File file) throws IOException {
+        _file   = file;
+        _raf    = new RandomAccessFile(file, "r");
+
+        try {
+            _length     = _raf.length();
+            _startXref  = readStartXref();
+
+            readSections();
+        }
+        catch (IOException exc) {
+            close();
+            throw exc;
+        }
+    }
+
+    File getFile() {
+        return _file;
+    }
+
+    long getLength() {
+        return _length;
+    }
+
+    /**
+     *
+     * @return offset of the newest cross reference section
+     */
+    long getStartXref() {
+        return _startXref;
+    }
+
+    /**
+     *
+     * @return {@code true} if the newest section is a cross reference stream
+     */
+    boolean isXrefStream() {
+        return _xrefStream;
+    }
+
+    /**
+     *
+     * @return the trailer of the newest section, the dictionary of a cross reference stream
+     */
+    Map<String, Object> getTrailer() {
+        return _trailer;
+    }
+
+    /**
+     *
+     * @return numbers of the objects in use, in order
+     */
+    Set<Integer> getObjectNumbers() {
+        return _inUse;
+    }
+
+    /**
+     *
+     * @return {@code true} if the file ends with a line feed or a carriage return
+     *
+     * @throws IOException if the file could not be read
+     */
+    boolean endsWithEol() throws IOException {
+        if(_length == 0)
+            return false;
+
+        _raf.seek(_length - 1);
+
+        int c = _raf.read();
+
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * @param num an object number
+     *
+     * @return the object, or {@code null} if it is not in use
+     *
+     * @throws IOException if the object could not be read
+     */
+    PdfObject readObject(int num) throws IOException {
+        long[] entry        = _entries.get(num);
+
+        if(entry == null || entry[0] == 0)
+            return null;
+
+        if(entry[0] == 2)
+            return new PdfObject(new PdfRef(num, 0), objectStream((int)entry[1]).get(num, (int)entry[2]), -1);
+
+        final long offset   = entry[1];
+
+        PdfObject object    = parse(offset, new Parse<PdfObject>() {
+            @Override
+            public PdfObject parse(PdfParser parser) throws IOException {
+                return parser.parseObject();
+            }
+        });
+
+        if(object.getRef().getNum() != num)
+            throw new IOException("PdfReader:: object " + num + " is not at " + offset);
+
+        return object;
+    }
+
+    /**
+     * @param value a value, or a reference
+     *
+     * @return the value, the referenced value is read
+     *
+     * @throws IOException if the object could not be read
+     */
+    Object resolve(Object value) throws IOException {
+        // references to references are not followed
+        if(!(value instanceof PdfRef))
+            return value;
+
+        PdfObject object = readObject(((PdfRef)value).getNum());
+
+        return object == null ? PdfParser.NULL : object.getValue();
+    }
+
+    /**
+     * @param ref a reference of a dictionary
+     *
+     * @return the dictionary
+     *
+     * @throws IOException if the object could not be read, or is not a dictionary
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> readDictionary(PdfRef ref) throws IOException {
+        Object value = resolve(ref);
+
+        if(!(value instanceof Map))
+            throw new IOException("PdfReader:: object " + ref + " is not a dictionary");
+
+        return (Map<String, Object>)value;
+    }
+
+    /**
+     *
+     * @return the root of the page tree
+     *
+     * @throws IOException if the catalog could not be read
+     */
+    PdfRef getPagesRef() throws IOException {
+        Object root     = _trailer.get("Root");
+
+        if(!(root instanceof PdfRef))
+            throw new IOException("PdfReader:: no catalog");
+
+        Object pages    = readDictionary((PdfRef)root).get("Pages");
+
+        if(!(pages instanceof PdfRef))
+            throw new IOException("PdfReader:: no page tree");
+
+        return (PdfRef)pages;
+    }
+
+    /**
+     * collect the pages in order, and their parents
+     *
+     * @param pages     the pages
+     * @param parents   the parent of every page
+     *
+     * @throws IOException if the page tree could not be read
+     */
+    void readPages(List<PdfRef> pages, List<PdfRef> parents) throws IOException {
+        readPages(getPagesRef(), pages, parents, new HashSet<Integer>());
+    }
+
+    private void readPages(PdfRef node, List<PdfRef> pages, List<PdfRef> parents, Set<Integer> visited) throws IOException {
+        if(!visited.add(node.getNum()))
+            throw new IOException("PdfReader:: a cycle in the page tree");
+
+        Map<String, Object> dict    = readDictionary(node);
+        Object kids                 = resolve(dict.get("Kids"));
+
+        if(!(kids instanceof List))
+            throw new IOException("PdfReader:: page tree node " + node + " has no kids");
+
+        for (Object kid : (List<?>)kids) {
+            if(!(kid instanceof PdfRef))
+                throw new IOException("PdfReader:: malformed kids of " + node);
+
+            // every kid is read, a node of a single page has the same count as a page
+            Map<String, Object> child   = readDictionary((PdfRef)kid);
+            Object type                 = resolve(child.get("Type"));
+
+            if("Pages".equals(type) || (type == null && child.containsKey("Kids")))
+                readPages((PdfRef)kid, pages, parents, visited);
+            else {
+                pages.add((PdfRef)kid);
+                parents.add(node);
+            }
+        }
+    }
+
+    /**
+     * @param object a stream object
+     *
+     * @return the length of its data
+     *
+     * @throws IOException if the length could not be read
+     */
+    long streamLength(PdfObject object) throws IOException {
+        if(!object.isStream() || !(object.getValue() instanceof Map))
+            throw new IOException("PdfReader:: object " + object.getRef() + " is not a stream");
+
+        Object length = resolve(((Map<?, ?>)object.getValue()).get("Length"));
+
+        if(!(length instanceof Long))
+            throw new IOException("PdfReader:: stream " + object.getRef() + " has no length");
+
+        return (Long)length;
+    }
+
+    /**
+     * read and decode the data of a stream. only the filters of cross reference and object streams
+     * are supported, flate with an optional png predictor.
+     *
+     * @param object a stream object
+     *
+     * @return the decoded data
+     *
+     * @throws IOException if the data could not be read, or has an unsupported filter
+     */
+    byte[] readStream(PdfObject object) throws IOException {
+        long length         = streamLength(object);
+
+        if(length > Integer.MAX_VALUE)
+            throw new IOException("PdfReader:: stream " + object.getRef() + " is too long");
+
+        Map<?, ?> dict      = (Map<?, ?>)object.getValue();
+        byte[] data         = read(object.getStreamOffset(), (int)length);
+        Object filter       = resolve(dict.get("Filter"));
+        Object params       = resolve(dict.get("DecodeParms"));
+
+        if(filter instanceof List && ((List<?>)filter).size() == 1) {
+            filter          = ((List<?>)filter).get(0);
+            params          = params instanceof List ? ((List<?>)params).get(0) : params;
+        }
+
+        if(filter == null)
+            return data;
+
+        if(!"FlateDecode".equals(filter))
+            throw new IOException("PdfReader:: unsupported filter " + filter + " of " + object.getRef());
+
+        data                = inflate(data);
+
+        if(params instanceof Map) {
+            Object predictor    = ((Map<?, ?>)params).get("Predictor");
+            Object columns      = ((Map<?, ?>)params).get("Columns");
+
+            if(predictor instanceof Long && (Long)predictor >= 10)
+                data            = unpredict(data, columns instanceof Long ? ((Long)columns).intValue() : 1);
+            else if(predictor instanceof Long && (Long)predictor != 1)
+                throw new IOException("PdfReader:: unsupported predictor " + predictor + " of " + object.getRef());
+        }
+
+        return data;
+    }
+
+    /**
+     * @param offset        offset of the stream data
+     * @param length        length of the stream data
+     * @param writer        the writer to copy the stream data into
+     *
+     * @throws IOException if the data could not be copied
+     */
+    void copy(long offset, long length, PdfWriter writer) throws IOException {
+        byte[] buffer   = new byte[16 * 1024];
+
+        _raf.seek(offset);
+
+        while (length > 0) {
+            int read    = _raf.read(buffer, 0, (int)Math.min(buffer.length, length));
+
+            if(read < 0)
+                throw new EOFException("PdfReader:: stream data ends at the end of the file");
+
+            writer.write(buffer, 0, read);
+            length     -= read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _raf.close();
+    }
+
+    /**
+     * @return offset of the newest cross reference section, after the {@code startxref} keyword
+     */
+    private long readStartXref() throws IOException {
+        int len         = (int)Math.min(_length, 1024);
+        byte[] tail     = read(_length - len, len);
+        String text     = new String(tail, 0, len, "ISO-8859-1");
+        int index       = text.lastIndexOf("startxref");
+
+        if(index < 0)
+            throw new IOException("PdfReader:: " + _file + " is not a pdf, no startxref");
+
+        try {
+            return Long.parseLong(text.substring(index + 9).replace("%%EOF", "").trim());
+        }
+        catch (NumberFormatException exc) {
+            throw new IOException("PdfReader:: malformed startxref");
+        }
+    }
+
+    /**
+     * read the cross reference sections, from the newest one along the {@code /Prev} chain
+     */
+    private void readSections() throws IOException {
+        Set<Long> visited   = new HashSet<>();
+        long offset         = _startXref;
+
+        while (offset >= 0) {
+            if(!visited.add(offset))
+                throw new IOException("PdfReader:: a cycle of cross reference sections");
+
+            boolean stream  = !isXrefTable(offset);
+            Map<String, Object> trailer = stream ? readXrefStream(offset) : readXrefTable(offset);
+
+            if(_trailer == null) {
+                _trailer    = trailer;
+                _xrefStream = stream;
+            }
+
+            // a hybrid section, a table with a stream of the compressed objects
+            Object hybrid   = trailer.get("XRefStm");
+
+            if(!stream && hybrid instanceof Long)
+                readXrefStream((Long)hybrid);
+
+            Object prev     = trailer.get("Prev");
+
+            offset          = prev instanceof Long ? (Long)prev : -1;
+        }
+
+        for (Map.Entry<Integer, long[]> entry : _entries.entrySet())
+            if(entry.getValue()[0] != 0)
+                _inUse.add(entry.getKey());
+    }
+
+    /**
+     * @param offset offset of a section
+     *
+     * @return {@code true} if the section is a cross reference table
+     */
+    private boolean isXrefTable(long offset) throws IOException {
+        return parse(offset, new Parse<Boolean>() {
+            @Override
+            public Boolean parse(PdfParser parser) throws IOException {
+                return parser.acceptKeyword("xref");
+            }
+        });
+    }
+
+    /**
+     * an entry of an older section is hidden by the newer ones
+     */
+    private void addEntry(int num, long type, long field2, long field3) {
+        if(!_entries.containsKey(num))
+            _entries.put(num, new long[] {type, field2, field3});
+    }
+
+    /**
+     * read a cross reference table, and its trailer
+     *
+     * @param offset offset of the section
+     *
+     * @return the trailer
+     */
+    private Map<String, Object> readXrefTable(final long offset) throws IOException {
+        final HashMap<Integer, long[]> entries  = new HashMap<>();
+
+        Map<String, Object> trailer = parse(offset, new Parse<Map<String, Object>>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Map<String, Object> parse(PdfParser parser) throws IOException {
+                entries.clear();
+
+                parser.expectKeyword("xref");
+
+                while (!parser.acceptKeyword("trailer")) {
+                    int first   = (int)parser.parseLong();
+                    int count   = (int)parser.parseLong();
+
+                    for (int ix = 0; ix < count; ix++) {
+                        long entry  = parser.parseLong();
+                        long gen    = parser.parseLong();
+
+                        if(parser.acceptKeyword("n"))
+                            entries.put(first + ix, new long[] {1, entry, gen});
+                        else if(parser.acceptKeyword("f"))
+                            entries.put(first + ix, new long[] {0, entry, gen});
+                        else
+                            throw new IOException("PdfReader:: malformed cross reference entry at " + parser.getOffset());
+                    }
+                }
+
+                Object trailer = parser.parseValue();
+
+                if(!(trailer instanceof Map))
+                    throw new IOException("PdfReader:: malformed trailer at " + parser.getOffset());
+
+                return (Map<String, Object>)trailer;
+            }
+        });
+
+        for (Map.Entry<Integer, long[]> entry : entries.entrySet())
+            addEntry(entry.getKey(), entry.getValue()[0], entry.getValue()[1], entry.getValue()[2]);
+
+        return trailer;
+    }
+
+    /**
+     * read a cross reference stream
+     *
+     * @param offset offset of the stream object
+     *
+     * @return the dictionary of the stream, that is also the trailer
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readXrefStream(long offset) throws IOException {
+        PdfObject object        = parse(offset, new Parse<PdfObject>() {
+            @Override
+            public PdfObject parse(PdfParser parser) throws IOException {
+                return parser.parseObject();
+            }
+        });
+
+        if(!object.isStream() || !(object.getValue() instanceof Map)
+           || !"XRef".equals(((Map<?, ?>)object.getValue()).get("Type")))
+            throw new IOException("PdfReader:: no cross reference section at " + offset);
+
+        Map<String, Object> dict    = (Map<String, Object>)object.getValue();
+        Object w                    = dict.get("W");
+        Object size                 = dict.get("Size");
+        Object index                = dict.get("Index");
+
+        if(!(w instanceof List) || ((List<?>)w).size() != 3 || !(size instanceof Long))
+            throw new IOException("PdfReader:: malformed cross reference stream at " + offset);
+
+        int[] widths                = new int[3];
+
+        for (int ix = 0; ix < 3; ix++)
+            widths[ix]              = ((Number)((List<?>)w).get(ix)).intValue();
+
+        if(!(index instanceof List))
+            index                   = Arrays.<Object>asList(0L, size);
+
+        byte[] data                 = readStream(object);
+        int pos                     = 0;
+        List<?> subsections         = (List<?>)index;
+
+        for (int ix = 0; ix + 1 < subsections.size(); ix += 2) {
+            int first               = ((Number)subsections.get(ix)).intValue();
+            int count               = ((Number)subsections.get(ix + 1)).intValue();
+
+            for (int jx = 0; jx < count; jx++) {
+                long[] fields       = new long[3];
+
+                for (int field = 0; field < 3; field++) {
+                    if(pos + widths[field] > data.length)
+                        throw new IOException("PdfReader:: truncated cross reference stream at " + offset);
+
+                    for (int b = 0; b < widths[field]; b++)
+                        fields[field] = fields[field] << 8 | (data[pos++] & 0xff);
+                }
+
+                // the type defaults to an object in use
+                if(widths[0] == 0)
+                    fields[0]       = 1;
+
+                if(fields[0] <= 2)
+                    addEntry(first + jx, fields[0], fields[1], fields[2]);
+            }
+        }
+
+        return dict;
+    }
+
+    /**
+     * @param num the number of an object stream
+     *
+     * @return the object stream, the last one is cached
+     */
+    private ObjectStream objectStream(int num) throws IOException {
+        if(num == _objStmNum)
+            return _objStm;
+
+        long[] entry        = _entries.get(num);
+
+        if(entry == null || entry[0] != 1)
+            throw new IOException("PdfReader:: no object stream " + num);
+
+        PdfObject object    = readObject(num);
+
+        if(!object.isStream() || !"ObjStm".equals(((Map<?, ?>)object.getValue()).get("Type")))
+            throw new IOException("PdfReader:: object " + num + " is not an object stream");
+
+        _objStm             = new ObjectStream((Map<?, ?>)object.getValue(), readStream(object));
+        _objStmNum          = num;
+
+        return _objStm;
+    }
+
+    /**
+     * the decoded objects of an object stream
+     */
+    private static class ObjectStream {
+        private final byte[]    _data;
+        private final int       _first;
+        private final int[]     _nums;
+        private final int[]     _offsets;
+
+        ObjectStream(Map<?, ?> dict, byte[] data) throws IOException {
+            Object n        = dict.get("N");
+            Object first    = dict.get("First");
+
+            if(!(n instanceof Long) || !(first instanceof Long))
+                throw new IOException("PdfReader:: malformed object stream");
+
+            // the objects are separated by white space, the last one may end the data
+            _data           = Arrays.copyOf(data, data.length + 1);
+            _data[data.length] = ' ';
+            _first          = ((Long)first).intValue();
+            _nums           = new int[((Long)n).intValue()];
+            _offsets        = new int[_nums.length];
+
+            PdfParser parser = new PdfParser(data, data.length, 0);
+
+            for (int ix = 0; ix < _nums.length; ix++) {
+                _nums[ix]       = (int)parser.parseLong();
+                _offsets[ix]    = (int)parser.parseLong();
+            }
+        }
+
+        /**
+         * @param num   the object number
+         * @param index the index of the object in the stream
+         *
+         * @return the object
+         */
+        Object get(int num, int index) throws IOException {
+            if(index < 0 || index >= _nums.length || _nums[index] != num)
+                throw new IOException("PdfReader:: object " + num + " is not at index " + index + " of its object stream");
+
+            int offset          = _first + _offsets[index];
+
+            if(offset < 0 || offset >= _data.length)
+                throw new IOException("PdfReader:: object " + num + " is out of its object stream");
+
+            // parsed in place, the stream holds many objects
+            return new PdfParser(_data, _data.length, 0, offset).parseValue();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        InputStream is              = new InflaterInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer               = new byte[16 * 1024];
+        int read;
+
+        try {
+            while ((read = is.read(buffer)) > 0)
+                bos.write(buffer, 0, read);
+        }
+        finally {
+            is.close();
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * reverse the png predictors, every row starts with the type of its predictor
+     *
+     * @param data      the predicted data
+     * @param columns   bytes of a row
+     *
+     * @return the data
+     */
+    private static byte[] unpredict(byte[] data, int columns) throws IOException {
+        int rows        = data.length / (columns + 1);
+        byte[] out      = new byte[rows * columns];
+
+        for (int row = 0; row < rows; row++) {
+            int type    = data[row * (columns + 1)] & 0xff;
+            int in      = row * (columns + 1) + 1;
+            int at      = row * columns;
+
+            for (int col = 0; col < columns; col++) {
+                int raw     = data[in + col] & 0xff;
+                int left    = col > 0 ? out[at + col - 1] & 0xff : 0;
+                int up      = row > 0 ? out[at + col - columns] & 0xff : 0;
+                int upLeft  = row > 0 && col > 0 ? out[at + col - columns - 1] & 0xff : 0;
+                int value;
+
+                switch (type) {
+                    case 0: value = raw; break;
+                    case 1: value = raw + left; break;
+                    case 2: value = raw + up; break;
+                    case 3: value = raw + ((left + up) >> 1); break;
+                    case 4: value = raw + paeth(left, up, upLeft); break;
+                    default:
+                        throw new IOException("PdfReader:: unsupported png predictor " + type);
+                }
+
+                out[at + col] = (byte)value;
+            }
+        }
+
+        return out;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p   = a + b - c;
+        int pa  = Math.abs(p - a);
+        int pb  = Math.abs(p - b);
+        int pc  = Math.abs(p - c);
+
+        return pa <= pb && pa <= pc ? a : (pb <= pc ? b : c);
+    }
+
+    /**
+     * a parse of a structure at an offset of the file
+     */
+    private interface Parse<T> {
+        T parse(PdfParser parser) throws IOException;
+    }
+
+    /**
+     * parse a structure at an offset of the file. the buffer grows until it holds the whole structure.
+     */
+    private <T> T parse(long offset, Parse<T> parse) throws IOException {
+        if(offset < 0 || offset >= _length)
+            throw new IOException("PdfReader:: offset " + offset + " is out of the file");
+
+        int len = CHUNK;
+
+        while (true) {
+            len             = (int)Math.min(len, _length - offset);
+
+            byte[] buf      = read(offset, len);
+
+            try {
+                return parse.parse(new PdfParser(buf, len, offset));
+            }
+            catch (EOFException exc) {
+                if(offset + len >= _length)
+                    throw new IOException("PdfReader:: truncated structure at " + offset);
+
+                len        *= 4;
+            }
+        }
+    }
+
+    private byte[] read(long offset, int len) throws IOException {
+        byte[] buf = new byte[len];
+
+        _raf.seek(offset);
+        _raf.readFully(buf);
+
+        return buf;
+    }
+}
@@ -0,0 +1,56 @@
+package com.hendrix.pdfmyxml.update;
+
+/**
+ * a reference to an indirect object of a pdf, i.e {@code 12 0 R}
+ *
+ * @author Tomer Shalev
+ */
+public final class PdfRef {
+    private final int _num;
+    private final int _gen;
+
+    /**
+     * @param num the object number
+     * @param gen the generation number
+     */
+    public PdfRef(int num, int gen) {
+        _num = num;
+        _gen = gen;
+    }
+
+    /**
+     *
+     * @return the object number
+     */
+    public int getNum() {
+        return _num;
+    }
+
+    /**
+     *
+     * @return the generation number
+     */
+    public int getGen() {
+        return _gen;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof PdfRef))
+            return false;
+
+        PdfRef ref = (PdfRef)o;
+
+        return _num == ref._num && _gen == ref._gen;
+    }
+
+    @Override
+    public int hashCode() {
+        return _num * 31 + _gen;
+    }
+
+    @Override
+    public String toString() {
+        return _num + " " + _gen + " R";
+    }
+}
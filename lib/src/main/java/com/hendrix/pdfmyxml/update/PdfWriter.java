@@ -0,0 +1,350 @@
+package com.hendrix.pdfmyxml.update;
+
+import com.hendrix.pdfmyxml.utils.CountingOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * a writer of pdf objects and cross reference sections into a pdf file, at its end or into a new one.
+ * the offset in the file of the next object is known, for the cross reference section. entries of a
+ * cross reference section are {@code {type, offset or object stream, generation or index}}, like the
+ * fields of a cross reference stream.
+ *
+ * @author Tomer Shalev
+ */
+class PdfWriter {
+    static private final Charset    LATIN1  = Charset.forName("ISO-8859-1");
+    static private final char[]     HEX     = "0123456789abcdef".toCharArray();
+
+    private final CountingOutputStream  _os;
+    // offset in the file of the first written byte
+    private final long                  _base;
+
+    /**
+     * @param os    the stream of the file
+     * @param base  offset in the file of the first byte that is written
+     */
+    PdfWriter(OutputStream os, long base) {
+        _os     = new CountingOutputStream(os);
+        _base   = base;
+    }
+
+    /**
+     *
+     * @return offset in the file of the next byte
+     */
+    long getOffset() {
+        return _base + _os.getCount();
+    }
+
+    /**
+     * write the header of an indirect object
+     *
+     * @param ref the reference of the object
+     *
+     * @return offset of the object in the file
+     *
+     * @throws IOException if the object could not be written
+     */
+    long beginObject(PdfRef ref) throws IOException {
+        long offset = getOffset();
+
+        write(ref.getNum() + " " + ref.getGen() + " obj\n");
+
+        return offset;
+    }
+
+    /**
+     * write the end of an indirect object
+     *
+     * @throws IOException if the object could not be written
+     */
+    void endObject() throws IOException {
+        write("\nendobj\n");
+    }
+
+    /**
+     * write an indirect object
+     *
+     * @param ref   the reference of the object
+     * @param value the value
+     *
+     * @return offset of the object in the file
+     *
+     * @throws IOException if the object could not be written
+     */
+    long writeObject(PdfRef ref, Object value) throws IOException {
+        long offset = beginObject(ref);
+
+        writeValue(value);
+        endObject();
+
+        return offset;
+    }
+
+    /**
+     * write a stream object, its dictionary gets the length of the data
+     *
+     * @param ref   the reference of the object
+     * @param dict  the dictionary of the stream
+     * @param data  the encoded data
+     *
+     * @return offset of the object in the file
+     *
+     * @throws IOException if the object could not be written
+     */
+    long writeStream(PdfRef ref, Map<String, Object> dict, byte[] data) throws IOException {
+        long offset = beginObject(ref);
+
+        dict.put("Length", (long)data.length);
+
+        writeValue(dict);
+        write("\nstream\n");
+        write(data, 0, data.length);
+        write("\nendstream");
+        endObject();
+
+        return offset;
+    }
+
+    /**
+     * write a cross reference table, its trailer and the end of the file
+     *
+     * @param entries   the entries by object number
+     * @param trailer   the trailer
+     *
+     * @throws IOException if the section could not be written
+     */
+    void writeXrefTable(TreeMap<Integer, long[]> entries, Map<String, Object> trailer) throws IOException {
+        long offset         = getOffset();
+        StringBuilder sb    = new StringBuilder(entries.size() * 20 + 256);
+        List<int[]> runs    = subsections(entries);
+
+        sb.append("xref\n");
+
+        for (int[] run : runs) {
+            sb.append(run[0]).append(' ').append(run[1]).append('\n');
+
+            for (int num = run[0]; num < run[0] + run[1]; num++) {
+                long[] entry = entries.get(num);
+
+                sb.append(String.format(Locale.US, "%010d %05d %c \n", entry[1], entry[2], entry[0] == 0 ? 'f' : 'n'));
+            }
+        }
+
+        sb.append("trailer\n");
+        format(trailer, sb);
+        sb.append("\nstartxref\n").append(offset).append("\n%%EOF\n");
+
+        write(sb.toString());
+    }
+
+    /**
+     * write a cross reference stream, that is also the trailer, and the end of the file. the entry of
+     * the stream itself is added.
+     *
+     * @param ref       the reference of the stream
+     * @param entries   the entries by object number
+     * @param trailer   the trailer entries, i.e {@code /Root}, {@code /Size} is set
+     *
+     * @throws IOException if the section could not be written
+     */
+    void writeXrefStream(PdfRef ref, TreeMap<Integer, long[]> entries, Map<String, Object> trailer) throws IOException {
+        long offset                 = getOffset();
+
+        entries.put(ref.getNum(), new long[] {1, offset, 0});
+
+        int[] widths                = {1, 1, 1};
+
+        for (long[] entry : entries.values()) {
+            widths[1]               = Math.max(widths[1], bytesOf(entry[1]));
+            widths[2]               = Math.max(widths[2], bytesOf(entry[2]));
+        }
+
+        ByteArrayOutputStream data  = new ByteArrayOutputStream(entries.size() * (widths[0] + widths[1] + widths[2]));
+        List<Object> index          = new ArrayList<>();
+
+        for (int[] run : subsections(entries)) {
+            index.add((long)run[0]);
+            index.add((long)run[1]);
+
+            for (int num = run[0]; num < run[0] + run[1]; num++) {
+                long[] entry = entries.get(num);
+
+                for (int field = 0; field < 3; field++)
+                    for (int b = widths[field] - 1; b >= 0; b--)
+                        data.write((int)(entry[field] >>> (8 * b)));
+            }
+        }
+
+        Map<String, Object> dict    = new LinkedHashMap<>();
+        List<Object> w              = new ArrayList<>();
+
+        for (int width : widths)
+            w.add((long)width);
+
+        dict.put("Type", "XRef");
+        dict.put("Size", (long)(entries.lastKey() + 1));
+        dict.put("W", w);
+        dict.put("Index", index);
+
+        for (Map.Entry<String, Object> entry : trailer.entrySet())
+            if(!dict.containsKey(entry.getKey()))
+                dict.put(entry.getKey(), entry.getValue());
+
+        dict.put("Filter", "FlateDecode");
+
+        writeStream(ref, dict, deflate(data.toByteArray()));
+        write("startxref\n" + offset + "\n%%EOF\n");
+    }
+
+    /**
+     * @param data data
+     *
+     * @return the data compressed with flate
+     *
+     * @throws IOException never
+     */
+    static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream(data.length / 2 + 64);
+        Deflater deflater           = new Deflater(Deflater.BEST_COMPRESSION);
+
+        try {
+            DeflaterOutputStream dos = new DeflaterOutputStream(bos, deflater);
+
+            dos.write(data);
+            dos.close();
+        }
+        finally {
+            deflater.end();
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * @return runs of consecutive object numbers, {@code {first, count}}
+     */
+    private static List<int[]> subsections(TreeMap<Integer, long[]> entries) {
+        List<int[]> runs = new ArrayList<>();
+        int[] run        = null;
+
+        for (Integer num : entries.keySet()) {
+            if(run != null && num == run[0] + run[1])
+                run[1]++;
+            else
+                runs.add(run = new int[] {num, 1});
+        }
+
+        return runs;
+    }
+
+    private static int bytesOf(long value) {
+        int bytes = 1;
+
+        while ((value >>>= 8) != 0)
+            bytes++;
+
+        return bytes;
+    }
+
+    /**
+     * @param value a value
+     *
+     * @throws IOException if the value could not be written
+     */
+    void writeValue(Object value) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+
+        format(value, sb);
+        write(sb.toString());
+    }
+
+    /**
+     * @param text text in latin 1
+     *
+     * @throws IOException if the text could not be written
+     */
+    void write(String text) throws IOException {
+        _os.write(text.getBytes(LATIN1));
+    }
+
+    /**
+     * @param bytes raw bytes, i.e stream data
+     * @param off   offset in the bytes
+     * @param len   number of bytes
+     *
+     * @throws IOException if the bytes could not be written
+     */
+    void write(byte[] bytes, int off, int len) throws IOException {
+        _os.write(bytes, off, len);
+    }
+
+    void flush() throws IOException {
+        _os.flush();
+    }
+
+    /**
+     * format a value the way it was parsed by {@link PdfParser}
+     *
+     * @param value the value
+     * @param sb    the output
+     */
+    @SuppressWarnings("unchecked")
+    static void format(Object value, StringBuilder sb) {
+        if(value instanceof Map) {
+            sb.append("<<\n");
+
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>)value).entrySet()) {
+                sb.append('/').append(entry.getKey()).append(' ');
+                format(entry.getValue(), sb);
+                sb.append('\n');
+            }
+
+            sb.append(">>");
+        }
+        else if(value instanceof List) {
+            sb.append('[');
+
+            boolean first = true;
+
+            for (Object item : (List<Object>)value) {
+                if(!first)
+                    sb.append(' ');
+
+                format(item, sb);
+                first = false;
+            }
+
+            sb.append(']');
+        }
+        else if(value instanceof String)
+            sb.append('/').append((String)value);
+        else if(value instanceof byte[]) {
+            sb.append('<');
+
+            for (byte b : (byte[])value)
+                sb.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+
+            sb.append('>');
+        }
+        else if(value instanceof BigDecimal)
+            sb.append(((BigDecimal)value).toPlainString());
+        else if(value instanceof Number || value instanceof Boolean || value instanceof PdfRef || value == PdfParser.NULL)
+            sb.append(value.toString());
+        else
+            throw new IllegalArgumentException("PdfWriter:: not a pdf value " + value);
+    }
+}
@@ -0,0 +1,203 @@
+package com.hendrix.pdfmyxml.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.hendrix.pdfmyxml.interfaces.IDisposable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a pool of mutable bitmaps keyed by width, height and config, bounded by a byte budget.
+ * when the budget is exceeded, bitmaps of the least recently used key are recycled first.
+ * it is thread safe, so bitmaps may be released from encoder threads.
+ *
+ * @author Tomer Shalev
+ */
+public class BitmapPool implements IDisposable {
+    // pooled bitmaps by key, in least recently used order
+    private final LinkedHashMap<Key, ArrayDeque<Bitmap>>    _pool       = new LinkedHashMap<>(8, 0.75f, true);
+    // maximum bytes of pooled bitmaps
+    private long                                            _maxBytes;
+    // bytes of pooled bitmaps
+    private long                                            _bytes      = 0;
+
+    /**
+     * @param maxBytes maximum bytes of pooled bitmaps
+     */
+    public BitmapPool(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * obtain a transparent mutable bitmap, either pooled or a new one
+     *
+     * @param width     the width
+     * @param height    the height
+     * @param config    the config
+     *
+     * @return a bitmap
+     */
+    public Bitmap obtain(int width, int height, Bitmap.Config config) {
+        Bitmap bmp;
+
+        synchronized (this) {
+            ArrayDeque<Bitmap> bitmaps  = _pool.get(new Key(width, height, config));
+
+            bmp                         = bitmaps == null ? null : bitmaps.pollLast();
+
+            if(bmp != null)
+                _bytes                 -= sizeOf(bmp);
+        }
+
+        if(bmp == null)
+            return Bitmap.createBitmap(width, height, config);
+
+        // a pooled bitmap may have been flattened and marked as opaque
+        if(config != Bitmap.Config.RGB_565)
+            bmp.setHasAlpha(true);
+
+        bmp.eraseColor(Color.TRANSPARENT);
+
+        return bmp;
+    }
+
+    /**
+     * release a bitmap into the pool. the caller must not use it afterwards.
+     *
+     * @param bmp the bitmap
+     */
+    public void release(Bitmap bmp) {
+        if(bmp == null || bmp.isRecycled())
+            return;
+
+        long size = sizeOf(bmp);
+
+        if(!bmp.isMutable() || bmp.getConfig() == null || size > _maxBytes) {
+            bmp.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            Key key                     = new Key(bmp.getWidth(), bmp.getHeight(), bmp.getConfig());
+            ArrayDeque<Bitmap> bitmaps  = _pool.get(key);
+
+            if(bitmaps == null)
+                _pool.put(key, bitmaps = new ArrayDeque<>());
+
+            bitmaps.addLast(bmp);
+            _bytes                     += size;
+
+            trimTo(_maxBytes);
+        }
+    }
+
+    /**
+     *
+     * @return bytes of pooled bitmaps
+     */
+    public synchronized long getSize() {
+        return _bytes;
+    }
+
+    /**
+     *
+     * @return maximum bytes of pooled bitmaps
+     */
+    public synchronized long getMaxSize() {
+        return _maxBytes;
+    }
+
+    /**
+     * set the maximum bytes of pooled bitmaps, and evict bitmaps above it
+     *
+     * @param maxBytes maximum bytes of pooled bitmaps
+     */
+    public synchronized void setMaxSize(long maxBytes) {
+        _maxBytes = maxBytes;
+
+        trimTo(maxBytes);
+    }
+
+    /**
+     * recycle all of the pooled bitmaps
+     */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    /**
+     * recycle the least recently used bitmaps until the pool fits into the budget
+     *
+     * @param maxBytes the budget
+     */
+    private void trimTo(long maxBytes) {
+        Iterator<Map.Entry<Key, ArrayDeque<Bitmap>>> iterator = _pool.entrySet().iterator();
+
+        while(_bytes > maxBytes && iterator.hasNext()) {
+            ArrayDeque<Bitmap> bitmaps = iterator.next().getValue();
+
+            while(_bytes > maxBytes && !bitmaps.isEmpty()) {
+                Bitmap bmp  = bitmaps.pollFirst();
+
+                _bytes     -= sizeOf(bmp);
+
+                bmp.recycle();
+            }
+
+            if(bitmaps.isEmpty())
+                iterator.remove();
+        }
+    }
+
+    /**
+     * dispose the item
+     */
+    @Override
+    public void dispose() {
+        clear();
+    }
+
+    /**
+     * @param bmp a bitmap
+     *
+     * @return the bytes of the bitmap pixels
+     */
+    static public long sizeOf(Bitmap bmp) {
+        return (long)bmp.getRowBytes() * bmp.getHeight();
+    }
+
+    /**
+     * the key of pooled bitmaps
+     */
+    private static final class Key {
+        private final int           _width;
+        private final int           _height;
+        private final Bitmap.Config _config;
+
+        Key(int width, int height, Bitmap.Config config) {
+            _width  = width;
+            _height = height;
+            _config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key))
+                return false;
+
+            Key key = (Key)o;
+
+            return _width == key._width && _height == key._height && _config == key._config;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * _width + _height) + _config.hashCode();
+        }
+    }
+
+}
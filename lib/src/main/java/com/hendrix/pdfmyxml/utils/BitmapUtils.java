@@ -8,6 +8,8 @@ import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff.Mode;
@@ -17,8 +19,15 @@ import android.graphics.Shader.TileMode;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 
+import com.hendrix.pdfmyxml.encoder.FlateImageEncoder;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * @author Tomer Shalev
@@ -42,6 +51,34 @@ public final class BitmapUtils
         STRETCH, LETTERBOX, ZOOM, NONE
     }
 
+    /**
+     * obtain a transparent mutable bitmap from a pool, or create one
+     *
+     * @param pool a bitmap pool, or {@code null}
+     * @param width the width
+     * @param height the height
+     * @param config the config
+     * @return a bitmap
+     */
+    public static Bitmap obtainBitmap(BitmapPool pool, int width, int height, Config config)
+    {
+        return pool != null ? pool.obtain(width, height, config) : Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * release a bitmap into a pool, or recycle it
+     *
+     * @param pool a bitmap pool, or {@code null}
+     * @param bmp the bitmap
+     */
+    public static void releaseBitmap(BitmapPool pool, Bitmap bmp)
+    {
+        if (pool != null)
+            pool.release(bmp);
+        else if (bmp != null)
+            bmp.recycle();
+    }
+
     /**
      * not the regular bitmap resizer. much smarter with resizing and cropping options and resizing with proportions.
      * @param bmSrc the source bitmap
@@ -251,6 +288,91 @@ public final class BitmapUtils
         return new ByteArrayInputStream(bitmapToPng(image));
     }
 
+    /**
+     * Bitmap into a deflated raw pixels image stream, ready to be embedded as is
+     * into a pdf with {@code ImageType.JET}, without a PNG encode/decode round-trip.
+     * translucent pixels are composited over white.
+     *
+     * @param image the Bitmap
+     * @return deflated image stream
+     * @throws IOException if compression failed
+     *
+     * @see com.hendrix.pdfmyxml.encoder.FlateImageEncoder
+     */
+    public static InputStream bitmapToFlateInputStream(final Bitmap image) throws IOException
+    {
+        return bitmapToFlateInputStream(image, false);
+    }
+
+    /**
+     * Bitmap into a deflated raw pixels image stream, ready to be embedded as is
+     * into a pdf with {@code ImageType.JET}, without a PNG encode/decode round-trip.
+     * translucent pixels are composited over white.
+     *
+     * @param image the Bitmap
+     * @param gray {@code true} for 8 bits {@code DeviceGray} samples, otherwise {@code DeviceRGB}
+     * @return deflated image stream
+     * @throws IOException if compression failed
+     *
+     * @see com.hendrix.pdfmyxml.encoder.FlateImageEncoder
+     */
+    public static InputStream bitmapToFlateInputStream(final Bitmap image, final boolean gray) throws IOException
+    {
+        return bitmapToFlateInputStream(image, gray, false);
+    }
+
+    /**
+     * Bitmap into a deflated raw pixels image stream, ready to be embedded as is
+     * into a pdf with {@code ImageType.JET}, without a PNG encode/decode round-trip.
+     *
+     * @param image the Bitmap
+     * @param gray {@code true} for 8 bits {@code DeviceGray} samples, otherwise {@code DeviceRGB}
+     * @param alpha {@code true} to keep translucent pixels with a soft mask, otherwise they are composited over white
+     * @return deflated image stream
+     * @throws IOException if compression failed
+     *
+     * @see com.hendrix.pdfmyxml.encoder.FlateImageEncoder
+     */
+    public static InputStream bitmapToFlateInputStream(final Bitmap image, final boolean gray, final boolean alpha) throws IOException
+    {
+        if (image == null)
+            return null;
+
+        return bitmapToFlateEncoder(image, gray, alpha).finish();
+    }
+
+    /**
+     * Bitmap into a deflated raw pixels image encoder, with all of the pixels written. it is finished
+     * by the caller, that gets the length of the image from it.
+     *
+     * @param image the Bitmap
+     * @param gray {@code true} for 8 bits {@code DeviceGray} samples, otherwise {@code DeviceRGB}
+     * @param alpha {@code true} to keep translucent pixels with a soft mask, otherwise they are composited over white
+     * @return the encoder, to finish
+     * @throws IOException if compression failed
+     *
+     * @see com.hendrix.pdfmyxml.encoder.FlateImageEncoder#finish()
+     */
+    public static FlateImageEncoder bitmapToFlateEncoder(final Bitmap image, final boolean gray, final boolean alpha) throws IOException
+    {
+        int width                   = image.getWidth();
+        int height                  = image.getHeight();
+        // read the pixels in bands of ~64K pixels
+        int rows                    = Math.max(1, Math.min(height, (64 * 1024) / width));
+        int[] band                  = new int[width * rows];
+
+        FlateImageEncoder encoder   = new FlateImageEncoder(width, height, gray, alpha && image.hasAlpha(), FlateImageEncoder.DEFAULT_LEVEL);
+
+        for (int y = 0; y < height; y += rows) {
+            int count               = Math.min(rows, height - y);
+
+            image.getPixels(band, 0, width, 0, y, width, count);
+            encoder.writePixels(band, 0, width * count);
+        }
+
+        return encoder;
+    }
+
     /**
      * Bitmap into compressed jpeg
      *
@@ -271,6 +393,139 @@ public final class BitmapUtils
             return null;
     }
 
+    /**
+     * Bitmap into compressed jpeg as InputStream object. a translucent bitmap is
+     * composited over white into a temporary bitmap first, since jpeg has no alpha.
+     *
+     * @param image the Bitmap
+     * @param quality quality of compression
+     * @return compressed jpeg as InputStream object
+     */
+    public static ByteArrayInputStream bitmapToJpgInputStream(final Bitmap image, final int quality)
+    {
+        return bitmapToJpgInputStream(image, quality, null);
+    }
+
+    /**
+     * Bitmap into compressed jpeg as InputStream object. a translucent bitmap is
+     * composited over white into a temporary bitmap first, since jpeg has no alpha.
+     *
+     * @param image the Bitmap
+     * @param quality quality of compression
+     * @param pool a pool for the temporary bitmap, or {@code null}
+     * @return compressed jpeg as InputStream object
+     */
+    public static ByteArrayInputStream bitmapToJpgInputStream(final Bitmap image, final int quality, final BitmapPool pool)
+    {
+        return new ByteArrayInputStream(bitmapToJpg(image, quality, pool));
+    }
+
+    /**
+     * Bitmap into compressed jpeg. a translucent bitmap is composited over white
+     * into a temporary bitmap first, since jpeg has no alpha.
+     *
+     * @param image the Bitmap
+     * @param quality quality of compression
+     * @param pool a pool for the temporary bitmap, or {@code null}
+     * @return byte array of jpeg
+     */
+    public static byte[] bitmapToJpg(final Bitmap image, final int quality, final BitmapPool pool)
+    {
+        if (image == null || !image.hasAlpha())
+            return bitmapToJpg(image, quality);
+
+        Bitmap opaque   = obtainBitmap(pool, image.getWidth(), image.getHeight(), Config.ARGB_8888);
+
+        new Canvas(opaque).drawBitmap(image, 0, 0, null);
+        flattenOnWhite(opaque);
+
+        try {
+            return bitmapToJpg(opaque, quality);
+        }
+        finally {
+            releaseBitmap(pool, opaque);
+        }
+    }
+
+    /**
+     * a gray copy of a Bitmap, composited over white
+     *
+     * @param image the Bitmap
+     * @param pool a pool for the copy, or {@code null}
+     * @return an opaque {@code RGB_565} gray copy, to be released by the caller
+     */
+    public static Bitmap desaturate(final Bitmap image, final BitmapPool pool)
+    {
+        Bitmap gray         = obtainBitmap(pool, image.getWidth(), image.getHeight(), Config.RGB_565);
+        ColorMatrix matrix  = new ColorMatrix();
+        Paint paint         = new Paint();
+
+        matrix.setSaturation(0);
+        paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+
+        Canvas canvas       = new Canvas(gray);
+
+        canvas.drawColor(Color.WHITE);
+        canvas.drawBitmap(image, 0, 0, paint);
+
+        return gray;
+    }
+
+    /**
+     * composite a mutable bitmap over white, in place, and mark it as opaque
+     *
+     * @param image the mutable Bitmap
+     */
+    public static void flattenOnWhite(final Bitmap image)
+    {
+        new Canvas(image).drawColor(Color.WHITE, Mode.DST_OVER);
+
+        image.setHasAlpha(false);
+    }
+
+    /**
+     * a SHA-1 digest of the pixels of rows of a Bitmap, i.e to find identical pages
+     *
+     * @param image the Bitmap
+     * @param top the first row
+     * @param height number of rows
+     * @return the digest in hex, prefixed by the width, height and config
+     */
+    public static String digestOf(final Bitmap image, final int top, final int height)
+    {
+        MessageDigest digest;
+
+        try {
+            digest                  = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("BitmapUtils:: SHA-1 is not available", exc);
+        }
+
+        int width                   = image.getWidth();
+        // read the pixels in bands of ~64K pixels
+        int rows                    = Math.max(1, Math.min(height, (64 * 1024) / width));
+        int[] band                  = new int[width * rows];
+        ByteBuffer bytes            = ByteBuffer.allocate(band.length * 4);
+
+        for (int y = top; y < top + height; y += rows) {
+            int count               = Math.min(rows, top + height - y);
+
+            image.getPixels(band, 0, width, 0, y, width, count);
+
+            bytes.clear();
+            bytes.asIntBuffer().put(band, 0, width * count);
+            digest.update(bytes.array(), 0, width * count * 4);
+        }
+
+        StringBuilder sb            = new StringBuilder().append(width).append('x').append(height).append(':').append(image.getConfig()).append(':');
+
+        for (byte b : digest.digest())
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+
+        return sb.toString();
+    }
+
     /**
      * raw byteArray into Bitmap
      *
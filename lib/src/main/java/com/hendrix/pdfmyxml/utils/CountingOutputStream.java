@@ -0,0 +1,42 @@
+package com.hendrix.pdfmyxml.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * an output stream that counts the bytes written through it
+ *
+ * @author Tomer Shalev
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    private long _count = 0;
+
+    /**
+     * @param out the underlying output stream
+     */
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        _count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // not byte after byte, like FilterOutputStream does
+        out.write(b, off, len);
+        _count += len;
+    }
+
+    /**
+     *
+     * @return number of bytes written so far
+     */
+    public long getCount() {
+        return _count;
+    }
+}
@@ -28,4 +28,26 @@ public class MeasureUtils {
         return (int) ((pixels - 0.5f) / scale);
     }
 
+    /**
+     * @param size  a size in pixels
+     * @param scale a scale
+     *
+     * @return the scaled size in whole pixels, at least {@code 1}
+     */
+    static public int scaled(int size, float scale)
+    {
+        return Math.max(1, Math.round(size * scale));
+    }
+
+    /**
+     * @param points    a length in pdf points, {@code 1/72} of an inch
+     * @param dpi       a resolution in dots per inch
+     *
+     * @return the length in pixels at the resolution
+     */
+    static public int pointsToPixels(float points, int dpi)
+    {
+        return Math.round(points * dpi / 72f);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.hendrix.pdfmyxml.utils;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import com.hendrix.pdfmyxml.interfaces.IDisposable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * a pool of inflated view trees keyed by layout resource id, so pages of the same layout
+ * reuse the views that were rendered before instead of inflating the xml again. an obtained
+ * view belongs to its renderer until it is released, so concurrent renderers of the same
+ * layout never share a view. it is thread safe.
+ * <p>
+ * a pooled view keeps the state it was rendered with, so {@code initView} of its renderers
+ * has to bind every property that any of the pages changes.
+ *
+ * @see com.hendrix.pdfmyxml.viewRenderer.AbstractViewRenderer#AbstractViewRenderer(Context, int, ViewPool)
+ *
+ * @author Tomer Shalev
+ */
+public class ViewPool implements IDisposable {
+    // pooled views by layout resource id
+    private final HashMap<Integer, ArrayDeque<View>>    _pool       = new HashMap<>();
+    // the context views are inflated with
+    private Context                                     _ctx;
+    // maximum pooled views of a layout
+    private int                                         _maxPerLayout;
+
+    /**
+     * @param ctx           the context to inflate views with
+     * @param maxPerLayout  maximum pooled views of a layout, i.e the number of threads that render it
+     */
+    public ViewPool(Context ctx, int maxPerLayout) {
+        if(ctx == null)
+            throw new IllegalArgumentException("ViewPool:: context was not set!!");
+
+        _ctx            = ctx;
+        _maxPerLayout   = Math.max(1, maxPerLayout);
+    }
+
+    /**
+     * obtain a view of a layout, either pooled or a newly inflated one
+     *
+     * @param layoutResId a layout resource id
+     *
+     * @return a view, owned by the caller until it is released
+     */
+    public View obtain(int layoutResId) {
+        synchronized (this) {
+            ArrayDeque<View> views  = _pool.get(layoutResId);
+            View view               = views == null ? null : views.pollLast();
+
+            if(view != null)
+                return view;
+        }
+
+        return LayoutInflater.from(_ctx).inflate(layoutResId, null);
+    }
+
+    /**
+     * release a view into the pool. the caller must not use it afterwards.
+     *
+     * @param layoutResId   the layout resource id the view was obtained with
+     * @param view          the view
+     */
+    public synchronized void release(int layoutResId, View view) {
+        if(view == null)
+            return;
+
+        ArrayDeque<View> views      = _pool.get(layoutResId);
+
+        if(views == null)
+            _pool.put(layoutResId, views = new ArrayDeque<>());
+
+        if(views.size() < _maxPerLayout)
+            views.addLast(view);
+    }
+
+    /**
+     * @param layoutResId a layout resource id
+     *
+     * @return number of pooled views of the layout
+     */
+    public synchronized int getSize(int layoutResId) {
+        ArrayDeque<View> views      = _pool.get(layoutResId);
+
+        return views == null ? 0 : views.size();
+    }
+
+    /**
+     * drop all of the pooled views
+     */
+    public synchronized void clear() {
+        _pool.clear();
+    }
+
+    /**
+     * dispose the item
+     */
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
@@ -0,0 +1,176 @@
+package com.hendrix.pdfmyxml.vector;
+
+import com.pdfjet.CoreFont;
+import com.pdfjet.Font;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * writes the operators of a recorded page into the content stream of a pdfjet {@link Page}.
+ * coordinates are given in view pixels, top left origin, and are scaled and flipped into
+ * pdf points.
+ *
+ * @author Tomer Shalev
+ */
+class ContentWriter {
+    // the core fonts of every pdf, a font is embedded once per pdf
+    private static final Map<PDF, Map<CoreFont, Font>> sFonts = new WeakHashMap<>();
+
+    private PDF             _pdf;
+    private Page            _page;
+    private float           _scale;
+    private float           _pageHeight;
+    // operators that were not appended to the page yet
+    private StringBuilder   _sb             = new StringBuilder(1024);
+
+    /**
+     * @param pdf   the pdf
+     * @param page  the page to write into
+     * @param scale points per view pixel
+     */
+    ContentWriter(PDF pdf, Page page, float scale) {
+        _pdf        = pdf;
+        _page       = page;
+        _scale      = scale;
+        _pageHeight = page.getHeight();
+    }
+
+    PDF pdf() {
+        return _pdf;
+    }
+
+    Page page() {
+        return _page;
+    }
+
+    /**
+     * @return points per view pixel
+     */
+    float scale() {
+        return _scale;
+    }
+
+    /**
+     * append a coordinate on the x axis, followed by a space
+     */
+    ContentWriter x(float x) {
+        return number(x * _scale, 100).append(' ');
+    }
+
+    /**
+     * append a coordinate on the y axis, flipped, followed by a space
+     */
+    ContentWriter y(float y) {
+        return number(_pageHeight - y * _scale, 100).append(' ');
+    }
+
+    /**
+     * append a length, followed by a space
+     */
+    ContentWriter length(float length) {
+        return number(length * _scale, 100).append(' ');
+    }
+
+    /**
+     * append the components of an opaque {@code RGB} color, followed by a space
+     */
+    ContentWriter color(int rgb) {
+        number(((rgb >> 16) & 0xff) / 255f, 1000).append(' ');
+        number(((rgb >> 8) & 0xff) / 255f, 1000).append(' ');
+        number((rgb & 0xff) / 255f, 1000).append(' ');
+
+        return this;
+    }
+
+    ContentWriter append(String s) {
+        _sb.append(s);
+
+        return this;
+    }
+
+    ContentWriter append(char c) {
+        _sb.append(c);
+
+        return this;
+    }
+
+    /**
+     * append a number with a fixed precision, without an exponent and trailing zeros
+     *
+     * @param value     the number
+     * @param precision {@code 10^digits}
+     */
+    ContentWriter number(float value, int precision) {
+        long n              = Math.round((double)value * precision);
+
+        if(n < 0) {
+            _sb.append('-');
+            n               = -n;
+        }
+
+        _sb.append(n / precision);
+
+        long fraction       = n % precision;
+
+        if(fraction != 0) {
+            _sb.append('.');
+
+            for (int p = precision / 10; p > 0 && fraction != 0; p /= 10) {
+                _sb.append((char)('0' + fraction / p));
+                fraction   %= p;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * append the pending operators to the page, before pdfjet writes into it
+     *
+     * @throws IOException if the page could not be written
+     */
+    void flush() throws IOException {
+        if(_sb.length() == 0)
+            return;
+
+        _page.append(_sb.toString().getBytes("ISO-8859-1"));
+        _sb.setLength(0);
+    }
+
+    /**
+     * @param core the core font
+     * @param size the size in points
+     *
+     * @return the font, embedded once in the pdf
+     *
+     * @throws Exception if the font could not be embedded
+     */
+    Font font(CoreFont core, float size) throws Exception {
+        Font font;
+
+        synchronized (sFonts) {
+            Map<CoreFont, Font> fonts = sFonts.get(_pdf);
+
+            if(fonts == null) {
+                fonts       = new EnumMap<>(CoreFont.class);
+                sFonts.put(_pdf, fonts);
+            }
+
+            font            = fonts.get(core);
+
+            if(font == null) {
+                font        = new Font(_pdf, core);
+                fonts.put(core, font);
+            }
+        }
+
+        font.setSize(size);
+
+        return font;
+    }
+}
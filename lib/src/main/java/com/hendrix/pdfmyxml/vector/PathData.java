@@ -0,0 +1,130 @@
+package com.hendrix.pdfmyxml.vector;
+
+import java.util.Arrays;
+
+/**
+ * a compact path of lines and cubic curves, in view pixels
+ *
+ * @author Tomer Shalev
+ */
+class PathData {
+    // the control point distance of a cubic bezier quarter circle
+    private static final float KAPPA    = 0.5522848f;
+
+    private static final byte MOVE      = 0;
+    private static final byte LINE      = 1;
+    private static final byte CUBIC     = 2;
+    private static final byte CLOSE     = 3;
+
+    private byte[]  _verbs              = new byte[8];
+    private float[] _points             = new float[16];
+    private int     _verbCount          = 0;
+    private int     _pointCount         = 0;
+
+    boolean isEmpty() {
+        return _verbCount == 0;
+    }
+
+    void moveTo(float x, float y) {
+        verb(MOVE);
+        point(x, y);
+    }
+
+    void lineTo(float x, float y) {
+        verb(LINE);
+        point(x, y);
+    }
+
+    void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        verb(CUBIC);
+        point(x1, y1);
+        point(x2, y2);
+        point(x3, y3);
+    }
+
+    void close() {
+        verb(CLOSE);
+    }
+
+    void rect(float left, float top, float right, float bottom) {
+        moveTo(left, top);
+        lineTo(right, top);
+        lineTo(right, bottom);
+        lineTo(left, bottom);
+        close();
+    }
+
+    void oval(float left, float top, float right, float bottom) {
+        roundRect(left, top, right, bottom, (right - left) / 2, (bottom - top) / 2);
+    }
+
+    void roundRect(float left, float top, float right, float bottom, float rx, float ry) {
+        rx      = Math.min(Math.abs(rx), Math.abs(right - left) / 2);
+        ry      = Math.min(Math.abs(ry), Math.abs(bottom - top) / 2);
+
+        if(rx == 0 || ry == 0) {
+            rect(left, top, right, bottom);
+            return;
+        }
+
+        float kx    = rx * KAPPA;
+        float ky    = ry * KAPPA;
+
+        moveTo(left + rx, top);
+        lineTo(right - rx, top);
+        cubicTo(right - rx + kx, top, right, top + ry - ky, right, top + ry);
+        lineTo(right, bottom - ry);
+        cubicTo(right, bottom - ry + ky, right - rx + kx, bottom, right - rx, bottom);
+        lineTo(left + rx, bottom);
+        cubicTo(left + rx - kx, bottom, left, bottom - ry + ky, left, bottom - ry);
+        lineTo(left, top + ry);
+        cubicTo(left, top + ry - ky, left + rx - kx, top, left + rx, top);
+        close();
+    }
+
+    /**
+     * write the path construction operators
+     *
+     * @param out the content writer
+     */
+    void write(ContentWriter out) {
+        int p = 0;
+
+        for (int ix = 0; ix < _verbCount; ix++) {
+            switch (_verbs[ix]) {
+                case MOVE:
+                    out.x(_points[p]).y(_points[p + 1]).append("m\n");
+                    p += 2;
+                    break;
+                case LINE:
+                    out.x(_points[p]).y(_points[p + 1]).append("l\n");
+                    p += 2;
+                    break;
+                case CUBIC:
+                    out.x(_points[p]).y(_points[p + 1]);
+                    out.x(_points[p + 2]).y(_points[p + 3]);
+                    out.x(_points[p + 4]).y(_points[p + 5]).append("c\n");
+                    p += 6;
+                    break;
+                case CLOSE:
+                    out.append("h\n");
+                    break;
+            }
+        }
+    }
+
+    private void verb(byte verb) {
+        if(_verbCount == _verbs.length)
+            _verbs  = Arrays.copyOf(_verbs, _verbCount * 2);
+
+        _verbs[_verbCount++] = verb;
+    }
+
+    private void point(float x, float y) {
+        if(_pointCount + 2 > _points.length)
+            _points = Arrays.copyOf(_points, _points.length * 2);
+
+        _points[_pointCount++] = x;
+        _points[_pointCount++] = y;
+    }
+}
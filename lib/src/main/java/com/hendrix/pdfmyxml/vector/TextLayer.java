@@ -0,0 +1,213 @@
+package com.hendrix.pdfmyxml.vector;
+
+import android.text.Layout;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.hendrix.pdfmyxml.encoder.PageOverlay;
+import com.pdfjet.CoreFont;
+import com.pdfjet.Font;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import java.util.ArrayList;
+
+/**
+ * the text of the text views of a laid out view, a line each, with its position and size. it is written
+ * over the image of a raster page as invisible text, render mode 3, so the text of the page can be searched,
+ * selected and indexed without ocr. the lines are written with the core fonts, stretched to the width that
+ * android measured, and characters that the core fonts can not encode are written as spaces.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#setTextLayer(boolean)
+ *
+ * @author Tomer Shalev
+ */
+public class TextLayer implements PageOverlay {
+    // the width of the view in pixels, the page is as wide
+    private final float             _width;
+    private final ArrayList<Line>   _lines;
+
+    private TextLayer(float width, ArrayList<Line> lines) {
+        _width  = width;
+        _lines  = lines;
+    }
+
+    /**
+     * collect the lines of the visible text views of a laid out view. rotated and scaled views are skipped.
+     *
+     * @param view a laid out view
+     *
+     * @return the text layer, or {@code null} if the view has no text
+     */
+    public static TextLayer of(View view) {
+        if(view == null || view.getWidth() <= 0)
+            return null;
+
+        ArrayList<Line> lines = new ArrayList<>();
+
+        // the root is drawn at the origin as it is, and its content at its scroll position
+        collectContent(view, -view.getScrollX(), -view.getScrollY(), lines);
+
+        return lines.isEmpty() ? null : new TextLayer(view.getWidth(), lines);
+    }
+
+    /**
+     * @param top       the top of a strip of the view in pixels
+     * @param bottom    the bottom of the strip in pixels
+     *
+     * @return the lines with a baseline in the strip, moved to the top of the strip, or {@code null} if none
+     */
+    public TextLayer slice(float top, float bottom) {
+        ArrayList<Line> lines = new ArrayList<>();
+
+        for (Line line : _lines) {
+            if(line.baseline >= top && line.baseline < bottom)
+                lines.add(new Line(line.text, line.x, line.baseline - top, line.size, line.width, line.font));
+        }
+
+        return lines.isEmpty() ? null : new TextLayer(_width, lines);
+    }
+
+    /**
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return _lines.size();
+    }
+
+    /**
+     * write the lines as invisible text, scaled over the whole width of the page
+     *
+     * @param pdf   the pdf
+     * @param page  the page
+     *
+     * @throws Exception if the page could not be written
+     */
+    @Override
+    public void drawOn(PDF pdf, Page page) throws Exception {
+        ContentWriter out = new ContentWriter(pdf, page, page.getWidth() / _width);
+
+        // neither filled nor stroked
+        out.append("q\n3 Tr\n");
+
+        for (Line line : _lines)
+            line.write(out);
+
+        out.append("Q\n");
+        out.flush();
+    }
+
+    /**
+     * @param left  the left of the content of the parent of the view, its scroll is applied
+     * @param top   the top of the content of the parent of the view, its scroll is applied
+     */
+    private static void collect(View view, float left, float top, ArrayList<Line> lines) {
+        if(view.getVisibility() != View.VISIBLE || view.getAlpha() <= 0)
+            return;
+
+        if(view.getRotation() != 0 || view.getScaleX() != 1 || view.getScaleY() != 1)
+            return;
+
+        collectContent(view, left + view.getLeft() + view.getTranslationX() - view.getScrollX(),
+                       top + view.getTop() + view.getTranslationY() - view.getScrollY(), lines);
+    }
+
+    /**
+     * @param left  the left of the content of the view
+     * @param top   the top of the content of the view
+     */
+    private static void collectContent(View view, float left, float top, ArrayList<Line> lines) {
+        if(view instanceof TextView)
+            collectLines((TextView)view, left, top, lines);
+
+        if(view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup)view;
+
+            for (int ix = 0; ix < group.getChildCount(); ix++)
+                collect(group.getChildAt(ix), left, top, lines);
+        }
+    }
+
+    private static void collectLines(TextView view, float left, float top, ArrayList<Line> lines) {
+        Layout layout       = view.getLayout();
+        CharSequence text   = view.getText();
+
+        if(layout == null || text == null || text.length() == 0)
+            return;
+
+        CoreFont font       = VectorCanvas.coreFontOf(view.getPaint());
+        float size          = view.getTextSize();
+
+        left               += view.getTotalPaddingLeft();
+        top                += view.getTotalPaddingTop();
+
+        for (int ix = 0; ix < layout.getLineCount(); ix++) {
+            String line     = encodable(text, layout.getLineStart(ix), layout.getLineEnd(ix));
+
+            if(line.length() == 0)
+                continue;
+
+            lines.add(new Line(line, left + layout.getLineLeft(ix), top + layout.getLineBaseline(ix), size,
+                               layout.getLineWidth(ix), font));
+        }
+    }
+
+    /**
+     * @return the text of a line, with the characters that the core fonts can not encode as spaces,
+     *         without trailing white space
+     */
+    private static String encodable(CharSequence text, int start, int end) {
+        StringBuilder sb = new StringBuilder(Math.max(0, end - start));
+
+        for (int ix = start; ix < end && ix < text.length(); ix++) {
+            char c = text.charAt(ix);
+
+            sb.append(VectorCanvas.isEncodable(c) ? c : ' ');
+        }
+
+        int length = sb.length();
+
+        while (length > 0 && sb.charAt(length - 1) == ' ')
+            length--;
+
+        sb.setLength(length);
+
+        return sb.toString();
+    }
+
+    /**
+     * a line of text in pixels of the view
+     */
+    private static class Line {
+        final String    text;
+        final float     x;
+        final float     baseline;
+        final float     size;
+        final float     width;
+        final CoreFont  font;
+
+        Line(String text, float x, float baseline, float size, float width, CoreFont font) {
+            this.text       = text;
+            this.x          = x;
+            this.baseline   = baseline;
+            this.size       = size;
+            this.width      = width;
+            this.font       = font;
+        }
+
+        void write(ContentWriter out) throws Exception {
+            float scale     = out.scale();
+            Font pdfFont    = out.font(font, size * scale);
+            float natural   = pdfFont.stringWidth(text);
+            float tz        = natural > 0 && width > 0 ? 100 * width * scale / natural : 100;
+
+            // the line covers the text in the image, so a selection matches it
+            out.number(Math.max(10, Math.min(1000, tz)), 100).append(" Tz\n");
+            out.flush();
+
+            out.page().drawString(pdfFont, text, x * scale, baseline * scale);
+        }
+    }
+}
@@ -0,0 +1,1166 @@
+package com.hendrix.pdfmyxml.vector;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DrawFilter;
+import android.graphics.Matrix;
+import android.graphics.NinePatch;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+import android.graphics.Typeface;
+
+import com.pdfjet.CoreFont;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * a canvas that records the draw calls of a view, instead of drawing pixels, into a
+ * {@link VectorPage}. text is written with the pdf core fonts, stretched to the width that android
+ * measured, shapes and paths as pdf paths, and bitmaps as images.
+ * <p>
+ * only what pdf can express without transparency groups is recorded: solid colors, translations
+ * and scales, and rectangular or path clips. translucent colors are composited over white, like the
+ * translucent pixels of raster pages. a draw call that can not be translated, i.e a shader, a rotation,
+ * a layer with alpha or text outside of the core fonts encoding, marks the page as unsupported, see
+ * {@link #isSupported()}, and the page should be rendered as a bitmap instead.
+ * <p>
+ * drawing that the framework does natively, without going through the java canvas methods, is not
+ * recorded.
+ *
+ * @author Tomer Shalev
+ */
+@SuppressWarnings("deprecation")
+public class VectorCanvas extends Canvas {
+    // the distance in pixels between the points that curves are flattened into
+    private static final float FLATNESS                 = 1f;
+    // the sine of the angle between tangents, under which points are on a straight line
+    private static final float STRAIGHT                 = 0.001f;
+    // maximum points of a flattened contour
+    private static final int MAX_CONTOUR_POINTS         = 4096;
+
+    private int                 _width;
+    private int                 _height;
+    private boolean             _gray;
+    private ArrayList<VectorPage.Op> _ops               = new ArrayList<>();
+    // the reason the page can not be recorded, or null
+    private String              _unsupported            = null;
+
+    // the current transformation, scale and translation only
+    private float               _sx                     = 1;
+    private float               _sy                     = 1;
+    private float               _tx                     = 0;
+    private float               _ty                     = 0;
+    // the current clip bounds in pixels
+    private RectF               _clip;
+    // saved transformations and clips, {sx, sy, tx, ty, left, top, right, bottom}
+    private ArrayList<float[]>  _stack                  = new ArrayList<>();
+
+    private float[]             _pos                    = new float[2];
+    private float[]             _tan                    = new float[2];
+    private RectF               _rect                   = new RectF();
+
+    /**
+     * @param width     the width of the view in pixels
+     * @param height    the height of the view in pixels
+     * @param gray      {@code true} to record gray colors and images
+     */
+    public VectorCanvas(int width, int height, boolean gray) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("VectorCanvas:: bad dimensions " + width + "x" + height);
+
+        _width  = width;
+        _height = height;
+        _gray   = gray;
+        _clip   = new RectF(0, 0, width, height);
+    }
+
+    /**
+     *
+     * @return {@code true} if everything that was drawn so far was recorded
+     */
+    public boolean isSupported() {
+        return _unsupported == null;
+    }
+
+    /**
+     *
+     * @return the reason the page can not be recorded, or {@code null}
+     */
+    public String getUnsupportedReason() {
+        return _unsupported;
+    }
+
+    /**
+     *
+     * @return the recorded page
+     *
+     * @throws IllegalStateException if something that was drawn could not be recorded
+     */
+    public VectorPage getPage() {
+        if(_unsupported != null)
+            throw new IllegalStateException("VectorCanvas:: page can not be recorded, " + _unsupported);
+
+        return new VectorPage(_width, _height, _ops);
+    }
+
+    private void unsupported(String reason) {
+        if(_unsupported == null) {
+            _unsupported    = reason;
+            // nothing else is going to be written
+            _ops.clear();
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return _width;
+    }
+
+    @Override
+    public int getHeight() {
+        return _height;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+
+    @Override
+    public void setBitmap(Bitmap bitmap) {
+        throw new UnsupportedOperationException("VectorCanvas:: has no bitmap");
+    }
+
+    @Override
+    public void setDrawFilter(DrawFilter filter) {
+        if(filter != null)
+            unsupported("draw filter");
+    }
+
+    // state
+
+    @Override
+    public int save() {
+        _stack.add(new float[] { _sx, _sy, _tx, _ty, _clip.left, _clip.top, _clip.right, _clip.bottom });
+        _ops.add(VectorPage.StateOp.SAVE);
+
+        return _stack.size();
+    }
+
+    @Override
+    public int save(int saveFlags) {
+        return save();
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint, int saveFlags) {
+        return saveLayerAlpha(0, 0, 0, 0, paint == null ? 0xff : paint.getAlpha(), saveFlags, paint);
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint, int saveFlags) {
+        return saveLayerAlpha(left, top, right, bottom, paint == null ? 0xff : paint.getAlpha(), saveFlags, paint);
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha, int saveFlags) {
+        return saveLayerAlpha(0, 0, 0, 0, alpha, saveFlags, null);
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags) {
+        return saveLayerAlpha(left, top, right, bottom, alpha, saveFlags, null);
+    }
+
+    private int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags, Paint paint) {
+        // a layer without alpha and blending is a plain save, i.e a fading edge that is not faded
+        if(alpha != 0xff || (paint != null && (paint.getXfermode() != null || paint.getColorFilter() != null)))
+            unsupported("layer with alpha or blending");
+
+        return save();
+    }
+
+    @Override
+    public void restore() {
+        if(_stack.isEmpty())
+            throw new IllegalStateException("VectorCanvas:: underflow in restore");
+
+        float[] state   = _stack.remove(_stack.size() - 1);
+
+        _sx             = state[0];
+        _sy             = state[1];
+        _tx             = state[2];
+        _ty             = state[3];
+        _clip.set(state[4], state[5], state[6], state[7]);
+
+        _ops.add(VectorPage.StateOp.RESTORE);
+    }
+
+    @Override
+    public int getSaveCount() {
+        return _stack.size() + 1;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        if(saveCount < 1)
+            throw new IllegalArgumentException("VectorCanvas:: bad save count " + saveCount);
+
+        while (getSaveCount() > saveCount)
+            restore();
+    }
+
+    // transformation
+
+    @Override
+    public void translate(float dx, float dy) {
+        _tx += _sx * dx;
+        _ty += _sy * dy;
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+        _sx *= sx;
+        _sy *= sy;
+    }
+
+    @Override
+    public void rotate(float degrees) {
+        if(degrees % 360 != 0)
+            unsupported("rotation");
+    }
+
+    @Override
+    public void skew(float sx, float sy) {
+        if(sx != 0 || sy != 0)
+            unsupported("skew");
+    }
+
+    @Override
+    public void concat(Matrix matrix) {
+        if(matrix == null)
+            return;
+
+        float[] v       = values(matrix);
+
+        if(v == null)
+            return;
+
+        _tx            += _sx * v[Matrix.MTRANS_X];
+        _ty            += _sy * v[Matrix.MTRANS_Y];
+        _sx            *= v[Matrix.MSCALE_X];
+        _sy            *= v[Matrix.MSCALE_Y];
+    }
+
+    @Override
+    public void setMatrix(Matrix matrix) {
+        float[] v       = matrix == null ? null : values(matrix);
+
+        if(matrix != null && v == null)
+            return;
+
+        _sx             = v == null ? 1 : v[Matrix.MSCALE_X];
+        _sy             = v == null ? 1 : v[Matrix.MSCALE_Y];
+        _tx             = v == null ? 0 : v[Matrix.MTRANS_X];
+        _ty             = v == null ? 0 : v[Matrix.MTRANS_Y];
+    }
+
+    @Override
+    public void getMatrix(Matrix ctm) {
+        ctm.setValues(new float[] { _sx, 0, _tx, 0, _sy, _ty, 0, 0, 1 });
+    }
+
+    /**
+     * @return the values of a scale and translate matrix, or {@code null} if it is not supported
+     */
+    private float[] values(Matrix matrix) {
+        float[] v       = new float[9];
+
+        matrix.getValues(v);
+
+        if(v[Matrix.MSKEW_X] != 0 || v[Matrix.MSKEW_Y] != 0 || v[Matrix.MPERSP_0] != 0
+                || v[Matrix.MPERSP_1] != 0 || v[Matrix.MPERSP_2] != 1) {
+            unsupported("rotation, skew or perspective matrix");
+            return null;
+        }
+
+        return v;
+    }
+
+    private float mapX(float x) {
+        return _sx * x + _tx;
+    }
+
+    private float mapY(float y) {
+        return _sy * y + _ty;
+    }
+
+    /**
+     * map a rectangle into pixels, sorted
+     */
+    private RectF mapRect(float left, float top, float right, float bottom) {
+        float l = mapX(left);
+        float r = mapX(right);
+        float t = mapY(top);
+        float b = mapY(bottom);
+
+        _rect.set(Math.min(l, r), Math.min(t, b), Math.max(l, r), Math.max(t, b));
+
+        return _rect;
+    }
+
+    // clip
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        return clipRect(left, top, right, bottom, Region.Op.INTERSECT);
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        return clipRect(left, top, right, bottom, Region.Op.INTERSECT);
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        return clipRect(rect.left, rect.top, rect.right, rect.bottom, Region.Op.INTERSECT);
+    }
+
+    @Override
+    public boolean clipRect(RectF rect) {
+        return clipRect(rect.left, rect.top, rect.right, rect.bottom, Region.Op.INTERSECT);
+    }
+
+    @Override
+    public boolean clipRect(Rect rect, Region.Op op) {
+        return clipRect(rect.left, rect.top, rect.right, rect.bottom, op);
+    }
+
+    @Override
+    public boolean clipRect(RectF rect, Region.Op op) {
+        return clipRect(rect.left, rect.top, rect.right, rect.bottom, op);
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom, Region.Op op) {
+        if(op != Region.Op.INTERSECT) {
+            unsupported("clip " + op);
+            return true;
+        }
+
+        RectF r         = mapRect(left, top, right, bottom);
+        PathData path   = new PathData();
+
+        path.rect(r.left, r.top, r.right, r.bottom);
+
+        return clip(path, false, r);
+    }
+
+    @Override
+    public boolean clipPath(Path path) {
+        return clipPath(path, Region.Op.INTERSECT);
+    }
+
+    @Override
+    public boolean clipPath(Path path, Region.Op op) {
+        if(op != Region.Op.INTERSECT) {
+            unsupported("clip " + op);
+            return true;
+        }
+
+        if(path.isInverseFillType()) {
+            unsupported("inverse clip path");
+            return true;
+        }
+
+        PathData data   = flatten(path);
+        RectF bounds    = new RectF();
+
+        path.computeBounds(bounds, true);
+
+        return clip(data, path.getFillType() == Path.FillType.EVEN_ODD, mapRect(bounds.left, bounds.top, bounds.right, bounds.bottom));
+    }
+
+    private boolean clip(PathData path, boolean evenOdd, RectF bounds) {
+        if(!_clip.intersect(bounds))
+            _clip.setEmpty();
+
+        _ops.add(new VectorPage.PathOp(path, VectorPage.PathOp.CLIP, evenOdd));
+
+        return !_clip.isEmpty();
+    }
+
+    @Override
+    public boolean getClipBounds(Rect bounds) {
+        // the clip in the current coordinates, views draw only what intersects it
+        float l = (_clip.left - _tx) / _sx;
+        float r = (_clip.right - _tx) / _sx;
+        float t = (_clip.top - _ty) / _sy;
+        float b = (_clip.bottom - _ty) / _sy;
+
+        if(bounds != null)
+            bounds.set((int)Math.floor(Math.min(l, r)), (int)Math.floor(Math.min(t, b)),
+                       (int)Math.ceil(Math.max(l, r)), (int)Math.ceil(Math.max(t, b)));
+
+        return !_clip.isEmpty();
+    }
+
+    @Override
+    public boolean quickReject(RectF rect, EdgeType type) {
+        return quickReject(rect.left, rect.top, rect.right, rect.bottom, type);
+    }
+
+    @Override
+    public boolean quickReject(Path path, EdgeType type) {
+        RectF bounds = new RectF();
+
+        path.computeBounds(bounds, true);
+
+        return quickReject(bounds.left, bounds.top, bounds.right, bounds.bottom, type);
+    }
+
+    @Override
+    public boolean quickReject(float left, float top, float right, float bottom, EdgeType type) {
+        RectF r = mapRect(left, top, right, bottom);
+
+        return r.right <= _clip.left || r.left >= _clip.right || r.bottom <= _clip.top || r.top >= _clip.bottom;
+    }
+
+    // colors and paints
+
+    /**
+     * @param argb a color
+     *
+     * @return the opaque color of the page, composited over white
+     */
+    private int rgbOf(int argb) {
+        int a   = argb >>> 24;
+        int r   = (argb >> 16) & 0xff;
+        int g   = (argb >> 8) & 0xff;
+        int b   = argb & 0xff;
+
+        if(a != 0xff) {
+            r   = 255 - ((255 - r) * a + 127) / 255;
+            g   = 255 - ((255 - g) * a + 127) / 255;
+            b   = 255 - ((255 - b) * a + 127) / 255;
+        }
+
+        if(_gray)
+            r = g = b = (r * 77 + g * 150 + b * 29 + 128) >> 8;
+
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @param paint a paint of a shape or text
+     *
+     * @return {@code true} if the paint draws a solid color that can be recorded
+     */
+    private boolean isSolid(Paint paint) {
+        if(_unsupported != null)
+            return false;
+
+        if(paint.getShader() != null)
+            unsupported("shader");
+        else if(paint.getColorFilter() != null)
+            unsupported("color filter");
+        else if(paint.getXfermode() != null)
+            unsupported("xfermode");
+        else if(paint.getPathEffect() != null)
+            unsupported("path effect");
+        else if(paint.getMaskFilter() != null)
+            unsupported("mask filter");
+
+        return _unsupported == null && Color.alpha(paint.getColor()) != 0;
+    }
+
+    /**
+     * @param paint a paint of an image
+     *
+     * @return {@code true} if the bitmap can be drawn as is with the paint
+     */
+    private boolean isPlain(Paint paint) {
+        return paint == null || (paint.getAlpha() == 0xff && paint.getColorFilter() == null);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        drawColor(color, PorterDuff.Mode.SRC_OVER);
+    }
+
+    @Override
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        if(_unsupported != null)
+            return;
+
+        switch (mode) {
+            case CLEAR:
+                // cleared pixels end up white on the page
+                color = Color.WHITE;
+                break;
+            case SRC:
+            case SRC_OVER:
+                if(Color.alpha(color) == 0)
+                    return;
+                break;
+            default:
+                unsupported("color mode " + mode);
+                return;
+        }
+
+        PathData path = new PathData();
+
+        path.rect(_clip.left, _clip.top, _clip.right, _clip.bottom);
+
+        _ops.add(new VectorPage.PathOp(path, VectorPage.PathOp.FILL, false).fill(rgbOf(color)));
+    }
+
+    @Override
+    public void drawARGB(int a, int r, int g, int b) {
+        drawColor((a << 24) | (r << 16) | (g << 8) | b);
+    }
+
+    @Override
+    public void drawRGB(int r, int g, int b) {
+        drawColor(0xff000000 | (r << 16) | (g << 8) | b);
+    }
+
+    @Override
+    public void drawPaint(Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        drawColor(paint.getColor());
+    }
+
+    // shapes
+
+    /**
+     * record a path with the style of a paint
+     *
+     * @param path  the path in pixels
+     * @param paint the paint
+     * @param evenOdd {@code true} for the even odd fill rule
+     */
+    private void drawShape(PathData path, Paint paint, boolean evenOdd) {
+        int rgb                 = rgbOf(paint.getColor());
+        Paint.Style style       = paint.getStyle();
+        int mode                = style == Paint.Style.FILL ? VectorPage.PathOp.FILL
+                                : style == Paint.Style.STROKE ? VectorPage.PathOp.STROKE
+                                : VectorPage.PathOp.FILL | VectorPage.PathOp.STROKE;
+
+        VectorPage.PathOp op    = new VectorPage.PathOp(path, mode, evenOdd).fill(rgb);
+
+        if((mode & VectorPage.PathOp.STROKE) != 0)
+            op.stroke(rgb, paint.getStrokeWidth() * (float)Math.sqrt(Math.abs(_sx * _sy)),
+                      capOf(paint.getStrokeCap()), joinOf(paint.getStrokeJoin()), paint.getStrokeMiter());
+
+        _ops.add(op);
+    }
+
+    private static int capOf(Paint.Cap cap) {
+        if(cap == Paint.Cap.ROUND)
+            return 1;
+        if(cap == Paint.Cap.SQUARE)
+            return 2;
+
+        return 0;
+    }
+
+    private static int joinOf(Paint.Join join) {
+        if(join == Paint.Join.ROUND)
+            return 1;
+        if(join == Paint.Join.BEVEL)
+            return 2;
+
+        return 0;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        RectF r         = mapRect(left, top, right, bottom);
+        PathData path   = new PathData();
+
+        path.rect(r.left, r.top, r.right, r.bottom);
+
+        drawShape(path, paint, false);
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        drawRect(r.left, r.top, r.right, r.bottom, paint);
+    }
+
+    @Override
+    public void drawRect(RectF r, Paint paint) {
+        drawRect(r.left, r.top, r.right, r.bottom, paint);
+    }
+
+    @Override
+    public void drawRoundRect(RectF r, float rx, float ry, Paint paint) {
+        drawRoundRect(r.left, r.top, r.right, r.bottom, rx, ry, paint);
+    }
+
+    @Override
+    public void drawRoundRect(float left, float top, float right, float bottom, float rx, float ry, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        RectF r         = mapRect(left, top, right, bottom);
+        PathData path   = new PathData();
+
+        path.roundRect(r.left, r.top, r.right, r.bottom, Math.abs(rx * _sx), Math.abs(ry * _sy));
+
+        drawShape(path, paint, false);
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        drawOval(oval.left, oval.top, oval.right, oval.bottom, paint);
+    }
+
+    @Override
+    public void drawOval(float left, float top, float right, float bottom, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        RectF r         = mapRect(left, top, right, bottom);
+        PathData path   = new PathData();
+
+        path.oval(r.left, r.top, r.right, r.bottom);
+
+        drawShape(path, paint, false);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        drawOval(cx - radius, cy - radius, cx + radius, cy + radius, paint);
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        drawArc(oval.left, oval.top, oval.right, oval.bottom, startAngle, sweepAngle, useCenter, paint);
+    }
+
+    @Override
+    public void drawArc(float left, float top, float right, float bottom, float startAngle, float sweepAngle,
+                        boolean useCenter, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        if(Math.abs(sweepAngle) >= 360) {
+            drawOval(left, top, right, bottom, paint);
+            return;
+        }
+
+        float cx        = (left + right) / 2;
+        float cy        = (top + bottom) / 2;
+        float rx        = (right - left) / 2;
+        float ry        = (bottom - top) / 2;
+        float radius    = Math.max(Math.abs(rx * _sx), Math.abs(ry * _sy));
+        int segments    = Math.max(2, Math.min(MAX_CONTOUR_POINTS,
+                                   (int)Math.ceil(Math.abs(Math.toRadians(sweepAngle)) * radius / FLATNESS)));
+        PathData path   = new PathData();
+
+        if(useCenter)
+            path.moveTo(mapX(cx), mapY(cy));
+
+        for (int ix = 0; ix <= segments; ix++) {
+            double a    = Math.toRadians(startAngle + sweepAngle * ix / segments);
+            float x     = mapX(cx + rx * (float)Math.cos(a));
+            float y     = mapY(cy + ry * (float)Math.sin(a));
+
+            if(ix == 0 && !useCenter)
+                path.moveTo(x, y);
+            else
+                path.lineTo(x, y);
+        }
+
+        if(useCenter)
+            path.close();
+
+        drawShape(path, paint, false);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        PathData path   = new PathData();
+
+        path.moveTo(mapX(startX), mapY(startY));
+        path.lineTo(mapX(stopX), mapY(stopY));
+
+        strokeLines(path, paint);
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        drawLines(pts, 0, pts.length, paint);
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        PathData path   = new PathData();
+
+        for (int ix = offset; ix + 3 < offset + count; ix += 4) {
+            path.moveTo(mapX(pts[ix]), mapY(pts[ix + 1]));
+            path.lineTo(mapX(pts[ix + 2]), mapY(pts[ix + 3]));
+        }
+
+        if(!path.isEmpty())
+            strokeLines(path, paint);
+    }
+
+    /**
+     * lines are always stroked, no matter the style of the paint
+     */
+    private void strokeLines(PathData path, Paint paint) {
+        float width     = paint.getStrokeWidth() * (float)Math.sqrt(Math.abs(_sx * _sy));
+
+        _ops.add(new VectorPage.PathOp(path, VectorPage.PathOp.STROKE, false)
+                .stroke(rgbOf(paint.getColor()), width, capOf(paint.getStrokeCap()), 0, 4));
+    }
+
+    @Override
+    public void drawPoint(float x, float y, Paint paint) {
+        drawPoints(new float[] { x, y }, 0, 2, paint);
+    }
+
+    @Override
+    public void drawPoints(float[] pts, Paint paint) {
+        drawPoints(pts, 0, pts.length, paint);
+    }
+
+    @Override
+    public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        float size      = Math.max(1, paint.getStrokeWidth() * (float)Math.sqrt(Math.abs(_sx * _sy)));
+        boolean round   = paint.getStrokeCap() == Paint.Cap.ROUND;
+        PathData path   = new PathData();
+
+        for (int ix = offset; ix + 1 < offset + count; ix += 2) {
+            float x     = mapX(pts[ix]);
+            float y     = mapY(pts[ix + 1]);
+
+            if(round)
+                path.oval(x - size / 2, y - size / 2, x + size / 2, y + size / 2);
+            else
+                path.rect(x - size / 2, y - size / 2, x + size / 2, y + size / 2);
+        }
+
+        if(!path.isEmpty())
+            _ops.add(new VectorPage.PathOp(path, VectorPage.PathOp.FILL, false).fill(rgbOf(paint.getColor())));
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        if(path.isInverseFillType()) {
+            unsupported("inverse path");
+            return;
+        }
+
+        RectF rect      = new RectF();
+
+        if(path.isRect(rect)) {
+            drawRect(rect, paint);
+            return;
+        }
+
+        drawShape(flatten(path), paint, path.getFillType() == Path.FillType.EVEN_ODD);
+    }
+
+    /**
+     * flatten a path into lines in pixels
+     *
+     * @param path the path
+     *
+     * @return the flattened path
+     */
+    private PathData flatten(Path path) {
+        PathData data       = new PathData();
+        PathMeasure measure = new PathMeasure(path, false);
+        float scale         = Math.max(Math.abs(_sx), Math.abs(_sy));
+        float[] pos         = _pos;
+        float[] tan         = _tan;
+
+        do {
+            float length    = measure.getLength();
+
+            if(length <= 0)
+                continue;
+
+            int points      = Math.max(2, Math.min(MAX_CONTOUR_POINTS, (int)Math.ceil(length * scale / FLATNESS) + 1));
+            // the direction of the current line, and its last point that was not written yet
+            float dx = 0, dy = 0, lastX = 0, lastY = 0;
+
+            for (int ix = 0; ix < points; ix++) {
+                measure.getPosTan(length * ix / (points - 1), pos, tan);
+
+                float x     = mapX(pos[0]);
+                float y     = mapY(pos[1]);
+
+                if(ix == 0)
+                    data.moveTo(x, y);
+                else if(ix > 1 && (Math.abs(dx * tan[1] - dy * tan[0]) > STRAIGHT || dx * tan[0] + dy * tan[1] < 0)) {
+                    // the direction changed, the line ends at the last point
+                    data.lineTo(lastX, lastY);
+                    dx      = tan[0];
+                    dy      = tan[1];
+                }
+
+                if(ix <= 1) {
+                    dx      = tan[0];
+                    dy      = tan[1];
+                }
+
+                lastX       = x;
+                lastY       = y;
+            }
+
+            data.lineTo(lastX, lastY);
+
+            if(measure.isClosed())
+                data.close();
+        }
+        while (measure.nextContour());
+
+        return data;
+    }
+
+    // text
+
+    @Override
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        drawText(new String(text, index, count), x, y, paint);
+    }
+
+    @Override
+    public void drawText(String text, int start, int end, float x, float y, Paint paint) {
+        drawText(text.substring(start, end), x, y, paint);
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        drawText(text.subSequence(start, end).toString(), x, y, paint);
+    }
+
+    // hidden before API 23, the framework draws styled text with text runs
+    public void drawTextRun(char[] text, int index, int count, int contextIndex, int contextCount,
+                            float x, float y, boolean isRtl, Paint paint) {
+        if(isRtl)
+            unsupported("right to left text");
+        else
+            drawText(new String(text, index, count), x, y, paint);
+    }
+
+    // hidden before API 23
+    public void drawTextRun(CharSequence text, int start, int end, int contextStart, int contextEnd,
+                            float x, float y, boolean isRtl, Paint paint) {
+        if(isRtl)
+            unsupported("right to left text");
+        else
+            drawText(text.subSequence(start, end).toString(), x, y, paint);
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        if(!isSolid(paint))
+            return;
+
+        if(paint.getStyle() != Paint.Style.FILL) {
+            unsupported("stroked text");
+            return;
+        }
+
+        if(_sx <= 0 || _sy <= 0) {
+            unsupported("mirrored text");
+            return;
+        }
+
+        for (int ix = 0; ix < text.length(); ix++) {
+            if(!isEncodable(text.charAt(ix))) {
+                unsupported("text outside of the core fonts encoding");
+                return;
+            }
+        }
+
+        float width     = paint.measureText(text);
+
+        if(paint.getTextAlign() == Paint.Align.CENTER)
+            x          -= width / 2;
+        else if(paint.getTextAlign() == Paint.Align.RIGHT)
+            x          -= width;
+
+        float left      = mapX(x);
+        float baseline  = mapY(y);
+        float size      = paint.getTextSize() * _sy;
+        int rgb         = rgbOf(paint.getColor());
+
+        width          *= _sx;
+
+        if(text.trim().length() > 0)
+            _ops.add(new VectorPage.TextOp(text, left, baseline, size, width, rgb, coreFontOf(paint)));
+
+        if(paint.isUnderlineText())
+            decorate(left, baseline + size / 9, width, size / 18, rgb);
+
+        if(paint.isStrikeThruText())
+            decorate(left, baseline - size * 0.3f, width, size / 18, rgb);
+    }
+
+    private void decorate(float left, float top, float width, float thickness, int rgb) {
+        PathData path = new PathData();
+
+        path.rect(left, top, left + width, top + thickness);
+
+        _ops.add(new VectorPage.PathOp(path, VectorPage.PathOp.FILL, false).fill(rgb));
+    }
+
+    /**
+     * @param c a character
+     *
+     * @return {@code true} if the character is in the {@code WinAnsiEncoding} of the core fonts
+     */
+    static boolean isEncodable(char c) {
+        if((c >= 0x20 && c < 0x7f) || (c >= 0xa0 && c <= 0xff))
+            return true;
+
+        // the characters that WinAnsiEncoding adds to latin 1
+        switch (c) {
+            case '\u20ac': case '\u201a': case '\u0192': case '\u201e': case '\u2026': case '\u2020':
+            case '\u2021': case '\u02c6': case '\u2030': case '\u0160': case '\u2039': case '\u0152':
+            case '\u017d': case '\u2018': case '\u2019': case '\u201c': case '\u201d': case '\u2022':
+            case '\u2013': case '\u2014': case '\u02dc': case '\u2122': case '\u0161': case '\u0153':
+            case '\u017e': case '\u0178':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param paint a text paint
+     *
+     * @return the core font closest to the typeface of the paint, its width is matched anyway
+     */
+    static CoreFont coreFontOf(Paint paint) {
+        Typeface typeface   = paint.getTypeface();
+        int style           = typeface == null ? Typeface.NORMAL : typeface.getStyle();
+        boolean bold        = (style & Typeface.BOLD) != 0 || paint.isFakeBoldText();
+        boolean italic      = (style & Typeface.ITALIC) != 0 || paint.getTextSkewX() < 0;
+
+        if(typeface != null && (typeface == Typeface.MONOSPACE || typeface == Typeface.create(Typeface.MONOSPACE, style))) {
+            return bold ? (italic ? CoreFont.COURIER_BOLD_OBLIQUE : CoreFont.COURIER_BOLD)
+                        : (italic ? CoreFont.COURIER_OBLIQUE : CoreFont.COURIER);
+        }
+
+        if(typeface != null && (typeface == Typeface.SERIF || typeface == Typeface.create(Typeface.SERIF, style))) {
+            return bold ? (italic ? CoreFont.TIMES_BOLD_ITALIC : CoreFont.TIMES_BOLD)
+                        : (italic ? CoreFont.TIMES_ITALIC : CoreFont.TIMES_ROMAN);
+        }
+
+        return bold ? (italic ? CoreFont.HELVETICA_BOLD_OBLIQUE : CoreFont.HELVETICA_BOLD)
+                    : (italic ? CoreFont.HELVETICA_OBLIQUE : CoreFont.HELVETICA);
+    }
+
+    @Override
+    public void drawPosText(char[] text, int index, int count, float[] pos, Paint paint) {
+        unsupported("positioned text");
+    }
+
+    @Override
+    public void drawPosText(String text, float[] pos, Paint paint) {
+        unsupported("positioned text");
+    }
+
+    @Override
+    public void drawTextOnPath(char[] text, int index, int count, Path path, float hOffset, float vOffset, Paint paint) {
+        unsupported("text on path");
+    }
+
+    @Override
+    public void drawTextOnPath(String text, Path path, float hOffset, float vOffset, Paint paint) {
+        unsupported("text on path");
+    }
+
+    // bitmaps
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        drawBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(),
+                   left, top, left + bitmap.getWidth(), top + bitmap.getHeight(), paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        drawBitmap(bitmap, src, new RectF(dst), paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        if(src == null)
+            drawBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), dst.left, dst.top, dst.right, dst.bottom, paint);
+        else
+            drawBitmap(bitmap, src.left, src.top, src.right, src.bottom, dst.left, dst.top, dst.right, dst.bottom, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        float[] v = values(matrix);
+
+        if(v == null)
+            return;
+
+        float left  = v[Matrix.MTRANS_X];
+        float top   = v[Matrix.MTRANS_Y];
+
+        drawBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), left, top,
+                   left + bitmap.getWidth() * v[Matrix.MSCALE_X], top + bitmap.getHeight() * v[Matrix.MSCALE_Y], paint);
+    }
+
+    private void drawBitmap(Bitmap bitmap, int srcLeft, int srcTop, int srcRight, int srcBottom,
+                            float left, float top, float right, float bottom, Paint paint) {
+        if(_unsupported != null || bitmap.isRecycled())
+            return;
+
+        if(paint != null && (paint.getShader() != null || paint.getXfermode() != null || paint.getMaskFilter() != null)) {
+            unsupported("bitmap blending");
+            return;
+        }
+
+        if((_sx * (right - left)) < 0 || (_sy * (bottom - top)) < 0) {
+            unsupported("mirrored bitmap");
+            return;
+        }
+
+        srcLeft         = Math.max(0, srcLeft);
+        srcTop          = Math.max(0, srcTop);
+        srcRight        = Math.min(bitmap.getWidth(), srcRight);
+        srcBottom       = Math.min(bitmap.getHeight(), srcBottom);
+
+        if(srcRight <= srcLeft || srcBottom <= srcTop)
+            return;
+
+        RectF r         = mapRect(left, top, right, bottom);
+        boolean whole   = srcLeft == 0 && srcTop == 0 && srcRight == bitmap.getWidth() && srcBottom == bitmap.getHeight();
+
+        try {
+            VectorImage image;
+
+            if(whole && isPlain(paint) && bitmap.getConfig() != Bitmap.Config.ALPHA_8)
+                image   = VectorImage.of(bitmap, _gray);
+            else {
+                // crop, and apply the alpha and the color filter of the paint, i.e a tinted icon
+                Bitmap copy = Bitmap.createBitmap(srcRight - srcLeft, srcBottom - srcTop, Bitmap.Config.ARGB_8888);
+
+                new Canvas(copy).drawBitmap(bitmap, new Rect(srcLeft, srcTop, srcRight, srcBottom),
+                                            new Rect(0, 0, copy.getWidth(), copy.getHeight()), paint);
+
+                image   = VectorImage.encode(copy, _gray);
+
+                copy.recycle();
+            }
+
+            _ops.add(new VectorPage.ImageOp(image, r.left, r.top, r.right, r.bottom));
+        }
+        catch (IOException exc) {
+            unsupported("bitmap could not be encoded, " + exc.getMessage());
+        }
+    }
+
+    // hidden before API 29, nine patch drawables draw with it
+    public void drawPatch(NinePatch patch, Rect dst, Paint paint) {
+        drawPatch(patch, new RectF(dst), paint);
+    }
+
+    // hidden before API 29
+    public void drawPatch(NinePatch patch, RectF dst, Paint paint) {
+        if(_unsupported != null)
+            return;
+
+        RectF r         = mapRect(dst.left, dst.top, dst.right, dst.bottom);
+        int width       = Math.round(r.width());
+        int height      = Math.round(r.height());
+
+        if(width <= 0 || height <= 0)
+            return;
+
+        // the stretched patch is drawn as an image of its size on the page
+        Bitmap bitmap   = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+
+        patch.draw(new Canvas(bitmap), new Rect(0, 0, width, height), paint);
+
+        try {
+            VectorImage image = VectorImage.encode(bitmap, _gray);
+
+            _ops.add(new VectorPage.ImageOp(image, r.left, r.top, r.left + width, r.top + height));
+        }
+        catch (IOException exc) {
+            unsupported("nine patch could not be encoded, " + exc.getMessage());
+        }
+        finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void drawBitmap(int[] colors, int offset, int stride, float x, float y, int width, int height,
+                           boolean hasAlpha, Paint paint) {
+        unsupported("pixels array");
+    }
+
+    @Override
+    public void drawBitmap(int[] colors, int offset, int stride, int x, int y, int width, int height,
+                           boolean hasAlpha, Paint paint) {
+        unsupported("pixels array");
+    }
+
+    @Override
+    public void drawBitmapMesh(Bitmap bitmap, int meshWidth, int meshHeight, float[] verts, int vertOffset,
+                               int[] colors, int colorOffset, Paint paint) {
+        unsupported("bitmap mesh");
+    }
+
+    @Override
+    public void drawVertices(VertexMode mode, int vertexCount, float[] verts, int vertOffset, float[] texs,
+                             int texOffset, int[] colors, int colorOffset, short[] indices, int indexOffset,
+                             int indexCount, Paint paint) {
+        unsupported("vertices");
+    }
+
+    @Override
+    public void drawPicture(Picture picture) {
+        unsupported("picture");
+    }
+
+    @Override
+    public void drawPicture(Picture picture, RectF dst) {
+        unsupported("picture");
+    }
+
+    @Override
+    public void drawPicture(Picture picture, Rect dst) {
+        unsupported("picture");
+    }
+}
@@ -0,0 +1,112 @@
+package com.hendrix.pdfmyxml.vector;
+
+import android.graphics.Bitmap;
+
+import com.hendrix.pdfmyxml.utils.BitmapUtils;
+import com.pdfjet.Image;
+import com.pdfjet.ImageType;
+import com.pdfjet.PDF;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * a bitmap drawn on a vector page. the pixels are encoded when the bitmap is drawn,
+ * since it may change or be recycled afterwards, and are embedded once per pdf, no matter
+ * on how many pages it is drawn.
+ *
+ * @author Tomer Shalev
+ */
+class VectorImage {
+    // encoded images of bitmaps that are drawn as is, i.e icons drawn on every page
+    private static final Map<Bitmap, VectorImage> sCache = new WeakHashMap<>();
+
+    private byte[]  _data;
+    private int     _width;
+    private int     _height;
+    private boolean _gray;
+    // the generation of the source bitmap when it was encoded
+    private int     _generationId;
+    // the image in the last pdf it was embedded in
+    private WeakReference<PDF> _pdf = null;
+    private Image   _image          = null;
+
+    private VectorImage(byte[] data, int width, int height, boolean gray, int generationId) {
+        _data           = data;
+        _width          = width;
+        _height         = height;
+        _gray           = gray;
+        _generationId   = generationId;
+    }
+
+    /**
+     * encode a bitmap that is drawn as is, or reuse the encoding of a previous draw
+     *
+     * @param bitmap    the bitmap
+     * @param gray      {@code true} for a gray image
+     *
+     * @return the image
+     *
+     * @throws IOException if the bitmap could not be encoded
+     */
+    static VectorImage of(Bitmap bitmap, boolean gray) throws IOException {
+        synchronized (sCache) {
+            VectorImage image   = sCache.get(bitmap);
+
+            if(image != null && image._gray == gray && image._generationId == bitmap.getGenerationId()
+                    && image._width == bitmap.getWidth() && image._height == bitmap.getHeight())
+                return image;
+        }
+
+        VectorImage image       = encode(bitmap, gray);
+
+        synchronized (sCache) {
+            sCache.put(bitmap, image);
+        }
+
+        return image;
+    }
+
+    /**
+     * encode a bitmap without caching it, i.e a temporary bitmap
+     *
+     * @param bitmap    the bitmap
+     * @param gray      {@code true} for a gray image
+     *
+     * @return the image
+     *
+     * @throws IOException if the bitmap could not be encoded
+     */
+    static VectorImage encode(Bitmap bitmap, boolean gray) throws IOException {
+        InputStream is              = BitmapUtils.bitmapToFlateInputStream(bitmap, gray, true);
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream(Math.max(32, is.available()));
+        byte[] buffer               = new byte[8 * 1024];
+        int read;
+
+        while ((read = is.read(buffer)) > 0)
+            bos.write(buffer, 0, read);
+
+        return new VectorImage(bos.toByteArray(), bitmap.getWidth(), bitmap.getHeight(), gray, bitmap.getGenerationId());
+    }
+
+    /**
+     * @param pdf the pdf
+     *
+     * @return the image embedded in the pdf, it is embedded with the first call
+     *
+     * @throws Exception if the image could not be embedded
+     */
+    synchronized Image imageOf(PDF pdf) throws Exception {
+        if(_pdf == null || _pdf.get() != pdf) {
+            _image  = new Image(pdf, new ByteArrayInputStream(_data), ImageType.JET);
+            _pdf    = new WeakReference<>(pdf);
+        }
+
+        return _image;
+    }
+}
@@ -0,0 +1,273 @@
+package com.hendrix.pdfmyxml.vector;
+
+import com.hendrix.pdfmyxml.encoder.EncodedPage;
+import com.pdfjet.CoreFont;
+import com.pdfjet.Font;
+import com.pdfjet.Image;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import java.util.ArrayList;
+
+/**
+ * a page that was recorded by a {@link VectorCanvas}, and is written as pdf text, path and
+ * image operators instead of an image of the whole page
+ *
+ * @author Tomer Shalev
+ */
+public class VectorPage extends EncodedPage {
+    private float           _width;
+    private float           _height;
+    private ArrayList<Op>   _ops;
+
+    /**
+     * @param width     the width of the recorded view in pixels
+     * @param height    the height of the recorded view in pixels
+     * @param ops       the recorded operations
+     */
+    VectorPage(float width, float height, ArrayList<Op> ops) {
+        _width  = width;
+        _height = height;
+        _ops    = ops;
+    }
+
+    /**
+     *
+     * @return the width of the recorded view in pixels
+     */
+    public float getWidth() {
+        return _width;
+    }
+
+    /**
+     *
+     * @return the height of the recorded view in pixels
+     */
+    public float getHeight() {
+        return _height;
+    }
+
+    /**
+     *
+     * @return the number of recorded operations
+     */
+    public int getOpCount() {
+        return _ops.size();
+    }
+
+    /**
+     * write the recorded operations, scaled over the whole width of the page
+     *
+     * @param pdf   the pdf
+     * @param page  a new page of the pdf
+     *
+     * @throws Exception if the page could not be written
+     */
+    @Override
+    public void drawOn(PDF pdf, Page page) throws Exception {
+        ContentWriter out = new ContentWriter(pdf, page, page.getWidth() / _width);
+
+        out.append("q\n");
+
+        for (Op op : _ops)
+            op.write(out);
+
+        out.append("Q\n");
+        out.flush();
+    }
+
+    /**
+     * a recorded operation
+     */
+    static abstract class Op {
+        abstract void write(ContentWriter out) throws Exception;
+    }
+
+    /**
+     * save or restore the graphics state, i.e the clip
+     */
+    static class StateOp extends Op {
+        static final StateOp SAVE       = new StateOp("q\n");
+        static final StateOp RESTORE    = new StateOp("Q\n");
+
+        private String _operator;
+
+        private StateOp(String operator) {
+            _operator = operator;
+        }
+
+        @Override
+        void write(ContentWriter out) {
+            out.append(_operator);
+        }
+    }
+
+    /**
+     * fill, stroke or clip a path
+     */
+    static class PathOp extends Op {
+        static final int FILL           = 1;
+        static final int STROKE         = 2;
+        static final int CLIP           = 4;
+
+        private PathData    _path;
+        private int         _mode;
+        private boolean     _evenOdd;
+        private int         _fill;
+        private int         _stroke;
+        private float       _strokeWidth;
+        private int         _cap;
+        private int         _join;
+        private float       _miter;
+
+        /**
+         * @param path      the path
+         * @param mode      {@link #FILL}, {@link #STROKE}, both, or {@link #CLIP}
+         * @param evenOdd   {@code true} for the even odd rule, otherwise non zero winding
+         */
+        PathOp(PathData path, int mode, boolean evenOdd) {
+            _path       = path;
+            _mode       = mode;
+            _evenOdd    = evenOdd;
+        }
+
+        /**
+         * @param rgb the opaque fill color
+         */
+        PathOp fill(int rgb) {
+            _fill       = rgb;
+
+            return this;
+        }
+
+        /**
+         * @param rgb   the opaque stroke color
+         * @param width the line width in pixels, {@code 0} for the thinnest line
+         * @param cap   the pdf line cap style
+         * @param join  the pdf line join style
+         * @param miter the miter limit
+         */
+        PathOp stroke(int rgb, float width, int cap, int join, float miter) {
+            _stroke         = rgb;
+            _strokeWidth    = width;
+            _cap            = cap;
+            _join           = join;
+            _miter          = miter;
+
+            return this;
+        }
+
+        @Override
+        void write(ContentWriter out) {
+            if((_mode & FILL) != 0)
+                out.color(_fill).append("rg\n");
+
+            if((_mode & STROKE) != 0) {
+                out.color(_stroke).append("RG\n");
+                out.length(_strokeWidth).append("w ");
+                out.append(Integer.toString(_cap)).append(" J ");
+                out.append(Integer.toString(_join)).append(" j ");
+                out.number(Math.max(1, _miter), 100).append(" M\n");
+            }
+
+            _path.write(out);
+
+            switch (_mode) {
+                case FILL:
+                    out.append(_evenOdd ? "f*\n" : "f\n");
+                    break;
+                case STROKE:
+                    out.append("S\n");
+                    break;
+                case FILL | STROKE:
+                    out.append(_evenOdd ? "B*\n" : "B\n");
+                    break;
+                case CLIP:
+                    out.append(_evenOdd ? "W* n\n" : "W n\n");
+                    break;
+            }
+        }
+    }
+
+    /**
+     * a line of text with a core font, stretched to the width that android measured
+     */
+    static class TextOp extends Op {
+        private String      _text;
+        private float       _x;
+        private float       _y;
+        private float       _size;
+        private float       _width;
+        private int         _rgb;
+        private CoreFont    _font;
+
+        /**
+         * @param text  the text, encodable with the core fonts
+         * @param x     the left of the text in pixels
+         * @param y     the baseline of the text in pixels
+         * @param size  the text size in pixels
+         * @param width the measured width in pixels
+         * @param rgb   the opaque color
+         * @param font  the core font
+         */
+        TextOp(String text, float x, float y, float size, float width, int rgb, CoreFont font) {
+            _text   = text;
+            _x      = x;
+            _y      = y;
+            _size   = size;
+            _width  = width;
+            _rgb    = rgb;
+            _font   = font;
+        }
+
+        @Override
+        void write(ContentWriter out) throws Exception {
+            float scale     = out.scale();
+            Font font       = out.font(_font, _size * scale);
+            float natural   = font.stringWidth(_text);
+            float tz        = natural > 0 ? 100 * _width * scale / natural : 100;
+
+            out.color(_rgb).append("rg\n");
+            out.number(Math.max(50, Math.min(200, tz)), 100).append(" Tz\n");
+            out.flush();
+
+            out.page().drawString(font, _text, _x * scale, _y * scale);
+        }
+    }
+
+    /**
+     * an image, drawn into a rectangle
+     */
+    static class ImageOp extends Op {
+        private VectorImage _image;
+        private float       _left;
+        private float       _top;
+        private float       _right;
+        private float       _bottom;
+
+        /**
+         * @param image the image
+         * @param left  the destination rectangle in pixels
+         */
+        ImageOp(VectorImage image, float left, float top, float right, float bottom) {
+            _image  = image;
+            _left   = left;
+            _top    = top;
+            _right  = right;
+            _bottom = bottom;
+        }
+
+        @Override
+        void write(ContentWriter out) throws Exception {
+            float scale = out.scale();
+            Image image = _image.imageOf(out.pdf());
+
+            out.flush();
+
+            // the image may be shared with other pages, so it is resized relatively
+            image.scaleBy((_right - _left) * scale / image.getWidth(), (_bottom - _top) * scale / image.getHeight());
+            image.setPosition(_left * scale, _top * scale);
+            image.drawOn(out.page());
+        }
+    }
+}
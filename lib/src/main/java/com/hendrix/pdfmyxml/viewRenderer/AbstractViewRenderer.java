@@ -4,11 +4,19 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 
+import com.hendrix.pdfmyxml.cache.PageCache;
+import com.hendrix.pdfmyxml.encoder.PageCodec;
+import com.hendrix.pdfmyxml.metrics.PageMetrics;
+import com.hendrix.pdfmyxml.utils.BitmapPool;
+import com.hendrix.pdfmyxml.utils.BitmapUtils;
 import com.hendrix.pdfmyxml.utils.MeasureUtils;
+import com.hendrix.pdfmyxml.utils.ViewPool;
 
 /**
  * @author Tomer Shalev
@@ -19,6 +27,15 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
     private Bitmap      _bmp                = null;
     private boolean     _flagReuseBitmap    = false;
     private Object      _data               = null;
+    private PageCodec   _codec              = null;
+    private int         _jpegQuality        = 0;
+    private ColorMode   _colorMode          = null;
+    private RenderBackend _backend          = null;
+    private BitmapPool  _pool               = null;
+    private PageMetrics _metrics            = null;
+    private StaticLayer _staticLayer        = null;
+    private ViewPool    _viewPool           = null;
+    private int         _layoutResId        = 0;
 
     /**
      *
@@ -27,6 +44,8 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
      */
     public AbstractViewRenderer(Context ctx, int layoutResId) {
         this(ctx, LayoutInflater.from(ctx).inflate(layoutResId, null));
+
+        _layoutResId = layoutResId;
     }
 
     /**
@@ -40,6 +59,22 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
         _view = view;
     }
 
+    /**
+     * the view is obtained from a view pool when it is rendered, and released back into
+     * it with {@link #releaseView()}, instead of being inflated for every renderer
+     *
+     * @param ctx           a context
+     * @param layoutResId   a layout resource id
+     * @param pool          a view pool
+     */
+    public AbstractViewRenderer(Context ctx, int layoutResId, ViewPool pool) {
+        if(pool == null)
+            throw new IllegalArgumentException("ViewRenderer:: view pool was not set!!");
+
+        attachContext(ctx);
+        setViewPool(pool, layoutResId);
+    }
+
     protected AbstractViewRenderer() {
         throw new UnsupportedOperationException();
     }
@@ -100,16 +135,72 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
      * on <b>API <= 17</b>, you must give explicit {@code width} and {@code height} because of a bug in {@link android.widget.RelativeLayout}
      */
     @Override final public Bitmap render(int width, int height) {
+        return render(width, height, _colorMode != null ? _colorMode : ColorMode.ARGB_8888);
+    }
+
+    /**
+     * render the bitmap with a color mode
+     *
+     * @param width  the wanted width for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     * @param height the wanted height for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     * @param mode   the color mode of the rendered bitmap
+     *
+     * <h1>Note: </h1>
+     * on <b>API <= 17</b>, you must give explicit {@code width} and {@code height} because of a bug in {@link android.widget.RelativeLayout}
+     */
+    final public Bitmap render(int width, int height, ColorMode mode) {
+        return render(width, height, mode, 0);
+    }
+
+    /**
+     * render the bitmap with a color mode, into a bitmap of another width than the view. the view is laid
+     * out with the wanted size, and drawn scaled, so the bitmap has the pixels the output needs, i.e the
+     * resolution of a printed page, without changing the layout.
+     *
+     * @param width         the wanted width for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     * @param height        the wanted height for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     * @param mode          the color mode of the rendered bitmap
+     * @param bitmapWidth   the width of the bitmap, the height keeps the aspect ratio of the view. if 0, the width of the view.
+     */
+    final public Bitmap render(int width, int height, ColorMode mode, int bitmapWidth) {
+        View view       = measureAndLayout(width, height);
+
+        float scale     = bitmapWidth > 0 && view.getWidth() > 0 ? bitmapWidth / (float)view.getWidth() : 1f;
+
+        Bitmap b        = obtainRenderBitmap(MeasureUtils.scaled(view.getWidth(), scale), MeasureUtils.scaled(view.getHeight(), scale), mode);
+
+        Canvas c        = new Canvas(b);
+
+        if(scale != 1f)
+            c.scale(scale, scale);
+
+        draw(c);
+
+        return _bmp=b;
+    }
+
+    /**
+     * init, measure and layout the view, without drawing it. use it with {@link #draw(Canvas)}
+     * to draw the view into a canvas of your own.
+     *
+     * @param width  the wanted width for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     * @param height the wanted height for rendering, in Pixels. if 0, then the view will measure itself as big as it needs to be(only on <b>API > 17</b>).
+     *
+     * @return the laid out view
+     */
+    final public View measureAndLayout(int width, int height) {
         validate();
 
+        long start      = System.nanoTime();
+
         initView(getView());
 
+        long inflated   = System.nanoTime();
+
         View view       = getView();
 
         int specWidth   = View.MeasureSpec.makeMeasureSpec(width  == 0 ? ViewGroup.LayoutParams.WRAP_CONTENT : width,  width == 0 ? View.MeasureSpec.UNSPECIFIED : View.MeasureSpec.EXACTLY);
         int specHeight  = View.MeasureSpec.makeMeasureSpec(height == 0 ? ViewGroup.LayoutParams.WRAP_CONTENT : height, height==0  ? View.MeasureSpec.UNSPECIFIED : View.MeasureSpec.EXACTLY);
-        int a = ViewGroup.LayoutParams.MATCH_PARENT;
-        System.out.println("a");
 
         try {
             view.measure(specWidth, specHeight);
@@ -118,32 +209,179 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
             exc.printStackTrace();
         }
 
+        long measured   = System.nanoTime();
+
         view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
 
-        Bitmap b;
+        if(_metrics != null) {
+            _metrics.addNanos(PageMetrics.Stage.INFLATE, inflated - start);
+            _metrics.addNanos(PageMetrics.Stage.MEASURE, measured - inflated);
+            _metrics.addNanos(PageMetrics.Stage.LAYOUT, System.nanoTime() - measured);
+        }
 
-        // recycle bitmap
-        if(!_flagReuseBitmap) {
-            disposeBitmap();
-            b = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+        return view;
+    }
+
+    /**
+     * draw the laid out view into a canvas
+     *
+     * @param canvas the canvas
+     *
+     * @see #measureAndLayout(int, int)
+     */
+    final public void draw(Canvas canvas) {
+        View view       = getView();
+        long start      = System.nanoTime();
+
+        canvas.translate(-view.getScrollX(), -view.getScrollY());
+
+        view.draw(canvas);
+
+        if(_metrics != null)
+            _metrics.addNanos(PageMetrics.Stage.DRAW, System.nanoTime() - start);
+    }
+
+    /**
+     * draw the static layer of the laid out view into a canvas, the background of the root view
+     * and the static views, each one at its place in the layout
+     *
+     * @param canvas the canvas
+     *
+     * @see #setStaticLayer(StaticLayer)
+     */
+    final public void drawStaticLayer(Canvas canvas) {
+        if(_staticLayer == null)
+            throw new IllegalStateException("ViewRenderer:: no static layer was set");
+
+        View view       = getView();
+        long start      = System.nanoTime();
+        Drawable bg     = view.getBackground();
+
+        if(bg != null) {
+            bg.setBounds(0, 0, view.getWidth(), view.getHeight());
+            bg.draw(canvas);
         }
-        else {
-            // reuse bitmap
-            b = (_bmp==null || _bmp.isRecycled()) ? Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888) : _bmp;
-            b.eraseColor(Color.TRANSPARENT);
+
+        canvas.translate(-view.getScrollX(), -view.getScrollY());
+
+        for (int id : _staticLayer.getViewIds()) {
+            View child  = view.findViewById(id);
+
+            if(child == null || child == view)
+                continue;
+
+            int save    = canvas.save();
+
+            if(translateToView(canvas, view, child))
+                child.draw(canvas);
+
+            canvas.restoreToCount(save);
         }
 
-        Canvas c        = new Canvas(b);
-        c.translate(-view.getScrollX(), -view.getScrollY());
+        if(_metrics != null)
+            _metrics.addNanos(PageMetrics.Stage.DRAW, System.nanoTime() - start);
+    }
 
-        view.draw(c);
+    /**
+     * draw the dynamic layer of the laid out view into a canvas, the children of the root view
+     * without its background, and with the static views hidden, so the static layer shows
+     * through wherever nothing dynamic is drawn
+     *
+     * @param canvas the canvas
+     *
+     * @see #setStaticLayer(StaticLayer)
+     */
+    final public void drawDynamicLayer(Canvas canvas) {
+        if(_staticLayer == null)
+            throw new IllegalStateException("ViewRenderer:: no static layer was set");
 
-        return _bmp=b;
+        View view           = getView();
+
+        if(!(view instanceof ViewGroup)) {
+            draw(canvas);
+            return;
+        }
+
+        long start          = System.nanoTime();
+        int[] ids           = _staticLayer.getViewIds();
+        View[] hidden       = new View[ids.length];
+        int[] visibility    = new int[ids.length];
+
+        for (int ix = 0; ix < ids.length; ix++) {
+            View child      = view.findViewById(ids[ix]);
+
+            if(child == null || child == view)
+                continue;
+
+            hidden[ix]      = child;
+            visibility[ix]  = child.getVisibility();
+
+            child.setVisibility(View.INVISIBLE);
+        }
+
+        try {
+            ViewGroup group = (ViewGroup)view;
+
+            canvas.translate(-view.getScrollX(), -view.getScrollY());
+
+            for (int ix = 0; ix < group.getChildCount(); ix++) {
+                View child  = group.getChildAt(ix);
+
+                if(child.getVisibility() != View.VISIBLE)
+                    continue;
+
+                int save    = canvas.save();
+
+                canvas.translate(child.getLeft() - child.getScrollX(), child.getTop() - child.getScrollY());
+                child.draw(canvas);
+
+                canvas.restoreToCount(save);
+            }
+        }
+        finally {
+            for (int ix = 0; ix < hidden.length; ix++)
+                if(hidden[ix] != null)
+                    hidden[ix].setVisibility(visibility[ix]);
+        }
+
+        if(_metrics != null)
+            _metrics.addNanos(PageMetrics.Stage.DRAW, System.nanoTime() - start);
+    }
+
+    /**
+     * translate a canvas of the root view to a descendant view, the way its parents would before drawing it
+     *
+     * @return {@code false} if the view or one of its parents is not visible
+     */
+    private static boolean translateToView(Canvas canvas, View root, View view) {
+        float dx        = 0;
+        float dy        = 0;
+
+        for (View v = view; v != root; ) {
+            if(v.getVisibility() != View.VISIBLE)
+                return false;
+
+            dx          += v.getLeft() - v.getScrollX();
+            dy          += v.getTop() - v.getScrollY();
+
+            ViewParent parent = v.getParent();
+
+            if(!(parent instanceof View))
+                return false;
+
+            v           = (View)parent;
+        }
+
+        canvas.translate(dx, dy);
+
+        return true;
     }
 
      final public Bitmap render2(int width, int height) {
         validate();
 
+        ColorMode mode  = _colorMode != null ? _colorMode : ColorMode.ARGB_8888;
+
         initView(getView());
 
         View view       = getView();
@@ -160,25 +398,51 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
 
         view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
 
+        Bitmap b        = obtainRenderBitmap(view.getWidth(), view.getHeight(), mode);
+
+        Canvas c        = new Canvas(b);
+        c.translate(-view.getScrollX(), -view.getScrollY());
+
+        view.draw(c);
+
+        return _bmp=b;
+    }
+
+    /**
+     * obtain a bitmap to render the measured view into, according to the bitmap reuse flag
+     *
+     * @param width     the width of the bitmap
+     * @param height    the height of the bitmap
+     * @param mode      the color mode
+     *
+     * @return a transparent bitmap, or a white one for opaque color modes
+     */
+    private Bitmap obtainRenderBitmap(int width, int height, ColorMode mode) {
         Bitmap b;
 
         // recycle bitmap
         if(!_flagReuseBitmap) {
             disposeBitmap();
-            b = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
+            b = BitmapUtils.obtainBitmap(_pool, width, height, mode.getConfig());
         }
         else {
             // reuse bitmap
-            b = (_bmp==null || _bmp.isRecycled()) ? Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888) : _bmp;
+            if(_bmp==null || _bmp.isRecycled() || _bmp.getConfig() != mode.getConfig()
+                    || _bmp.getWidth() != width || _bmp.getHeight() != height) {
+                disposeBitmap();
+                b = BitmapUtils.obtainBitmap(_pool, width, height, mode.getConfig());
+            }
+            else
+                b = _bmp;
+
             b.eraseColor(Color.TRANSPARENT);
         }
 
-        Canvas c        = new Canvas(b);
-        c.translate(-view.getScrollX(), -view.getScrollY());
-
-        view.draw(c);
+        // opaque bitmaps have no transparent black
+        if(!mode.hasAlpha())
+            b.eraseColor(Color.WHITE);
 
-        return _bmp=b;
+        return b;
     }
 
     /**
@@ -198,9 +462,39 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
      */
     @Override
     public View getView() {
+        if(_view == null && _viewPool != null)
+            _view = _viewPool.obtain(_layoutResId);
+
         return _view;
     }
 
+    /**
+     * set a view pool to obtain the view from when it is rendered, the current view is released
+     *
+     * @param pool          a view pool, or {@code null} to stop pooling
+     * @param layoutResId   the layout resource id of the pooled view
+     *
+     * @see #releaseView()
+     */
+    public void setViewPool(ViewPool pool, int layoutResId) {
+        releaseView();
+
+        _viewPool       = pool;
+        _layoutResId    = layoutResId;
+    }
+
+    /**
+     * release the view back into the view pool, once the page is drawn. the next render
+     * obtains a view again. does nothing if the view is not pooled.
+     */
+    public void releaseView() {
+        if(_viewPool == null || _view == null)
+            return;
+
+        _viewPool.release(_layoutResId, _view);
+        _view = null;
+    }
+
     /**
      * width of the canvas
      *
@@ -235,7 +529,7 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
     private void validate() {
         if(_ctx==null)
             throw new IllegalArgumentException("ViewRenderer:: context was not set!!");
-        if(_view==null)
+        if(_view==null && _viewPool==null)
             throw new IllegalArgumentException("ViewRenderer:: view or layout resource was not set!!");
     }
 
@@ -256,25 +550,193 @@ abstract public class AbstractViewRenderer implements IViewRenderer {
         _flagReuseBitmap = flagReuseBitmap;
     }
 
+    /**
+     *
+     * @return the image codec of this page, or {@code null} for the document's codec
+     */
+    public PageCodec getCodec() {
+        return _codec;
+    }
+
+    /**
+     * set the image codec of this page, overriding the document's codec
+     *
+     * @param codec the codec, or {@code null} for the document's codec
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument#setCodec(PageCodec)
+     */
+    public void setCodec(PageCodec codec) {
+        _codec = codec;
+    }
+
+    /**
+     *
+     * @return the JPEG quality of this page, or {@code 0} for the document's quality
+     */
+    public int getJpegQuality() {
+        return _jpegQuality;
+    }
+
+    /**
+     * set the JPEG quality of this page, overriding the document's quality
+     *
+     * @param quality quality of compression {@code 1..100}, or {@code 0} for the document's quality
+     */
+    public void setJpegQuality(int quality) {
+        _jpegQuality = quality;
+    }
+
+    /**
+     *
+     * @return the color mode of this page, or {@code null} for the document's color mode
+     */
+    public ColorMode getColorMode() {
+        return _colorMode;
+    }
+
+    /**
+     * set the color mode of this page, overriding the document's color mode
+     *
+     * @param mode the color mode, or {@code null} for the document's color mode
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument#setColorMode(ColorMode)
+     */
+    public void setColorMode(ColorMode mode) {
+        _colorMode = mode;
+    }
+
+    /**
+     *
+     * @return the render backend of this page, or {@code null} for the document's backend
+     */
+    public RenderBackend getBackend() {
+        return _backend;
+    }
+
+    /**
+     * set the render backend of this page, overriding the document's backend
+     *
+     * @param backend the backend, or {@code null} for the document's backend
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument#setBackend(RenderBackend)
+     */
+    public void setBackend(RenderBackend backend) {
+        _backend = backend;
+    }
+
+    /**
+     *
+     * @return the bitmap pool, or {@code null}
+     */
+    public BitmapPool getBitmapPool() {
+        return _pool;
+    }
+
+    /**
+     * set a bitmap pool to obtain rendered bitmaps from, and return them into
+     * when disposed, instead of creating and recycling them
+     *
+     * @param pool a bitmap pool, or {@code null}
+     */
+    public void setBitmapPool(BitmapPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     *
+     * @return the metrics the stages are recorded into, or {@code null}
+     */
+    public PageMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * set the metrics to record the durations of the inflate, measure, layout and draw
+     * stages into, the stages are added to the durations that are recorded already
+     *
+     * @param metrics the page metrics, or {@code null} to stop recording
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument#setMetricsListener(com.hendrix.pdfmyxml.metrics.MetricsListener)
+     */
+    public void setMetrics(PageMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     *
+     * @return the static layer of the layout, or {@code null}
+     */
+    public StaticLayer getStaticLayer() {
+        return _staticLayer;
+    }
+
+    /**
+     * set the static layer of the layout, the views that are the same on every page. the document
+     * renders the layer once for all of the pages that share the same instance, and draws only the
+     * dynamic views of every page over it, so the static views are drawn and encoded once per document.
+     * the layer is ignored in tiled mode.
+     *
+     * @param layer the static layer, or {@code null} to draw the whole view on every page
+     *
+     * @see com.hendrix.pdfmyxml.viewRenderer.StaticLayer
+     */
+    public void setStaticLayer(StaticLayer layer) {
+        _staticLayer = layer;
+    }
+
     /**
      * dispose the item
      */
     @Override
     public void dispose() {
-        _bmp.recycle();
+        disposeBitmap();
+        releaseView();
         _view = null;
         _ctx = null;
     }
 
     /**
-     * dispose the bitmap
+     * detach the rendered bitmap from the renderer. the caller becomes the owner
+     * of the bitmap, and the next render will not reuse it.
+     *
+     * @return the rendered bitmap
+     */
+    public Bitmap detachBitmap() {
+        Bitmap b = _bmp;
+
+        _bmp = null;
+
+        return b;
+    }
+
+    /**
+     * dispose the bitmap, it is returned into the bitmap pool if there is one
      */
     public void disposeBitmap() {
-        if(_bmp != null)
-            _bmp.recycle();
+        BitmapUtils.releaseBitmap(_pool, _bmp);
         _bmp = null;
     }
 
+    /**
+     * the key of the rendered content of this page in a page cache, the document adds the render size, the
+     * encoding, the version of the app, and the locale, font scale and density. by default, the layout resource
+     * id and a digest of the serialized data, if the renderer was created with a layout resource id and the data
+     * is {@link java.io.Serializable}. override it if the page depends on anything else, i.e data that
+     * {@link #initView(View)} loads on its own.
+     *
+     * @return the key, or {@code null} if the page is not cached
+     *
+     * @see com.hendrix.pdfmyxml.PdfDocument#setPageCache(PageCache)
+     */
+    public String getCacheKey() {
+        if(_layoutResId == 0)
+            return null;
+
+        String fingerprint = PageCache.fingerprintOf(_data);
+
+        return fingerprint == null ? null : getClass().getName() + ':' + _layoutResId + ':' + fingerprint;
+    }
+
     @Override
     public void setData(Object data) {
         _data = data;
@@ -0,0 +1,58 @@
+package com.hendrix.pdfmyxml.viewRenderer;
+
+import android.graphics.Bitmap;
+
+/**
+ * the color mode that pages are rendered and embedded with
+ *
+ * @author Tomer Shalev
+ */
+public enum ColorMode {
+    /**
+     * 32 bits per pixel with alpha, the default
+     */
+    ARGB_8888(Bitmap.Config.ARGB_8888, false),
+
+    /**
+     * 16 bits per pixel, opaque. pages are rendered over white, with half of the memory.
+     */
+    RGB_565(Bitmap.Config.RGB_565, false),
+
+    /**
+     * 8 bits gray. pages are rendered opaque over white into a 16 bits per pixel
+     * bitmap, and embedded as {@code DeviceGray} images.
+     */
+    GRAYSCALE(Bitmap.Config.RGB_565, true);
+
+    private Bitmap.Config   _config;
+    private boolean         _gray;
+
+    ColorMode(Bitmap.Config config, boolean gray) {
+        _config = config;
+        _gray   = gray;
+    }
+
+    /**
+     *
+     * @return the config of rendered bitmaps
+     */
+    public Bitmap.Config getConfig() {
+        return _config;
+    }
+
+    /**
+     *
+     * @return {@code true} if pages are embedded as gray images
+     */
+    public boolean isGray() {
+        return _gray;
+    }
+
+    /**
+     *
+     * @return {@code true} if rendered bitmaps keep alpha, otherwise they are rendered over white
+     */
+    public boolean hasAlpha() {
+        return _config == Bitmap.Config.ARGB_8888;
+    }
+}
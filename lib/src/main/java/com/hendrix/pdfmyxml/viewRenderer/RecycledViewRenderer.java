@@ -4,12 +4,16 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 
+import com.hendrix.pdfmyxml.utils.ViewPool;
+
 /**
  * a View renderer with recycling capabilities.
  *
  * @author Tomer Shalev
  */
 public class RecycledViewRenderer extends SimpleViewRenderer {
+    // the layout of the inflated view, or 0
+    private int _inflatedResId = 0;
 
     public RecycledViewRenderer() {
     }
@@ -21,21 +25,49 @@ public class RecycledViewRenderer extends SimpleViewRenderer {
      * @param view a new view
      */
     public RecycledViewRenderer recycleWith(Context ctx, View view) {
+        setViewPool(null, 0);
         attachContext(ctx);
 
-        _view = view;
+        _view           = view;
+        _inflatedResId  = 0;
 
         return this;
     }
 
     /**
-     * recycle the view renderer with a new view
+     * recycle the view renderer with a view of a layout. the layout is inflated only if
+     * the renderer was not recycled with it the last time.
      *
      * @param ctx the context
      * @param layoutResId a resource layout id
      */
     public RecycledViewRenderer recycleWith(Context ctx, int layoutResId) {
-        return recycleWith(ctx, LayoutInflater.from(ctx).inflate(layoutResId, null));
+        if(layoutResId != 0 && layoutResId == _inflatedResId && _view != null && ctx == _ctx)
+            return this;
+
+        recycleWith(ctx, LayoutInflater.from(ctx).inflate(layoutResId, null));
+
+        _inflatedResId  = layoutResId;
+
+        return this;
+    }
+
+    /**
+     * recycle the view renderer with a pooled view of a layout, the view is obtained from the pool
+     * when it is rendered, and the previous pooled view is released
+     *
+     * @param ctx the context
+     * @param pool a view pool
+     * @param layoutResId a resource layout id
+     */
+    public RecycledViewRenderer recycleWith(Context ctx, ViewPool pool, int layoutResId) {
+        setViewPool(pool, layoutResId);
+        attachContext(ctx);
+
+        _view           = null;
+        _inflatedResId  = 0;
+
+        return this;
     }
 
 }
@@ -0,0 +1,23 @@
+package com.hendrix.pdfmyxml.viewRenderer;
+
+/**
+ * how the view of a page is turned into pdf content
+ *
+ * @author Tomer Shalev
+ */
+public enum RenderBackend {
+    /**
+     * the view is drawn into a bitmap, which is embedded as an image of the whole page, the default
+     */
+    RASTER,
+
+    /**
+     * the draw calls of the view are recorded and written as pdf text, path and image operators,
+     * so the page stays sharp at any zoom, its text is selectable, and no bitmap of the whole
+     * page is allocated. a page that draws anything that can not be translated falls back to
+     * {@link #RASTER}.
+     *
+     * @see com.hendrix.pdfmyxml.vector.VectorCanvas
+     */
+    VECTOR
+}
@@ -0,0 +1,185 @@
+package com.hendrix.pdfmyxml.viewRenderer;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import com.hendrix.pdfmyxml.metrics.PageMetrics;
+
+import java.util.ArrayDeque;
+
+/**
+ * a renderer of rows of a single layout, bound by position like an adapter, and packed top to bottom
+ * into pages. the rows are bound and measured page after page, and only the rows of the current page
+ * are held. the row views of a page are bound again with the rows of the next one.
+ *
+ * @see com.hendrix.pdfmyxml.PdfDocument#addRows(int, int, Binder)
+ *
+ * @author Tomer Shalev
+ */
+public class RowsRenderer extends AbstractViewRenderer {
+    /**
+     * binds a row view to the data of a position
+     */
+    public interface Binder {
+        /**
+         * bind a row, the view may have been bound with another position before
+         *
+         * @param row       an inflated row view
+         * @param position  the position of the row
+         */
+        void bindRow(View row, int position);
+    }
+
+    private final int               _rowLayoutResId;
+    private final int               _count;
+    private Binder                  _binder;
+    private LinearLayout            _container;
+    // row views of the previous page, to be bound again
+    private final ArrayDeque<View>  _scrap      = new ArrayDeque<>();
+    // a bound and measured row that did not fit into the previous page
+    private View                    _pending    = null;
+    // the next position to bind
+    private int                     _position   = 0;
+
+    /**
+     * @param ctx               a context
+     * @param rowLayoutResId    the layout resource id of a row
+     * @param count             number of rows
+     * @param binder            binds the rows
+     */
+    public RowsRenderer(Context ctx, int rowLayoutResId, int count, Binder binder) {
+        super(ctx, new LinearLayout(ctx));
+
+        if(binder == null)
+            throw new IllegalArgumentException("RowsRenderer:: binder was not set!!");
+
+        _rowLayoutResId = rowLayoutResId;
+        _count          = Math.max(0, count);
+        _binder         = binder;
+        _container      = (LinearLayout)getView();
+
+        _container.setOrientation(LinearLayout.VERTICAL);
+    }
+
+    /**
+     *
+     * @return {@code true} if there are rows that were not packed into a page yet
+     */
+    public boolean hasNextPage() {
+        return _pending != null || _position < _count;
+    }
+
+    /**
+     * bind and measure the next rows, and pack them into the page until it is full. a row
+     * taller than a page gets a page of its own, and is clipped.
+     *
+     * @param width     the width of the page in pixels
+     * @param height    the height of the page in pixels
+     *
+     * @return number of rows in the page
+     */
+    public int nextPage(int width, int height) {
+        if(!hasNextPage())
+            throw new IllegalStateException("RowsRenderer:: no more rows");
+
+        for (int ix = 0; ix < _container.getChildCount(); ix++)
+            _scrap.add(_container.getChildAt(ix));
+
+        _container.removeAllViews();
+
+        PageMetrics metrics = getMetrics();
+        // the specs the container measures its rows with
+        int specWidth       = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+        int specHeight      = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        int padding         = _container.getPaddingLeft() + _container.getPaddingRight();
+        int used            = _container.getPaddingTop() + _container.getPaddingBottom();
+        int rows            = 0;
+
+        while (hasNextPage()) {
+            View row        = _pending;
+
+            _pending        = null;
+
+            if(row == null) {
+                long start  = System.nanoTime();
+
+                row         = _scrap.isEmpty() ? LayoutInflater.from(_ctx).inflate(_rowLayoutResId, _container, false) : _scrap.poll();
+
+                _binder.bindRow(row, _position++);
+
+                long bound  = System.nanoTime();
+
+                measureRow(row, specWidth, specHeight, padding);
+
+                if(metrics != null) {
+                    metrics.addNanos(PageMetrics.Stage.INFLATE, bound - start);
+                    metrics.addNanos(PageMetrics.Stage.MEASURE, System.nanoTime() - bound);
+                }
+            }
+
+            int rowHeight   = row.getMeasuredHeight() + verticalMargins(row);
+
+            if(rows > 0 && used + rowHeight > height) {
+                _pending    = row;
+                break;
+            }
+
+            _container.addView(row);
+
+            used           += rowHeight;
+            rows++;
+        }
+
+        return rows;
+    }
+
+    /**
+     * measure a row the way the container lays it out, within its padding and the margins and
+     * size of the row, so a row that wraps its text is as tall as it is drawn
+     */
+    private static void measureRow(View row, int specWidth, int specHeight, int padding) {
+        ViewGroup.LayoutParams params   = row.getLayoutParams();
+        int rowWidth                    = params == null ? ViewGroup.LayoutParams.MATCH_PARENT : params.width;
+        int rowHeight                   = params == null ? ViewGroup.LayoutParams.WRAP_CONTENT : params.height;
+
+        if(params instanceof ViewGroup.MarginLayoutParams)
+            padding                    += ((ViewGroup.MarginLayoutParams)params).leftMargin + ((ViewGroup.MarginLayoutParams)params).rightMargin;
+
+        row.measure(ViewGroup.getChildMeasureSpec(specWidth, padding, rowWidth),
+                    ViewGroup.getChildMeasureSpec(specHeight, 0, rowHeight));
+    }
+
+    private static int verticalMargins(View row) {
+        ViewGroup.LayoutParams params = row.getLayoutParams();
+
+        if(!(params instanceof ViewGroup.MarginLayoutParams))
+            return 0;
+
+        return ((ViewGroup.MarginLayoutParams)params).topMargin + ((ViewGroup.MarginLayoutParams)params).bottomMargin;
+    }
+
+    /**
+     * the rows are bound when they are packed
+     *
+     * @param view the view
+     */
+    @Override
+    protected void initView(View view) {
+    }
+
+    /**
+     * dispose the item
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+
+        _scrap.clear();
+        _pending    = null;
+        _container  = null;
+        _binder     = null;
+    }
+}
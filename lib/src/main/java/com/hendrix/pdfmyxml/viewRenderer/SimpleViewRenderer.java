@@ -3,6 +3,8 @@ package com.hendrix.pdfmyxml.viewRenderer;
 import android.content.Context;
 import android.view.View;
 
+import com.hendrix.pdfmyxml.utils.ViewPool;
+
 /**
  * a simple view renderer implementation of abstract view renderer with empty init.
  * i.e - use it to render a view that was already measured or a layout resource
@@ -26,6 +28,15 @@ public class SimpleViewRenderer extends AbstractViewRenderer {
         super(ctx, view);
     }
 
+    /**
+     * @param ctx         a context
+     * @param layoutResId a layout resource id
+     * @param pool        a view pool to obtain the view from
+     */
+    public SimpleViewRenderer(Context ctx, int layoutResId, ViewPool pool) {
+        super(ctx, layoutResId, pool);
+    }
+
     public SimpleViewRenderer() {}
 
     /**
@@ -0,0 +1,50 @@
+package com.hendrix.pdfmyxml.viewRenderer;
+
+/**
+ * the static layer of a layout, the views that are the same on every page, i.e a letterhead,
+ * a watermark, borders or an empty table grid. the layer is rendered and embedded once per
+ * document and page size, and every page that shares it draws only its dynamic views over it.
+ * <p>
+ * share a single instance between the page renderers of the same layout, the instance is the
+ * key of the rendered layer. the background of the root view belongs to the static layer too.
+ * the dynamic layer of a page is drawn transparent over the static layer, so containers of dynamic
+ * views should have no opaque background that hides it.
+ *
+ * @see AbstractViewRenderer#setStaticLayer(StaticLayer)
+ *
+ * @author Tomer Shalev
+ */
+public class StaticLayer {
+    private final int[] _viewIds;
+
+    /**
+     * @param viewIds the ids of the static views in the layout
+     */
+    public StaticLayer(int... viewIds) {
+        if(viewIds == null || viewIds.length == 0)
+            throw new IllegalArgumentException("StaticLayer:: no static views");
+
+        _viewIds = viewIds.clone();
+    }
+
+    /**
+     *
+     * @return the ids of the static views
+     */
+    public int[] getViewIds() {
+        return _viewIds.clone();
+    }
+
+    /**
+     * @param id a view id
+     *
+     * @return {@code true} if the view is static
+     */
+    public boolean contains(int id) {
+        for (int viewId : _viewIds)
+            if(viewId == id)
+                return true;
+
+        return false;
+    }
+}
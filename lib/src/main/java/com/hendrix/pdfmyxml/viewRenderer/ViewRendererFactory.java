@@ -5,12 +5,19 @@ import android.graphics.Bitmap;
 import android.view.View;
 
 /**
- * a recycled view renderer factory.
+ * a recycled view renderer factory. every thread renders with a recycled renderer of its own,
+ * so views may be rendered concurrently from several threads, as long as a view is not
+ * rendered by two threads at once.
  *
  * @author Tomer Shalev
  */
 public class ViewRendererFactory {
-    volatile static private RecycledViewRenderer _rvr = new RecycledViewRenderer();
+    static private final ThreadLocal<RecycledViewRenderer> _rvr = new ThreadLocal<RecycledViewRenderer>() {
+        @Override
+        protected RecycledViewRenderer initialValue() {
+            return new RecycledViewRenderer();
+        }
+    };
 
     /**
      * recycle a view renderer with the following
@@ -20,24 +27,51 @@ public class ViewRendererFactory {
      * @param width the width
      * @param height the height
      *
-     * @return a bitmap of the view
+     * @return a bitmap of the view, owned by the caller
      */
     static public Bitmap getBitmapOfView(Context ctx, View view, int width, int height) {
-        return _rvr.recycleWith(ctx, view).render(width, height);
+        RecycledViewRenderer rvr = _rvr.get();
+
+        try {
+            rvr.recycleWith(ctx, view).render(width, height);
+
+            return rvr.detachBitmap();
+        }
+        finally {
+            // do not hold the view of the caller
+            rvr.recycleWith(null, (View)null);
+        }
     }
 
     /**
-     * recycle a view renderer with the following
+     * recycle a view renderer with the following. the inflated layout is kept by the renderer of
+     * the calling thread, for the next call with the same layout.
      *
      * @param ctx the context
      * @param layoutResId the layout resource identifier
      * @param width the width
      * @param height the height
      *
-     * @return a bitmap of the view
+     * @return a bitmap of the view, owned by the caller
      */
     static public Bitmap getBitmapOfView(Context ctx, int layoutResId, int width, int height) {
-        return _rvr.recycleWith(ctx, layoutResId).render(width, height);
+        RecycledViewRenderer rvr = _rvr.get();
+
+        rvr.recycleWith(ctx, layoutResId).render(width, height);
+
+        return rvr.detachBitmap();
+    }
+
+    /**
+     * drop the recycled renderer of the calling thread, and the layout it keeps,
+     * i.e before a worker thread returns into its pool
+     */
+    static public void release() {
+        RecycledViewRenderer rvr = _rvr.get();
+
+        rvr.dispose();
+
+        _rvr.remove();
     }
 
 }
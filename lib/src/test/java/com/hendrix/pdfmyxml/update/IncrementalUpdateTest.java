@@ -0,0 +1,129 @@
+package com.hendrix.pdfmyxml.update;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * incremental updates of pdfs that pdfjet wrote, parsed back
+ *
+ * @author Tomer Shalev
+ */
+public class IncrementalUpdateTest {
+    @Rule
+    public TemporaryFolder _tmp = new TemporaryFolder();
+
+    @Test
+    public void appendsAndReplacesPagesInChainedUpdates() throws Exception {
+        File pdf            = TestPdfs.pdfjet(_tmp.newFile("base.pdf"), "page 1", "page 2", "page 3");
+        byte[] base         = TestPdfs.bytesOf(pdf);
+        long baseXref       = TestPdfs.startXrefOf(pdf);
+
+        // the second page is replaced, and a page is appended
+        IncrementalUpdate first = new IncrementalUpdate(pdf);
+
+        assertEquals(3, first.getPageCount());
+
+        first.apply(TestPdfs.pdfjet(_tmp.newFile("first.pdf"), "new 2", "page 4"), new int[] {1});
+
+        byte[] updated      = TestPdfs.bytesOf(pdf);
+        long firstXref      = TestPdfs.startXrefOf(pdf);
+
+        assertUnchanged(base, updated);
+        assertEquals(Arrays.asList(firstXref, baseXref), TestPdfs.checkXrefTables(pdf));
+        assertPages(pdf, "page 1", "new 2", "page 3", "page 4");
+
+        // an update on top of the update, the first page is replaced, and a page is appended
+        IncrementalUpdate second = new IncrementalUpdate(pdf);
+
+        assertEquals(4, second.getPageCount());
+
+        second.apply(TestPdfs.pdfjet(_tmp.newFile("second.pdf"), "new 1", "page 5"), new int[] {0});
+
+        assertUnchanged(updated, TestPdfs.bytesOf(pdf));
+        assertEquals(Arrays.asList(TestPdfs.startXrefOf(pdf), firstXref, baseXref), TestPdfs.checkXrefTables(pdf));
+        assertPages(pdf, "new 1", "new 2", "page 3", "page 4", "page 5");
+    }
+
+    @Test
+    public void appendsPagesToAPdfWithObjectStreams() throws Exception {
+        File source         = TestPdfs.pdfjet(_tmp.newFile("source.pdf"), "page 1", "page 2");
+        File pdf            = _tmp.newFile("compact.pdf");
+
+        compact(source, pdf);
+
+        byte[] base         = TestPdfs.bytesOf(pdf);
+        long baseXref       = TestPdfs.startXrefOf(pdf);
+
+        new IncrementalUpdate(pdf).apply(TestPdfs.pdfjet(_tmp.newFile("pages.pdf"), "new 1", "page 3"), new int[] {0});
+
+        assertUnchanged(base, TestPdfs.bytesOf(pdf));
+
+        PdfReader reader    = new PdfReader(pdf);
+
+        try {
+            // the update of a pdf that ends with a cross reference stream is a stream too
+            assertTrue(reader.isXrefStream());
+            assertEquals(TestPdfs.startXrefOf(pdf), reader.getStartXref());
+            assertEquals(baseXref, reader.getTrailer().get("Prev"));
+        }
+        finally {
+            reader.close();
+        }
+
+        assertPages(pdf, "new 1", "page 2", "page 3");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesAPdfThatChangedSinceItWasRead() throws Exception {
+        File pdf                = TestPdfs.pdfjet(_tmp.newFile("base.pdf"), "page 1");
+        IncrementalUpdate update = new IncrementalUpdate(pdf);
+
+        new IncrementalUpdate(pdf).apply(TestPdfs.pdfjet(_tmp.newFile("first.pdf"), "page 2"), new int[0]);
+
+        update.apply(TestPdfs.pdfjet(_tmp.newFile("second.pdf"), "page 3"), new int[0]);
+    }
+
+    /**
+     * the bytes of the pdf before the update are not changed
+     */
+    private static void assertUnchanged(byte[] before, byte[] after) {
+        assertTrue("the update is shorter than the pdf", after.length > before.length);
+        assertArrayEquals(before, Arrays.copyOf(after, before.length));
+    }
+
+    private static void assertPages(File pdf, String... texts) throws Exception {
+        PdfReader reader = new PdfReader(pdf);
+
+        try {
+            List<String> actual = TestPdfs.textsOf(reader);
+
+            assertEquals(Arrays.asList(texts), actual);
+            assertEquals(texts.length, TestPdfs.checkParents(reader));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private static void compact(File source, File target) throws Exception {
+        OutputStream os = new FileOutputStream(target);
+
+        try {
+            new PdfCompactor().compact(source, os);
+        }
+        finally {
+            os.close();
+        }
+    }
+}
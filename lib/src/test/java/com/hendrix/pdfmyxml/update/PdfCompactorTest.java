@@ -0,0 +1,261 @@
+package com.hendrix.pdfmyxml.update;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * pdfs that pdfjet wrote, rewritten with object streams and parsed back
+ *
+ * @author Tomer Shalev
+ */
+public class PdfCompactorTest {
+    @Rule
+    public TemporaryFolder _tmp = new TemporaryFolder();
+
+    @Test
+    public void packsObjectsIntoObjectStreams() throws Exception {
+        String[] texts      = new String[150];
+
+        for (int ix = 0; ix < texts.length; ix++)
+            texts[ix]       = "page " + ix;
+
+        File source         = TestPdfs.pdfjet(_tmp.newFile("source.pdf"), texts);
+        File pdf            = compact(source, _tmp.newFile("compact.pdf"));
+
+        TreeMap<Integer, long[]> entries = readXrefStream(pdf);
+        PdfReader original  = new PdfReader(source);
+        PdfReader reader    = new PdfReader(pdf);
+
+        try {
+            assertTrue(reader.isXrefStream());
+
+            Set<Long> streams = new HashSet<>();
+            byte[] bytes    = TestPdfs.bytesOf(pdf);
+
+            for (Map.Entry<Integer, long[]> entry : entries.entrySet()) {
+                int num     = entry.getKey();
+                long[] e    = entry.getValue();
+
+                if(e[0] == 1)
+                    assertTrue("object " + num + " is not at " + e[1], new String(bytes, TestPdfs.LATIN1).startsWith(num + " " + e[2] + " obj", (int)e[1]));
+                else if(e[0] == 2) {
+                    assertEquals("object " + num, num, objectNumberAt(reader, (int)e[1], (int)e[2]));
+
+                    streams.add(e[1]);
+                }
+            }
+
+            // a page dictionary for every page, a hundred objects per stream
+            assertTrue("only " + streams.size() + " object streams", streams.size() >= 2);
+
+            // every object that is in use is read back as it was
+            for (int num : original.getObjectNumbers()) {
+                PdfObject before    = original.readObject(num);
+                PdfObject after     = reader.readObject(num);
+
+                assertNotNull("object " + num + " is missing", after);
+                assertValueEquals("object " + num, before.getValue(), after.getValue());
+                assertEquals(before.isStream(), after.isStream());
+
+                if(before.isStream())
+                    assertArrayEquals("stream " + num, original.readStream(before), reader.readStream(after));
+            }
+
+            List<String> expected = new ArrayList<>();
+
+            for (String text : texts)
+                expected.add(text);
+
+            assertEquals(expected, TestPdfs.textsOf(reader));
+            assertEquals(texts.length, TestPdfs.checkParents(reader));
+        }
+        finally {
+            original.close();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void keepsStringsWithEscapesAndBinaryBytes() throws Exception {
+        // a literal string with escapes, an octal escape, a nul byte and a raw non ascii byte
+        File source         = TestPdfs.handWritten(_tmp.newFile("source.pdf"), "(a\\(b\\)\\\\c \\351\\r\\n\\000\u00ff)");
+        File pdf            = compact(source, _tmp.newFile("compact.pdf"));
+        byte[] title        = {'a', '(', 'b', ')', '\\', 'c', ' ', (byte)0xe9, '\r', '\n', 0, (byte)0xff};
+
+        PdfReader reader    = new PdfReader(pdf);
+
+        try {
+            Object info     = reader.getTrailer().get("Info");
+
+            assertTrue(info instanceof PdfRef);
+            assertEquals(2L, readXrefStream(pdf).get(((PdfRef)info).getNum())[0]);
+            assertArrayEquals(title, (byte[])reader.readDictionary((PdfRef)info).get("Title"));
+            assertEquals(1, TestPdfs.checkParents(reader));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private static File compact(File source, File target) throws IOException {
+        OutputStream os = new FileOutputStream(target);
+
+        try {
+            new PdfCompactor().compact(source, os);
+        }
+        finally {
+            os.close();
+        }
+
+        return target;
+    }
+
+    /**
+     * @return the number of the object at an index of an object stream, from the header of the stream
+     */
+    private static int objectNumberAt(PdfReader reader, int stream, int index) throws IOException {
+        PdfObject object        = reader.readObject(stream);
+
+        assertNotNull("object stream " + stream + " is missing", object);
+        assertEquals("ObjStm", ((Map<?, ?>)object.getValue()).get("Type"));
+
+        byte[] data             = reader.readStream(object);
+        PdfParser parser        = new PdfParser(data, data.length, 0);
+        long n                  = (Long)((Map<?, ?>)object.getValue()).get("N");
+
+        assertTrue("index " + index + " of " + n, index < n);
+
+        for (int ix = 0; ix < index; ix++) {
+            parser.parseLong();
+            parser.parseLong();
+        }
+
+        return (int)parser.parseLong();
+    }
+
+    /**
+     * decode the newest cross reference stream of a pdf, without {@link PdfReader}
+     *
+     * @return the entries by object number, {type, field 2, field 3}
+     */
+    private static TreeMap<Integer, long[]> readXrefStream(File pdf) throws IOException {
+        byte[] bytes                = TestPdfs.bytesOf(pdf);
+        long offset                 = TestPdfs.startXrefOf(pdf);
+        PdfParser parser            = new PdfParser(bytes, bytes.length, 0, (int)offset);
+        PdfObject object            = parser.parseObject();
+        Map<?, ?> dict              = (Map<?, ?>)object.getValue();
+
+        assertEquals("XRef", dict.get("Type"));
+        assertEquals("FlateDecode", dict.get("Filter"));
+
+        int length                  = ((Long)dict.get("Length")).intValue();
+        byte[] data                 = inflate(bytes, (int)object.getStreamOffset(), length);
+        List<?> w                   = (List<?>)dict.get("W");
+        List<?> index               = (List<?>)dict.get("Index");
+        int[] widths                = {((Long)w.get(0)).intValue(), ((Long)w.get(1)).intValue(), ((Long)w.get(2)).intValue()};
+        TreeMap<Integer, long[]> entries = new TreeMap<>();
+        int pos                     = 0;
+
+        if(index == null)
+            fail("no /Index");
+
+        for (int run = 0; run < index.size(); run += 2) {
+            int first               = ((Long)index.get(run)).intValue();
+            int count               = ((Long)index.get(run + 1)).intValue();
+
+            for (int num = first; num < first + count; num++) {
+                long[] entry        = new long[3];
+
+                for (int field = 0; field < 3; field++) {
+                    for (int b = 0; b < widths[field]; b++)
+                        entry[field] = (entry[field] << 8) | (data[pos++] & 0xff);
+                }
+
+                entries.put(num, entry);
+            }
+        }
+
+        assertEquals("trailing bytes in the xref stream", data.length, pos);
+
+        return entries;
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) throws IOException {
+        Inflater inflater           = new Inflater();
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream();
+        byte[] buffer               = new byte[4096];
+
+        inflater.setInput(bytes, offset, length);
+
+        try {
+            while (!inflater.finished()) {
+                int read            = inflater.inflate(buffer);
+
+                if(read == 0 && inflater.needsInput())
+                    throw new IOException("truncated flate stream");
+
+                bos.write(buffer, 0, read);
+            }
+        }
+        catch (DataFormatException exc) {
+            throw new IOException(exc);
+        }
+        finally {
+            inflater.end();
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * compare parsed values, strings are compared by their bytes and numbers by their value
+     */
+    private static void assertValueEquals(String message, Object expected, Object actual) {
+        if(expected instanceof Map) {
+            assertTrue(message, actual instanceof Map);
+
+            Map<?, ?> e = (Map<?, ?>)expected;
+            Map<?, ?> a = (Map<?, ?>)actual;
+
+            assertEquals(message, e.keySet(), a.keySet());
+
+            for (Object key : e.keySet())
+                assertValueEquals(message + "/" + key, e.get(key), a.get(key));
+        }
+        else if(expected instanceof List) {
+            assertTrue(message, actual instanceof List);
+            assertEquals(message, ((List<?>)expected).size(), ((List<?>)actual).size());
+
+            for (int ix = 0; ix < ((List<?>)expected).size(); ix++)
+                assertValueEquals(message + "[" + ix + "]", ((List<?>)expected).get(ix), ((List<?>)actual).get(ix));
+        }
+        else if(expected instanceof byte[])
+            assertArrayEquals(message, (byte[])expected, (byte[])actual);
+        else if(expected instanceof BigDecimal)
+            assertEquals(message, 0, ((BigDecimal)expected).compareTo((BigDecimal)actual));
+        else
+            assertEquals(message, expected, actual);
+    }
+}
@@ -0,0 +1,278 @@
+package com.hendrix.pdfmyxml.update;
+
+import com.pdfjet.A4;
+import com.pdfjet.CoreFont;
+import com.pdfjet.Font;
+import com.pdfjet.PDF;
+import com.pdfjet.Page;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * pdfs for the tests, and checks of their structure that do not depend on {@link PdfReader}
+ *
+ * @author Tomer Shalev
+ */
+class TestPdfs {
+    static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private static final Pattern PREV       = Pattern.compile("/Prev\\s+(\\d+)");
+    private static final Pattern STARTXREF  = Pattern.compile("startxref\\s+(\\d+)\\s+%%EOF\\s*$");
+
+    /**
+     * write a pdf with pdfjet, a page for every text
+     *
+     * @param file  the pdf
+     * @param texts the text of every page
+     *
+     * @return the pdf
+     */
+    static File pdfjet(File file, String... texts) throws Exception {
+        OutputStream os = new FileOutputStream(file);
+
+        try {
+            PDF pdf     = new PDF(os);
+            Font font   = new Font(pdf, CoreFont.HELVETICA);
+
+            for (String text : texts)
+                new Page(pdf, A4.PORTRAIT).drawString(font, text, 10, 20);
+
+            pdf.flush();
+        }
+        finally {
+            os.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * @param reader    a reader of the pdf
+     * @param page      a page
+     *
+     * @return the decoded content of the page
+     */
+    static String contentOf(PdfReader reader, PdfRef page) throws IOException {
+        Object contents         = reader.resolve(reader.readDictionary(page).get("Contents"));
+        List<Object> streams    = new ArrayList<>();
+        StringBuilder sb        = new StringBuilder();
+
+        if(contents instanceof List)
+            streams.addAll((List<?>)contents);
+        else
+            streams.add(contents);
+
+        for (Object stream : streams)
+            sb.append(new String(reader.readStream(reader.readObject(((PdfRef)stream).getNum())), LATIN1));
+
+        return sb.toString();
+    }
+
+    /**
+     * @param reader a reader of the pdf
+     *
+     * @return the text of every page in order, the first string that every page shows
+     */
+    static List<String> textsOf(PdfReader reader) throws IOException {
+        List<PdfRef> pages      = new ArrayList<>();
+        List<PdfRef> parents    = new ArrayList<>();
+        List<String> texts      = new ArrayList<>();
+
+        reader.readPages(pages, parents);
+
+        for (PdfRef page : pages) {
+            String content      = contentOf(reader, page);
+            int start           = content.indexOf('(');
+
+            texts.add(start < 0 ? null : content.substring(start + 1, content.indexOf(')', start)));
+        }
+
+        return texts;
+    }
+
+    /**
+     * @param file a pdf
+     *
+     * @return the content of the file
+     */
+    static byte[] bytesOf(File file) throws IOException {
+        RandomAccessFile raf    = new RandomAccessFile(file, "r");
+
+        try {
+            byte[] bytes        = new byte[(int)raf.length()];
+
+            raf.readFully(bytes);
+
+            return bytes;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @param file a pdf
+     *
+     * @return the offset of its newest cross reference section
+     */
+    static long startXrefOf(File file) throws IOException {
+        Matcher matcher = STARTXREF.matcher(new String(bytesOf(file), LATIN1));
+
+        assertTrue("no startxref in " + file, matcher.find());
+
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * check every cross reference table of a pdf, newest first along the {@code /Prev} chain. every
+     * entry that is in use points at its object.
+     *
+     * @param file a pdf with cross reference tables
+     *
+     * @return the offsets of the sections, newest first
+     */
+    static List<Long> checkXrefTables(File file) throws IOException {
+        String pdf          = new String(bytesOf(file), LATIN1);
+        List<Long> sections = new ArrayList<>();
+        long offset         = startXrefOf(file);
+
+        while (offset >= 0) {
+            assertTrue("no xref table at " + offset, pdf.startsWith("xref", (int)offset));
+            assertTrue("a cycle in the xref chain at " + offset, !sections.contains(offset));
+
+            sections.add(offset);
+
+            int trailer     = pdf.indexOf("trailer", (int)offset);
+            String[] lines  = pdf.substring((int)offset + 4, trailer).trim().split("\\s*[\\r\\n]+\\s*");
+            int num         = 0;
+
+            for (String line : lines) {
+                String[] fields = line.trim().split("\\s+");
+
+                if(fields.length == 2) {
+                    num         = Integer.parseInt(fields[0]);
+                    continue;
+                }
+
+                assertEquals("malformed xref entry " + line, 3, fields.length);
+
+                if("n".equals(fields[2])) {
+                    int at      = Integer.parseInt(fields[0]);
+                    String obj  = num + " " + Integer.parseInt(fields[1]) + " obj";
+
+                    assertTrue("object " + num + " is not at " + at, pdf.startsWith(obj, at));
+                }
+
+                num++;
+            }
+
+            Matcher prev    = PREV.matcher(pdf.substring(trailer, pdf.indexOf("startxref", trailer)));
+
+            offset          = prev.find() ? Long.parseLong(prev.group(1)) : -1;
+        }
+
+        return sections;
+    }
+
+    /**
+     * check the page tree, every page is a kid of its parent, that points back at its own parent
+     *
+     * @param reader a reader of the pdf
+     *
+     * @return number of pages
+     */
+    static int checkParents(PdfReader reader) throws IOException {
+        List<PdfRef> pages      = new ArrayList<>();
+        List<PdfRef> parents    = new ArrayList<>();
+
+        reader.readPages(pages, parents);
+
+        for (int ix = 0; ix < pages.size(); ix++) {
+            Map<String, Object> page    = reader.readDictionary(pages.get(ix));
+            Map<String, Object> parent  = reader.readDictionary(parents.get(ix));
+
+            assertEquals("Page", page.get("Type"));
+            assertEquals("parent of page " + ix, parents.get(ix), page.get("Parent"));
+            assertEquals("Pages", parent.get("Type"));
+            assertTrue("page " + ix + " is not a kid of its parent", ((List<?>)reader.resolve(parent.get("Kids"))).contains(pages.get(ix)));
+        }
+
+        Object count = reader.resolve(reader.readDictionary(reader.getPagesRef()).get("Count"));
+
+        assertEquals((long)pages.size(), count);
+
+        return pages.size();
+    }
+
+    /**
+     * @param text the text of a pdf, in latin 1
+     *
+     * @return the bytes
+     */
+    static byte[] latin1(String text) {
+        return text.getBytes(LATIN1);
+    }
+
+    /**
+     * a pdf of a single page, written by hand, with an info dictionary
+     *
+     * @param file  the pdf
+     * @param title the raw title, i.e a literal string with escapes
+     *
+     * @return the pdf
+     */
+    static File handWritten(File file, String title) throws IOException {
+        String[] objects            = {
+                "<< /Type /Catalog /Pages 2 0 R >>",
+                "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+                "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] >>",
+                "<< /Title " + title + " >>"
+        };
+        ByteArrayOutputStream bos   = new ByteArrayOutputStream();
+        long[] offsets              = new long[objects.length];
+
+        bos.write(latin1("%PDF-1.4\n"));
+
+        for (int ix = 0; ix < objects.length; ix++) {
+            offsets[ix]             = bos.size();
+            bos.write(latin1((ix + 1) + " 0 obj\n" + objects[ix] + "\nendobj\n"));
+        }
+
+        long xref                   = bos.size();
+        StringBuilder sb            = new StringBuilder("xref\n0 " + (objects.length + 1) + "\n0000000000 65535 f \n");
+
+        for (long offset : offsets)
+            sb.append(String.format(Locale.US, "%010d 00000 n \n", offset));
+
+        sb.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R /Info 4 0 R >>\nstartxref\n")
+          .append(xref).append("\n%%EOF\n");
+
+        bos.write(latin1(sb.toString()));
+
+        OutputStream os             = new FileOutputStream(file);
+
+        try {
+            bos.writeTo(os);
+        }
+        finally {
+            os.close();
+        }
+
+        return file;
+    }
+}